@@ -0,0 +1,124 @@
+package server;
+
+import chess.Annotator;
+import chess.PgnGame;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Annotates finished games in the background. Whatever ends a game, whether checkmate,
+ * stalemate or a resignation over the websocket, calls {@link #submit} and carries on:
+ * submitting never blocks, and when the queue is full the game is dropped rather than
+ * holding up the caller. One low-priority daemon thread works through the queue with an
+ * {@link Annotator} and hands each result to the store, so annotation never competes
+ * with request threads for more than one core.
+ */
+public class AnnotationQueue implements AutoCloseable {
+
+    /**
+     * Keeps a game's annotations, e.g. in the games table
+     */
+    @FunctionalInterface
+    public interface AnnotationStore {
+        void save(int gameID, List<Annotator.Annotation> annotations) throws Exception;
+    }
+
+    private record Job(int gameID, PgnGame game) {
+    }
+
+    private final AnnotationStore store;
+    private final Annotator annotator;
+    private final BlockingQueue<Job> jobs;
+    private final Thread worker;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean closed;
+
+    public AnnotationQueue(AnnotationStore store, int capacity) {
+        this(store, capacity, new Annotator());
+    }
+
+    /**
+     * @param capacity the most games waiting to be annotated
+     */
+    public AnnotationQueue(AnnotationStore store, int capacity, Annotator annotator) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue needs room for at least one game");
+        }
+        this.store = store;
+        this.annotator = annotator;
+        this.jobs = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::work, "annotation-worker");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * Queues a finished game for annotation without waiting
+     *
+     * @return false if the queue is full or closed, in which case the game is not annotated
+     */
+    public boolean submit(int gameID, PgnGame game) {
+        if (closed || !jobs.offer(new Job(gameID, game.copy()))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the games waiting, not counting the one being annotated
+     */
+    public int pending() {
+        return jobs.size();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public long completed() {
+        return completed.get();
+    }
+
+    /**
+     * @return the games whose annotation or saving threw
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    private void work() {
+        try {
+            while (!closed) {
+                Job job = jobs.take();
+                try {
+                    List<Annotator.Annotation> annotations = annotator.annotate(job.game());
+                    if (!closed) {
+                        store.save(job.gameID(), annotations);
+                        completed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the worker, cutting short the game being annotated; queued games are discarded
+     */
+    @Override
+    public void close() {
+        closed = true;
+        annotator.stop();
+        worker.interrupt();
+    }
+}
@@ -0,0 +1,237 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.Engine;
+import chess.Search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Plays the engine's side of bot games on a fixed set of search threads shared by every
+ * game. When it is the bot's turn, the game flow (after CONNECT, or after the player's
+ * MAKE_MOVE) calls {@link #submit} with the position and the bot's time for the move,
+ * and gets the move back through a callback on a pool thread, ready to be made and sent
+ * out like a player's. Leaving or resigning calls {@link #cancel}.
+ * <p>
+ * Moves are searched in the order they were asked for and each game has at most one
+ * waiting, so a game gets its next move only after every game that asked before it: no
+ * game can starve the rest however many moves it wants. Each move is also capped at the
+ * pool's most time a move, so one slow time control cannot hold a thread for long, and
+ * the time spent waiting comes out of the move's own budget. The threads run below
+ * normal priority and there are fewer of them than cores, so request threads always
+ * have a core to run on; when the queue is full new moves are turned away rather than
+ * queued without bound. If a search fails the bot plays its first legal move instead,
+ * so its game never waits on a move that will not come.
+ */
+public class BotPool implements AutoCloseable {
+
+    private final BlockingQueue<Job> queue;
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final List<Worker> workers = new ArrayList<>();
+    private final long maxMoveMillis;
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * A move asked for by one game
+     */
+    private static final class Job {
+        final int gameID;
+        final ChessGame game;
+        final Engine.Limits limits;
+        final Consumer<ChessMove> onMove;
+        final long submitted = System.nanoTime();
+        /**
+         * Set when the move is cancelled, whether it is still waiting or being searched
+         */
+        final AtomicBoolean stop = new AtomicBoolean();
+
+        Job(int gameID, ChessGame game, Engine.Limits limits, Consumer<ChessMove> onMove) {
+            this.gameID = gameID;
+            this.game = game;
+            this.limits = limits;
+            this.onMove = onMove;
+        }
+    }
+
+    /**
+     * Uses half the cores, a {@link Search} per thread, room for 1024 waiting moves and
+     * at most five seconds a move
+     */
+    public BotPool() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1024, 5000, Search::new);
+    }
+
+    /**
+     * @param threads       the search threads, each with its own engine
+     * @param capacity      the most moves waiting for a thread
+     * @param maxMoveMillis the most time any one move may take
+     * @param engines       makes an engine for each thread
+     */
+    public BotPool(int threads, int capacity, long maxMoveMillis, Supplier<? extends Engine> engines) {
+        if (threads < 1 || capacity < 1 || maxMoveMillis < 1) {
+            throw new IllegalArgumentException("Need at least one thread, one queued move and one millisecond");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxMoveMillis = maxMoveMillis;
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(engines.get(), "bot-" + i);
+            workers.add(worker);
+            worker.thread.start();
+        }
+    }
+
+    /**
+     * Asks for the bot's move in a game without waiting for it. The callback runs on a pool
+     * thread with the move, or null if the game was already over; it does not run if the
+     * move is cancelled first.
+     *
+     * @param game   the game, copied here so the caller may go on changing its own
+     * @param limits the bot's budget for this move, e.g. from a {@link chess.TimeManager}
+     *               with the bot's clock
+     * @return false if the game already has a move waiting, the queue is full or the
+     * pool is closed
+     */
+    public boolean submit(int gameID, ChessGame game, Engine.Limits limits, Consumer<ChessMove> onMove) {
+        if (closed) {
+            return false;
+        }
+        Job job = new Job(gameID, game.copy(), limits, onMove);
+        if (jobs.putIfAbsent(gameID, job) != null) {
+            return false;
+        }
+        if (!queue.offer(job)) {
+            jobs.remove(gameID, job);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops a game's waiting move, or stops its search if one is running, e.g. when the
+     * player resigns or leaves
+     */
+    public void cancel(int gameID) {
+        Job job = jobs.remove(gameID);
+        if (job == null) {
+            return;
+        }
+        job.stop.set(true);
+        queue.remove(job);
+    }
+
+    /**
+     * @return the moves waiting for a thread
+     */
+    public int waiting() {
+        return queue.size();
+    }
+
+    /**
+     * @return the games with a move waiting or being searched
+     */
+    public int active() {
+        return jobs.size();
+    }
+
+    /**
+     * @return the moves whose search threw; their games get the first legal move instead
+     */
+    public long failed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the budget left for a move after waiting in the queue, capped for fairness
+     */
+    Engine.Limits budget(Engine.Limits limits, long waitedMillis) {
+        long millis = limits.millis() == 0 ? maxMoveMillis : limits.millis() - waitedMillis;
+        millis = Math.max(1, Math.min(millis, maxMoveMillis));
+        long soft = limits.softMillis() == 0 ? 0 : Math.max(1, Math.min(limits.softMillis() - waitedMillis, millis));
+        return new Engine.Limits(limits.depth(), limits.nodes(), millis, soft);
+    }
+
+    private final class Worker {
+        final Engine engine;
+        final Thread thread;
+
+        Worker(Engine engine, String name) {
+            this.engine = engine;
+            this.thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 2);
+        }
+
+        private void run() {
+            try {
+                while (!closed) {
+                    Job job = queue.take();
+                    if (job.stop.get()) {
+                        continue;
+                    }
+                    ChessMove move;
+                    try {
+                        long waited = (System.nanoTime() - job.submitted) / 1_000_000;
+                        move = engine.bestMove(job.game, budget(job.limits, waited), job.stop);
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        move = firstLegalMove(job.game);
+                    }
+                    if (jobs.remove(job.gameID, job)) {
+                        job.onMove.accept(move);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return any legal move for the team on turn, or null if the game is over
+     */
+    private static ChessMove firstLegalMove(ChessGame game) {
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition square = new ChessPosition(row, col);
+                ChessPiece piece = game.getBoard().getPiece(square);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    Collection<ChessMove> moves = game.validMoves(square);
+                    if (moves != null && !moves.isEmpty()) {
+                        return moves.iterator().next();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stops every search and the threads; waiting moves are dropped without callbacks
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+        for (Job job : jobs.values()) {
+            job.stop.set(true);
+        }
+        jobs.clear();
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package server;
+
+import chess.PgnGame;
+import chess.PgnWriter;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Streams every game of a user as one PGN file. Games are pulled from the source and
+ * written to the response one at a time, so a history of any length is exported without
+ * building it in memory. Register it on a route with a {@code username} path parameter,
+ * e.g. {@code javalin.get("/export/{username}", new PgnExportHandler(source))}.
+ */
+public class PgnExportHandler implements Handler {
+
+    /**
+     * Supplies a user's games lazily, e.g. backed by a database cursor
+     */
+    @FunctionalInterface
+    public interface GameSource {
+        Stream<PgnGame> games(String username) throws Exception;
+    }
+
+    private final GameSource source;
+
+    public PgnExportHandler(GameSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public void handle(Context ctx) throws Exception {
+        String username = ctx.pathParam("username");
+        ctx.contentType("application/x-chess-pgn");
+        ctx.header("Content-Disposition", "attachment; filename=\"" + username.replace("\"", "") + ".pgn\"");
+
+        PgnWriter writer = new PgnWriter();
+        try (Stream<PgnGame> games = source.games(username);
+             OutputStream out = ctx.outputStream();
+             WritableByteChannel channel = Channels.newChannel(out)) {
+            Iterator<PgnGame> iterator = games.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next(), channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package server;
+
+import chess.Annotator;
+import chess.Engine;
+import chess.PgnGame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class AnnotationQueueTests {
+
+    private static final PgnGame GAME = PgnGame.of(Map.of(), new short[0], PgnGame.DRAW);
+
+    /**
+     * Records each game it is asked to save, then holds the worker until released
+     */
+    private static final class GatedStore implements AnnotationQueue.AnnotationStore {
+        final BlockingQueue<Integer> saving = new LinkedBlockingQueue<>();
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void save(int gameID, List<Annotator.Annotation> annotations) throws InterruptedException {
+            saving.add(gameID);
+            release.await();
+        }
+    }
+
+    private static Annotator quickAnnotator() {
+        return new Annotator().limits(Engine.Limits.depth(1));
+    }
+
+    @Test
+    @DisplayName("Drops Games When The Queue Is Full")
+    public void dropsWhenFull() throws InterruptedException {
+        GatedStore store = new GatedStore();
+        try (AnnotationQueue queue = new AnnotationQueue(store, 1, quickAnnotator())) {
+            Assertions.assertTrue(queue.submit(1, GAME));
+            Assertions.assertEquals(1, store.saving.poll(5, TimeUnit.SECONDS));
+
+            Assertions.assertTrue(queue.submit(2, GAME));
+            Assertions.assertFalse(queue.submit(3, GAME));
+            Assertions.assertEquals(1, queue.pending());
+            Assertions.assertEquals(1, queue.dropped());
+
+            store.release.countDown();
+            Assertions.assertEquals(2, store.saving.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Closing Discards Waiting Games And Refuses New Ones")
+    public void close() throws InterruptedException {
+        GatedStore store = new GatedStore();
+        AnnotationQueue queue = new AnnotationQueue(store, 4, quickAnnotator());
+        queue.submit(1, GAME);
+        Assertions.assertEquals(1, store.saving.poll(5, TimeUnit.SECONDS));
+        queue.submit(2, GAME);
+        queue.close();
+
+        Assertions.assertFalse(queue.submit(3, GAME));
+        Assertions.assertEquals(1, queue.dropped());
+        store.release.countDown();
+        Assertions.assertNull(store.saving.poll(200, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(0, queue.completed());
+    }
+}
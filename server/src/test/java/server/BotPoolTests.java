@@ -0,0 +1,159 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Engine;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BotPoolTests {
+
+    private static final ChessMove MOVE = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+    private static final Engine.Limits LIMITS = Engine.Limits.millis(60_000);
+
+    /**
+     * Searches until it is given a permit or stopped, and records each search it starts
+     */
+    private static final class GatedEngine implements Engine {
+        final Semaphore permits = new Semaphore(0);
+        final BlockingQueue<AtomicBoolean> started = new LinkedBlockingQueue<>();
+        volatile boolean fail;
+
+        @Override
+        public ChessMove bestMove(ChessGame game, Limits limits) {
+            return bestMove(game, limits, new AtomicBoolean());
+        }
+
+        @Override
+        public ChessMove bestMove(ChessGame game, Limits limits, AtomicBoolean stop) {
+            started.add(stop);
+            if (fail) {
+                throw new IllegalStateException("Search failed");
+            }
+            try {
+                while (!stop.get() && !permits.tryAcquire(5, TimeUnit.MILLISECONDS)) {
+                    // Keep searching
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return MOVE;
+        }
+    }
+
+    @Test
+    @DisplayName("Moves Are Searched In The Order Asked For")
+    public void firstInFirstOut() throws InterruptedException {
+        GatedEngine engine = new GatedEngine();
+        BlockingQueue<Integer> moved = new LinkedBlockingQueue<>();
+        try (BotPool pool = new BotPool(1, 8, 60_000, () -> engine)) {
+            for (int gameID = 1; gameID <= 4; gameID++) {
+                int id = gameID;
+                Assertions.assertTrue(pool.submit(id, new ChessGame(), LIMITS, move -> moved.add(id)));
+            }
+            engine.permits.release(4);
+            for (int gameID = 1; gameID <= 4; gameID++) {
+                Assertions.assertEquals(gameID, moved.poll(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A Game Has At Most One Move Outstanding")
+    public void oneMovePerGame() throws InterruptedException {
+        GatedEngine engine = new GatedEngine();
+        BlockingQueue<ChessMove> moved = new LinkedBlockingQueue<>();
+        try (BotPool pool = new BotPool(1, 8, 60_000, () -> engine)) {
+            Assertions.assertTrue(pool.submit(1, new ChessGame(), LIMITS, moved::add));
+            Assertions.assertFalse(pool.submit(1, new ChessGame(), LIMITS, moved::add));
+            Assertions.assertEquals(1, pool.active());
+
+            engine.permits.release();
+            Assertions.assertEquals(MOVE, moved.poll(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(pool.submit(1, new ChessGame(), LIMITS, moved::add));
+            engine.permits.release();
+            Assertions.assertEquals(MOVE, moved.poll(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Cancelling A Waiting Move Drops It")
+    public void cancelWhileQueued() throws InterruptedException {
+        GatedEngine engine = new GatedEngine();
+        BlockingQueue<Integer> moved = new LinkedBlockingQueue<>();
+        try (BotPool pool = new BotPool(1, 8, 60_000, () -> engine)) {
+            pool.submit(1, new ChessGame(), LIMITS, move -> moved.add(1));
+            Assertions.assertNotNull(engine.started.poll(5, TimeUnit.SECONDS));
+            pool.submit(2, new ChessGame(), LIMITS, move -> moved.add(2));
+            pool.submit(3, new ChessGame(), LIMITS, move -> moved.add(3));
+            pool.cancel(2);
+            Assertions.assertEquals(1, pool.waiting());
+
+            engine.permits.release(2);
+            Assertions.assertEquals(1, moved.poll(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(3, moved.poll(5, TimeUnit.SECONDS));
+            Assertions.assertEquals(1, engine.started.size());
+        }
+    }
+
+    @Test
+    @DisplayName("Cancelling A Running Search Stops It Without A Callback")
+    public void cancelWhileSearching() throws InterruptedException {
+        GatedEngine engine = new GatedEngine();
+        BlockingQueue<Integer> moved = new LinkedBlockingQueue<>();
+        try (BotPool pool = new BotPool(1, 8, 60_000, () -> engine)) {
+            pool.submit(1, new ChessGame(), LIMITS, move -> moved.add(1));
+            AtomicBoolean stop = engine.started.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(stop);
+            pool.cancel(1);
+            Assertions.assertTrue(stop.get());
+            Assertions.assertEquals(0, pool.active());
+
+            // The thread is free again without any permit for the cancelled search
+            pool.submit(2, new ChessGame(), LIMITS, move -> moved.add(2));
+            Assertions.assertNotNull(engine.started.poll(5, TimeUnit.SECONDS));
+            engine.permits.release();
+            Assertions.assertEquals(2, moved.poll(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(moved.isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Turns Away Moves When The Queue Is Full")
+    public void fullQueue() throws InterruptedException {
+        GatedEngine engine = new GatedEngine();
+        try (BotPool pool = new BotPool(1, 2, 60_000, () -> engine)) {
+            Assertions.assertTrue(pool.submit(1, new ChessGame(), LIMITS, move -> { }));
+            Assertions.assertNotNull(engine.started.poll(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(pool.submit(2, new ChessGame(), LIMITS, move -> { }));
+            Assertions.assertTrue(pool.submit(3, new ChessGame(), LIMITS, move -> { }));
+            Assertions.assertFalse(pool.submit(4, new ChessGame(), LIMITS, move -> { }));
+            Assertions.assertEquals(2, pool.waiting());
+            Assertions.assertEquals(3, pool.active());
+        }
+    }
+
+    @Test
+    @DisplayName("A Failed Search Still Gets The Game A Legal Move")
+    public void failedSearch() throws InterruptedException {
+        GatedEngine engine = new GatedEngine();
+        engine.fail = true;
+        BlockingQueue<ChessMove> moved = new LinkedBlockingQueue<>();
+        ChessGame game = new ChessGame();
+        try (BotPool pool = new BotPool(1, 8, 60_000, () -> engine)) {
+            pool.submit(1, game, LIMITS, moved::add);
+            ChessMove move = moved.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(move);
+            Assertions.assertTrue(game.validMoves(move.getStartPosition()).contains(move));
+            Assertions.assertEquals(1, pool.failed());
+        }
+    }
+}
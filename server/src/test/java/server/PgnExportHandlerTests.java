@@ -0,0 +1,52 @@
+package server;
+
+import chess.Move;
+import chess.PgnGame;
+import io.javalin.Javalin;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+public class PgnExportHandlerTests {
+
+    @Test
+    @DisplayName("Streams Every Game With PGN Headers")
+    public void streamsGames() throws Exception {
+        PgnGame first = PgnGame.of(Map.of("White", "alice"), new short[]{(short) Move.of(12, 28)}, PgnGame.WHITE_WINS);
+        PgnGame second = PgnGame.of(Map.of("White", "alice"), new short[]{(short) Move.of(11, 27)}, PgnGame.DRAW);
+        AtomicBoolean closed = new AtomicBoolean();
+        PgnExportHandler handler = new PgnExportHandler(username -> {
+            Assertions.assertEquals("alice", username);
+            return Stream.of(first, second).onClose(() -> closed.set(true));
+        });
+
+        Javalin app = Javalin.create().get("/export/{username}", handler).start(0);
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + "/export/alice")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assertions.assertEquals(200, response.statusCode());
+            Assertions.assertEquals("application/x-chess-pgn",
+                    response.headers().firstValue("Content-Type").orElse("").split(";")[0]);
+            Assertions.assertEquals("attachment; filename=\"alice.pgn\"",
+                    response.headers().firstValue("Content-Disposition").orElse(""));
+
+            String body = response.body();
+            Assertions.assertEquals(2, body.split("\\[White \"alice\"]", -1).length - 1, body);
+            Assertions.assertTrue(body.contains("1. e4 1-0"), body);
+            Assertions.assertTrue(body.contains("1. d4 1/2-1/2"), body);
+            Assertions.assertTrue(body.indexOf("1. e4") < body.indexOf("1. d4"), body);
+            Assertions.assertTrue(closed.get());
+        } finally {
+            app.stop();
+        }
+    }
+}
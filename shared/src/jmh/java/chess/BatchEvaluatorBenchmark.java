@@ -0,0 +1,72 @@
+package chess;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and Vector API batch evaluators on positions from random games.
+ * Build with {@code mvn -Pjmh -pl shared package} and run with
+ * {@code java --add-modules jdk.incubator.vector -cp shared/target/shared-test-dependencies.jar
+ * org.openjdk.jmh.Main BatchEvaluator}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BatchEvaluatorBenchmark {
+
+    @Param({"4096"})
+    public int boards;
+
+    private BoardBatch batch;
+    private int[] scores;
+    private final BatchEvaluator scalar = BatchEvaluator.scalar();
+    private final BatchEvaluator vector = BatchEvaluator.create();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        batch = new BoardBatch(boards);
+        scores = new int[boards];
+        Random random = new Random(36);
+        int[] moves = new int[Position.MAX_MOVES];
+        while (!batch.isFull()) {
+            Position position = Fen.parse(Fen.START);
+            for (int ply = 0; ply < 80 && !batch.isFull(); ply++) {
+                int count = position.legalMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                position.make(moves[random.nextInt(count)]);
+                position.forgetMoves();
+                batch.add(position);
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] scalar() {
+        scalar.evaluate(batch, scores);
+        return scores;
+    }
+
+    @Benchmark
+    public int[] vector() {
+        vector.evaluate(batch, scores);
+        return scores;
+    }
+}
@@ -0,0 +1,172 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * The hidden layer of a {@link Network} for one position, for both sides, kept up to
+ * date as pieces come and go instead of being summed from scratch for every evaluation.
+ * <p>
+ * Attach one to a {@link Position} with {@link Position#setAccumulator} or to a
+ * {@link ChessBoard} with {@link ChessBoard#setAccumulator}, and it hears of every piece
+ * added and removed. A move pushes a new level and an undo pops it, so taking a move
+ * back costs nothing. Levels are filled in lazily: a move only notes which pieces
+ * changed, and the sums are brought up to date when the position is evaluated, so the
+ * trial moves of legality checks cost next to nothing either.
+ */
+public final class Accumulator {
+
+    /**
+     * More than a move makes: capture, piece lifted, piece placed, and a castling rook's two
+     */
+    private static final int MAX_CHANGES = 6;
+    private static final int ADDED = 1 << 12;
+
+    private final Network network;
+    private final int width;
+    /**
+     * Per level, white's hidden values then black's
+     */
+    private short[] values;
+    private boolean[] computed;
+    private int[] changes;
+    private int[] changeCounts;
+    private int level;
+
+    public Accumulator(Network network) {
+        this.network = network;
+        this.width = 2 * network.hidden;
+        int levels = 64;
+        values = new short[levels * width];
+        computed = new boolean[levels];
+        changes = new int[levels * MAX_CHANGES];
+        changeCounts = new int[levels];
+        reset();
+    }
+
+    /**
+     * Empties the board: every level is dropped and the values are the biases
+     */
+    public void reset() {
+        level = 0;
+        System.arraycopy(network.hiddenBiases, 0, values, 0, network.hidden);
+        System.arraycopy(network.hiddenBiases, 0, values, network.hidden, network.hidden);
+        computed[0] = true;
+        changeCounts[0] = 0;
+    }
+
+    /**
+     * Sums the values from scratch for every piece of a position
+     */
+    public void refresh(Position position) {
+        reset();
+        for (int sq = 0; sq < 64; sq++) {
+            if (position.piece(sq) != Position.EMPTY) {
+                add(position.piece(sq), sq);
+            }
+        }
+    }
+
+    /**
+     * Notes a piece, as a {@link Position} piece code, placed on a square
+     */
+    public void add(int piece, int square) {
+        change(piece << 6 | square | ADDED);
+    }
+
+    public void remove(int piece, int square) {
+        change(piece << 6 | square);
+    }
+
+    /**
+     * Starts a level for a move, on top of the current one
+     */
+    void push() {
+        level++;
+        if (level == computed.length) {
+            int levels = computed.length * 2;
+            values = Arrays.copyOf(values, levels * width);
+            computed = Arrays.copyOf(computed, levels);
+            changes = Arrays.copyOf(changes, levels * MAX_CHANGES);
+            changeCounts = Arrays.copyOf(changeCounts, levels);
+        }
+        computed[level] = false;
+        changeCounts[level] = 0;
+    }
+
+    /**
+     * Drops the current level, going back to the position before the move
+     */
+    void pop() {
+        level--;
+    }
+
+    /**
+     * Makes the current level the only one, for when the moves before it are forgotten
+     */
+    void collapse() {
+        if (level > 0) {
+            update(level);
+            System.arraycopy(values, level * width, values, 0, width);
+            level = 0;
+        }
+    }
+
+    /**
+     * @param sideToMove a {@link Position} color
+     * @return the network's score in centipawns for the side to move
+     */
+    public int evaluate(int sideToMove) {
+        update(level);
+        int at = level * width;
+        int hidden = network.hidden;
+        return sideToMove == Position.WHITE
+                ? network.output(values, at, at + hidden)
+                : network.output(values, at + hidden, at);
+    }
+
+    private void change(int change) {
+        if (computed[level]) {
+            apply(level, change);
+            return;
+        }
+        if (changeCounts[level] == MAX_CHANGES) {
+            update(level);
+            apply(level, change);
+            return;
+        }
+        changes[level * MAX_CHANGES + changeCounts[level]++] = change;
+    }
+
+    /**
+     * Brings a level up to date from the last computed level below it
+     */
+    private void update(int target) {
+        int from = target;
+        while (!computed[from]) {
+            from--;
+        }
+        for (int l = from + 1; l <= target; l++) {
+            System.arraycopy(values, (l - 1) * width, values, l * width, width);
+            for (int c = 0; c < changeCounts[l]; c++) {
+                apply(l, changes[l * MAX_CHANGES + c]);
+            }
+            computed[l] = true;
+        }
+    }
+
+    private void apply(int level, int change) {
+        int piece = change >> 6 & 15;
+        int square = change & 63;
+        int hidden = network.hidden;
+        int at = level * width;
+        int white = Network.input(Position.WHITE, piece, square) * hidden;
+        int black = Network.input(Position.BLACK, piece, square) * hidden;
+        if ((change & ADDED) != 0) {
+            network.kernel.add(values, at, network.inputWeights, white, hidden);
+            network.kernel.add(values, at + hidden, network.inputWeights, black, hidden);
+        } else {
+            network.kernel.subtract(values, at, network.inputWeights, white, hidden);
+            network.kernel.subtract(values, at + hidden, network.inputWeights, black, hidden);
+        }
+    }
+}
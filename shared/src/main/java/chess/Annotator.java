@@ -0,0 +1,152 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Flags the inaccuracies, mistakes and blunders of a finished game.
+ * <p>
+ * Every position of the game gets a short {@link Search}. A move's loss is how much
+ * worse the position after it is for the player who made it than the best the search
+ * found before it, so a game of n moves costs n + 1 searches. Scores are capped at
+ * {@value #SCORE_CAP} centipawns either way, so choosing a slower mate or a winning
+ * position over a mate is not called a blunder. The search's table is kept between
+ * positions and games, which makes each position after the first cheaper.
+ */
+public final class Annotator {
+
+    private static final int SCORE_CAP = 1000;
+
+    /**
+     * How bad a move was, by the centipawns it lost
+     */
+    public enum Judgement {
+        INACCURACY(50, "?!"),
+        MISTAKE(100, "?"),
+        BLUNDER(300, "??");
+
+        private final int loss;
+        private final String symbol;
+
+        Judgement(int loss, String symbol) {
+            this.loss = loss;
+            this.symbol = symbol;
+        }
+
+        /**
+         * @return the least loss that earns this judgement
+         */
+        public int loss() {
+            return loss;
+        }
+
+        /**
+         * @return the move suffix for this judgement, such as "??"
+         */
+        public String symbol() {
+            return symbol;
+        }
+
+        /**
+         * @return the judgement for a loss, or null if the move was good enough
+         */
+        public static Judgement of(int loss) {
+            Judgement judgement = null;
+            for (Judgement candidate : values()) {
+                if (loss >= candidate.loss) {
+                    judgement = candidate;
+                }
+            }
+            return judgement;
+        }
+    }
+
+    /**
+     * A move that lost enough to be flagged
+     *
+     * @param ply      the moves played before it, counting from 0
+     * @param move     the move played, packed as in {@link Move}
+     * @param bestMove what the search preferred
+     * @param loss     the centipawns the move lost, for the player who made it
+     */
+    public record Annotation(int ply, int move, int bestMove, int loss, Judgement judgement) {
+    }
+
+    private final Search search;
+    /**
+     * Depth 6, but never more than a quarter second, so a sharp position cannot hold up the game's annotation
+     */
+    private Engine.Limits limits = new Engine.Limits(6, 0, 250);
+    private final AtomicBoolean stop = new AtomicBoolean();
+
+    public Annotator() {
+        this(new Search(new TranspositionTable(8), Evaluation.standard()));
+    }
+
+    /**
+     * @param search the search scoring every position; used by one annotation at a time
+     */
+    public Annotator(Search search) {
+        this.search = search;
+    }
+
+    /**
+     * Sets how long each position is searched for
+     */
+    public Annotator limits(Engine.Limits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Annotates every move of a game that could be replayed
+     *
+     * @return the flagged moves, in game order
+     * @throws IllegalArgumentException if the game's start position is not valid FEN
+     */
+    public List<Annotation> annotate(PgnGame game) {
+        Position position = Fen.parse(game.startFen());
+        List<Annotation> annotations = new ArrayList<>();
+        int[] bestMoves = new int[1];
+        int before = score(position, bestMoves);
+        for (int ply = 0; ply < game.moveCount() && !stop.get(); ply++) {
+            int move = game.move(ply);
+            int bestMove = bestMoves[0];
+            position.make(move);
+            if (position.halfmoveClock() == 0) {
+                position.forgetMoves();
+            }
+            int after = score(position, bestMoves);
+            int loss = move == bestMove ? 0 : Math.max(0, before + after);
+            Judgement judgement = Judgement.of(loss);
+            if (judgement != null && !stop.get()) {
+                annotations.add(new Annotation(ply, move, bestMove, loss, judgement));
+            }
+            before = after;
+        }
+        return annotations;
+    }
+
+    /**
+     * Stops annotating for good: the game being annotated returns what was flagged so far
+     * and later games return nothing. Safe to call from any thread.
+     */
+    public void stop() {
+        stop.set(true);
+    }
+
+    /**
+     * @param bestMove receives the best move, or {@link Move#NONE} if the game is over
+     * @return the capped score for the side to move
+     */
+    private int score(Position position, int[] bestMove) {
+        if (!position.hasLegalMove()) {
+            bestMove[0] = Move.NONE;
+            return position.inCheck() ? -SCORE_CAP : 0;
+        }
+        Search.Info info = search.search(position, limits, stop);
+        bestMove[0] = info.bestMove();
+        return Math.max(-SCORE_CAP, Math.min(SCORE_CAP, info.score()));
+    }
+}
@@ -0,0 +1,354 @@
+package chess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Replays every game of a PGN archive through {@link ChessGame} and reports what it finds.
+ * <p>
+ * One thread reads games with a {@link PgnReader} and hands them, in batches, to worker
+ * threads through a bounded queue; a full queue stalls the reader, so memory stays flat
+ * however large the archive. Workers replay each game, work out its final status and
+ * check it against the recorded result. The calling thread puts the batches back in
+ * archive order, passes each {@link GameReport} to the game listener and keeps the
+ * {@link Summary}. Running {@code main} checks files from the command line:
+ * {@code java chess.ArchiveVerifier games.pgn}.
+ */
+public final class ArchiveVerifier {
+
+    private static final int BATCH_SIZE = 64;
+    private static final int BATCHES_PER_THREAD = 4;
+
+    private final int threads;
+    private Consumer<GameReport> gameListener = report -> {
+    };
+    private Consumer<Progress> progressListener = progress -> {
+    };
+    private long progressIntervalNanos = 1_000_000_000L;
+
+    public ArchiveVerifier() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads the number of worker threads replaying games
+     */
+    public ArchiveVerifier(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the listener called with every game's report, in archive order, on the thread
+     * running {@link #verify}
+     */
+    public ArchiveVerifier onGame(Consumer<GameReport> listener) {
+        this.gameListener = listener;
+        return this;
+    }
+
+    /**
+     * Sets the listener called with progress at most once per interval, and once at the end
+     */
+    public ArchiveVerifier onProgress(Consumer<Progress> listener, long intervalMillis) {
+        this.progressListener = listener;
+        this.progressIntervalNanos = intervalMillis * 1_000_000L;
+        return this;
+    }
+
+    public Summary verify(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return verify(channel);
+        }
+    }
+
+    public Summary verify(InputStream in) throws IOException {
+        return verify(new PgnReader(in));
+    }
+
+    public Summary verify(ReadableByteChannel channel) throws IOException {
+        return verify(new PgnReader(channel));
+    }
+
+    private Summary verify(PgnReader reader) throws IOException {
+        Run run = new Run(reader);
+        try {
+            return run.aggregate();
+        } finally {
+            run.stop();
+        }
+    }
+
+    /**
+     * Replays one game
+     */
+    static GameReport check(long index, PgnGame game) {
+        if (game.error() != null) {
+            return new GameReport(index, game, game.moveCount(), null, game.error());
+        }
+        ChessGame replay;
+        try {
+            replay = ChessGame.of(Fen.parse(game.startFen()));
+        } catch (IllegalArgumentException e) {
+            return new GameReport(index, game, 0, null, e.getMessage());
+        }
+        int illegal = replay.applyAll(game.moves());
+        if (illegal >= 0) {
+            return new GameReport(index, game, illegal, null, "Illegal move at ply " + (illegal + 1));
+        }
+        ChessGame.GameStatus status = replay.getGameStatus();
+        if (status == ChessGame.GameStatus.CHECKMATE) {
+            String winner = replay.getTeamTurn() == ChessGame.TeamColor.WHITE ? PgnGame.BLACK_WINS : PgnGame.WHITE_WINS;
+            if (!game.result().equals(winner) && !game.result().equals(PgnGame.UNKNOWN)) {
+                return new GameReport(index, game, game.moveCount(), status,
+                        "Result " + game.result() + " after checkmate");
+            }
+        }
+        return new GameReport(index, game, game.moveCount(), status, null);
+    }
+
+    /**
+     * What replaying one game found
+     *
+     * @param index  the game's position in the archive, counting from 0
+     * @param plies  the moves that could be replayed
+     * @param status the status after the last move, or null if the game could not be replayed
+     * @param error  what was wrong with the game, or null if nothing was
+     */
+    public record GameReport(long index, PgnGame game, int plies, ChessGame.GameStatus status, String error) {
+        public boolean isValid() {
+            return error == null;
+        }
+    }
+
+    public record Progress(long games, long plies, long bytes, long elapsedNanos) {
+        public double gamesPerSecond() {
+            return elapsedNanos > 0 ? games * 1e9 / elapsedNanos : 0;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos > 0 ? bytes * 1e3 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d games, %,d plies, %.1f MB, %,.0f games/s, %.1f MB/s",
+                    games, plies, bytes / 1e6, gamesPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    /**
+     * Totals over a whole archive
+     *
+     * @param statuses how many valid games ended in each status
+     * @param results  how many games carried each result token
+     */
+    public record Summary(Progress progress, long invalidGames, Map<ChessGame.GameStatus, Long> statuses,
+                          Map<String, Long> results) {
+        public long games() {
+            return progress.games();
+        }
+
+        @Override
+        public String toString() {
+            return progress + System.lineSeparator() + invalidGames + " invalid, " + statuses + ", " + results;
+        }
+    }
+
+    /**
+     * A slice of the archive on its way through the pipeline. The reader marks the last
+     * one with {@code end}; a thread that fails sends one carrying its exception.
+     */
+    private static final class Batch {
+        final long sequence;
+        final long firstIndex;
+        final List<PgnGame> games = new ArrayList<>(BATCH_SIZE);
+        final List<GameReport> reports = new ArrayList<>(BATCH_SIZE);
+        boolean end;
+        Throwable failure;
+
+        Batch(long sequence, long firstIndex) {
+            this.sequence = sequence;
+            this.firstIndex = firstIndex;
+        }
+    }
+
+    private final class Run {
+        private final PgnReader reader;
+        private final BlockingQueue<Batch> work;
+        private final BlockingQueue<Batch> done;
+        /**
+         * Bounds the batches between the reader and the aggregator, including ones
+         * held back waiting for an earlier batch
+         */
+        private final Semaphore inFlight;
+        private final List<Thread> running = new ArrayList<>();
+        private final long start = System.nanoTime();
+        private volatile long bytesRead;
+
+        Run(PgnReader reader) {
+            this.reader = reader;
+            int capacity = threads * BATCHES_PER_THREAD;
+            this.work = new ArrayBlockingQueue<>(capacity);
+            this.done = new ArrayBlockingQueue<>(capacity + threads + 1);
+            this.inFlight = new Semaphore(capacity);
+            start("archive-reader", this::read);
+            for (int i = 0; i < threads; i++) {
+                start("archive-worker-" + i, this::work);
+            }
+        }
+
+        private void start(String name, Runnable task) {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            running.add(thread);
+            thread.start();
+        }
+
+        private void read() {
+            long sequence = 0;
+            long index = 0;
+            try {
+                PgnGame game = new PgnGame();
+                Batch batch = null;
+                while (reader.next(game)) {
+                    if (batch == null) {
+                        batch = new Batch(sequence++, index);
+                    }
+                    batch.games.add(game.copy());
+                    index++;
+                    if (batch.games.size() == BATCH_SIZE) {
+                        send(batch);
+                        batch = null;
+                    }
+                }
+                if (batch != null) {
+                    send(batch);
+                }
+                Batch end = new Batch(sequence, index);
+                end.end = true;
+                inFlight.acquire();
+                done.put(end);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void send(Batch batch) throws InterruptedException {
+            inFlight.acquire();
+            work.put(batch);
+            bytesRead = reader.bytesRead();
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    Batch batch = work.take();
+                    for (int i = 0; i < batch.games.size(); i++) {
+                        batch.reports.add(check(batch.firstIndex + i, batch.games.get(i)));
+                    }
+                    done.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable e) {
+            Batch failed = new Batch(-1, -1);
+            failed.failure = e;
+            // done has room for every batch in flight plus one failure per thread, so this never blocks
+            done.offer(failed);
+        }
+
+        Summary aggregate() throws IOException {
+            Map<Long, Batch> waiting = new HashMap<>();
+            Map<ChessGame.GameStatus, Long> statuses = new EnumMap<>(ChessGame.GameStatus.class);
+            Map<String, Long> results = new HashMap<>();
+            long next = 0;
+            long games = 0;
+            long plies = 0;
+            long invalid = 0;
+            long lastProgress = start;
+            try {
+                while (true) {
+                    Batch batch = done.take();
+                    if (batch.failure != null) {
+                        throw batch.failure instanceof IOException io ? io : new IOException(batch.failure);
+                    }
+                    waiting.put(batch.sequence, batch);
+                    while ((batch = waiting.remove(next)) != null) {
+                        next++;
+                        inFlight.release();
+                        if (batch.end) {
+                            Progress progress = new Progress(games, plies, reader.bytesRead(), System.nanoTime() - start);
+                            progressListener.accept(progress);
+                            return new Summary(progress, invalid, statuses, results);
+                        }
+                        for (GameReport report : batch.reports) {
+                            games++;
+                            plies += report.plies();
+                            if (report.isValid()) {
+                                statuses.merge(report.status(), 1L, Long::sum);
+                            } else {
+                                invalid++;
+                            }
+                            results.merge(report.game().result(), 1L, Long::sum);
+                            gameListener.accept(report);
+                        }
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastProgress >= progressIntervalNanos) {
+                        lastProgress = now;
+                        progressListener.accept(new Progress(games, plies, bytesRead, now - start));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while verifying archive", e);
+            }
+        }
+
+        void stop() {
+            for (Thread thread : running) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: ArchiveVerifier <pgn file>...");
+            return;
+        }
+        ArchiveVerifier verifier = new ArchiveVerifier()
+                .onGame(report -> {
+                    if (!report.isValid()) {
+                        System.out.println("Game " + (report.index() + 1) + ": " + report.error());
+                    }
+                })
+                .onProgress(progress -> System.err.println(progress), 5000);
+        for (String file : args) {
+            System.out.println(file + ": " + verifier.verify(Path.of(file)));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package chess;
+
+/**
+ * Scores every board of a {@link BoardBatch} at once, in centipawns from white's point
+ * of view.
+ * <p>
+ * The evaluation is linear in masked piece counts: for each bitboard column it adds
+ * {@code weight * bitCount(bitboard & mask)} over a fixed set of terms (material,
+ * centralization, advanced pawns, rooks on the seventh, king shelter), with black's
+ * masks mirrored and weights negated. That shape needs no branching per board, so
+ * {@link #create()} returns an implementation that runs it on many boards per
+ * instruction with the Vector API when the {@code jdk.incubator.vector} module is
+ * available (run with {@code --add-modules jdk.incubator.vector}), and this scalar
+ * loop otherwise. Both give identical scores.
+ */
+public class BatchEvaluator {
+
+    private static final long ALL = -1L;
+    private static final long CENTER = 0x0000001818000000L;
+    private static final long EXTENDED_CENTER = 0x00003C3C3C3C0000L;
+    private static final long EDGES = 0xFF818181818181FFL;
+    private static final long RANK_6_AND_7 = 0x00FFFF0000000000L;
+    private static final long RANK_7 = 0x00FF000000000000L;
+    private static final long KING_SHELTER = 0x00000000000000C7L;
+
+    /**
+     * Per column, the masks and weights of its terms
+     */
+    static final long[][] MASKS = new long[BoardBatch.COLUMNS][];
+    static final long[][] WEIGHTS = new long[BoardBatch.COLUMNS][];
+
+    static {
+        long[][] whiteMasks = {
+                {ALL, CENTER, RANK_6_AND_7},
+                {ALL, EXTENDED_CENTER, EDGES},
+                {ALL, EXTENDED_CENTER},
+                {ALL, RANK_7},
+                {ALL},
+                {KING_SHELTER},
+        };
+        long[][] whiteWeights = {
+                {100, 20, 30},
+                {320, 15, -15},
+                {330, 10},
+                {500, 20},
+                {900},
+                {20},
+        };
+        for (int type = 0; type < 6; type++) {
+            int terms = whiteMasks[type].length;
+            MASKS[type] = whiteMasks[type];
+            WEIGHTS[type] = whiteWeights[type];
+            MASKS[type + 6] = new long[terms];
+            WEIGHTS[type + 6] = new long[terms];
+            for (int t = 0; t < terms; t++) {
+                // Reversing the bytes flips the board vertically, giving black's view of the mask
+                MASKS[type + 6][t] = Long.reverseBytes(whiteMasks[type][t]);
+                WEIGHTS[type + 6][t] = -whiteWeights[type][t];
+            }
+        }
+    }
+
+    BatchEvaluator() {
+    }
+
+    /**
+     * @return the fastest evaluator this JVM supports
+     */
+    public static BatchEvaluator create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (BatchEvaluator) Class.forName("chess.VectorBatchEvaluator")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to the scalar loop
+            }
+        }
+        return scalar();
+    }
+
+    /**
+     * @return the plain Java evaluator, for comparison
+     */
+    public static BatchEvaluator scalar() {
+        return new BatchEvaluator();
+    }
+
+    public boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Scores the boards of a batch
+     *
+     * @param scores receives one score per board, at least {@link BoardBatch#size()} long
+     */
+    public void evaluate(BoardBatch batch, int[] scores) {
+        evaluateRange(batch, scores, 0, batch.size());
+    }
+
+    /**
+     * Scores boards {@code from} (inclusive) to {@code to} (exclusive) one at a time
+     */
+    final void evaluateRange(BoardBatch batch, int[] scores, int from, int to) {
+        for (int board = from; board < to; board++) {
+            long score = 0;
+            for (int column = 0; column < BoardBatch.COLUMNS; column++) {
+                long bitboard = batch.columnArray(column)[board];
+                long[] masks = MASKS[column];
+                long[] weights = WEIGHTS[column];
+                for (int t = 0; t < masks.length; t++) {
+                    score += weights[t] * Long.bitCount(bitboard & masks[t]);
+                }
+            }
+            scores[board] = (int) score;
+        }
+    }
+}
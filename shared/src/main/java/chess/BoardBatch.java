@@ -0,0 +1,86 @@
+package chess;
+
+/**
+ * Many positions stored column by column for bulk evaluation: one {@code long[]} of
+ * bitboards per piece kind, indexed by board, so the same piece kind of consecutive
+ * boards sits side by side in memory. Bit {@code sq} of a bitboard is the square
+ * {@code sq} of {@link Position}.
+ */
+public final class BoardBatch {
+
+    /**
+     * The number of bitboard columns: six white piece types, then six black
+     */
+    public static final int COLUMNS = 12;
+
+    private final long[][] columns;
+    private final byte[] sideToMove;
+    private int size;
+
+    public BoardBatch(int capacity) {
+        this.columns = new long[COLUMNS][capacity];
+        this.sideToMove = new byte[capacity];
+    }
+
+    /**
+     * @return the column holding a piece code's bitboards
+     */
+    public static int column(int piece) {
+        return Position.type(piece) - 1 + (Position.color(piece) == Position.WHITE ? 0 : 6);
+    }
+
+    /**
+     * Appends a position
+     *
+     * @return its index in the batch
+     * @throws IllegalStateException if the batch is full
+     */
+    public int add(Position position) {
+        if (size == sideToMove.length) {
+            throw new IllegalStateException("Batch is full");
+        }
+        int board = size++;
+        for (int column = 0; column < COLUMNS; column++) {
+            columns[column][board] = 0;
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.piece(sq);
+            if (piece != Position.EMPTY) {
+                columns[column(piece)][board] |= 1L << sq;
+            }
+        }
+        sideToMove[board] = (byte) position.sideToMove();
+        return board;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return sideToMove.length;
+    }
+
+    public boolean isFull() {
+        return size == sideToMove.length;
+    }
+
+    /**
+     * @return the column array itself, for evaluators; only the first {@link #size()} entries are boards
+     */
+    long[] columnArray(int column) {
+        return columns[column];
+    }
+
+    public long bitboard(int column, int board) {
+        return columns[column][board];
+    }
+
+    public int sideToMove(int board) {
+        return sideToMove[board];
+    }
+}
@@ -11,6 +11,10 @@ import java.util.Objects;
  */
 public class ChessBoard {
     private ChessPiece [][] squares = new ChessPiece[8][8];
+    private long zobristKey;
+    private long flippedZobristKey;
+    private long pawnZobristKey;
+    private Accumulator accumulator;
 
     @Override
     public boolean equals(Object o) {
@@ -30,6 +34,21 @@ public class ChessBoard {
         
     }
 
+    /**
+     * Creates a copy of another board. Pieces are immutable, so only the
+     * squares array is duplicated.
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        for (int r = 0; r < 8; r++) {
+            squares[r] = other.squares[r].clone();
+        }
+        zobristKey = other.zobristKey;
+        flippedZobristKey = other.flippedZobristKey;
+        pawnZobristKey = other.pawnZobristKey;
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
@@ -37,6 +56,19 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
+        ChessPiece old = squares[position.getRow() - 1][position.getColumn() - 1];
+        zobristKey ^= Zobrist.piece(old, position) ^ Zobrist.piece(piece, position);
+        flippedZobristKey ^= Zobrist.flippedPiece(old, position) ^ Zobrist.flippedPiece(piece, position);
+        pawnZobristKey ^= Zobrist.pawn(old, position) ^ Zobrist.pawn(piece, position);
+        if (accumulator != null) {
+            int square = Move.square(position);
+            if (old != null) {
+                accumulator.remove(Position.piece(old), square);
+            }
+            if (piece != null) {
+                accumulator.add(Position.piece(piece), square);
+            }
+        }
         squares[position.getRow() - 1][position.getColumn() - 1] = piece;
     }
 
@@ -51,6 +83,63 @@ public class ChessBoard {
         return squares[position.getRow() - 1][position.getColumn() - 1];
     }
 
+    /**
+     * @return the piece on a square numbered as in {@link Move}, or null
+     */
+    ChessPiece piece(int square) {
+        return squares[square >> 3][square & 7];
+    }
+
+    /**
+     * Gets the Zobrist hash of the pieces on the board, kept up to date as pieces
+     * are added and removed. Side to move, castling and en passant are not included;
+     * see {@link ChessGame#getZobristKey()} for the key of the whole position.
+     *
+     * @return the hash of the piece placement
+     */
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Gets the Zobrist hash of this board mirrored top to bottom with the colors swapped
+     *
+     * @return the hash of the flipped piece placement
+     */
+    public long getFlippedZobristKey() {
+        return flippedZobristKey;
+    }
+
+    /**
+     * Gets the Zobrist hash of the pawns alone, which changes only on pawn moves and
+     * captures of pawns, for caching pawn structure evaluation
+     *
+     * @return the hash of the pawn placement, matching {@link Position#pawnKey()}
+     */
+    public long getPawnZobristKey() {
+        return pawnZobristKey;
+    }
+
+    /**
+     * Attaches a network accumulator that follows every piece added or removed from now
+     * on, refreshed from the current pieces; null detaches it. Copies of the board do not
+     * share it.
+     *
+     * @param accumulator the accumulator, or null
+     */
+    public void setAccumulator(Accumulator accumulator) {
+        this.accumulator = accumulator;
+        if (accumulator != null) {
+            accumulator.reset();
+            for (int sq = 0; sq < 64; sq++) {
+                ChessPiece piece = getPiece(Move.position(sq));
+                if (piece != null) {
+                    accumulator.add(Position.piece(piece), sq);
+                }
+            }
+        }
+    }
+
     /**
      * Sets the board to the default starting board
      * (How the game of chess normally starts)
@@ -1,6 +1,9 @@
 package chess;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * For a class that can manage a chess game, making moves on a board
@@ -10,15 +13,87 @@ import java.util.Collection;
  */
 public class ChessGame {
 
+    private static final int[][] ROOK_DIRECTIONS = {{0, 1}, {1, 0}, {-1, 0}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_OFFSETS = {
+            {2, 1}, {2, -1}, {-1, 2}, {1, 2}, {-2, 1}, {-2, -1}, {1, -2}, {-1, -2}
+    };
+    /**
+     * Enough positions to cover the 75-move rule; must be a power of two
+     */
+    private static final int HISTORY_SIZE = 256;
+
+    private ChessBoard board;
+    private TeamColor teamTurn;
+    private int castlingRights;
+    private ChessPosition enPassantTarget;
+    private int halfmoveClock;
+    /**
+     * Ring buffer of the Zobrist keys of every position since the last capture or
+     * pawn move, ending with the current one
+     */
+    private long[] keyHistory = new long[HISTORY_SIZE];
+    private int historyEnd;
+    private int historyLength;
+    /**
+     * Every piece's valid moves, maintained move by move; null unless incremental moves are on
+     */
+    private LegalMoveTable moveTable;
+
     public ChessGame() {
+        board = new ChessBoard();
+        board.resetBoard();
+        teamTurn = TeamColor.WHITE;
+        castlingRights = Position.WHITE_KINGSIDE | Position.WHITE_QUEENSIDE
+                | Position.BLACK_KINGSIDE | Position.BLACK_QUEENSIDE;
+        resetHistory();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ChessGame that = (ChessGame) o;
+        return Objects.equals(board, that.board) && teamTurn == that.teamTurn;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(board, teamTurn);
+    }
+
+    /**
+     * Creates a game in the state of a position, with no earlier history
+     *
+     * @param position the position to start from
+     * @return a new game
+     */
+    public static ChessGame of(Position position) {
+        ChessGame game = new ChessGame();
+        game.loadFrom(position);
+        game.historyLength = 0;
+        game.recordPosition();
+        return game;
+    }
 
+    /**
+     * @return an independent copy of the game as it stands, with the positions it can
+     * still repeat
+     */
+    public ChessGame copy() {
+        ChessGame copy = of(Position.of(this));
+        copy.keyHistory = keyHistory.clone();
+        copy.historyEnd = historyEnd;
+        copy.historyLength = historyLength;
+        return copy;
     }
 
     /**
      * @return Which team's turn it is
      */
     public TeamColor getTeamTurn() {
-        throw new RuntimeException("Not implemented");
+        return teamTurn;
     }
 
     /**
@@ -27,7 +102,8 @@ public class ChessGame {
      * @param team the team whose turn it is
      */
     public void setTeamTurn(TeamColor team) {
-        throw new RuntimeException("Not implemented");
+        teamTurn = team;
+        resetHistory();
     }
 
     /**
@@ -38,6 +114,17 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * Enum identifying whether a game is still going and, if not, why it ended
+     */
+    public enum GameStatus {
+        IN_PROGRESS,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE
+    }
+
     /**
      * Gets a valid moves for a piece at the given location
      *
@@ -46,7 +133,52 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        throw new RuntimeException("Not implemented");
+        if (moveTable != null) {
+            return moveTable.validMoves(startPosition);
+        }
+        return computeValidMoves(startPosition);
+    }
+
+    /**
+     * Turns incremental move maintenance on or off. While it is on, every piece's valid
+     * moves are kept in a table that each move only partly recomputes, so
+     * {@link #validMoves} is a lookup and returns an immutable collection. This suits
+     * games where the moves of many pieces are asked for after every move.
+     *
+     * @param enabled whether to maintain the table
+     */
+    public void setIncrementalMoves(boolean enabled) {
+        moveTable = enabled ? new LegalMoveTable(this) : null;
+    }
+
+    public boolean isIncrementalMoves() {
+        return moveTable != null;
+    }
+
+    /**
+     * @return how many squares the incremental table has recomputed, or 0 when it is off
+     */
+    long moveTableRecomputed() {
+        return moveTable == null ? 0 : moveTable.recomputed();
+    }
+
+    Collection<ChessMove> computeValidMoves(ChessPosition startPosition) {
+        ChessPiece piece = board.getPiece(startPosition);
+        if (piece == null) {
+            return null;
+        }
+        Collection<ChessMove> candidates = new ArrayList<>(piece.pieceMoves(board, startPosition));
+        addSpecialMoves(piece, startPosition, candidates);
+
+        Collection<ChessMove> valid = new ArrayList<>();
+        for (ChessMove move : candidates) {
+            ChessBoard copy = new ChessBoard(board);
+            applyMove(copy, move);
+            if (!isInCheck(copy, piece.getTeamColor())) {
+                valid.add(move);
+            }
+        }
+        return valid;
     }
 
     /**
@@ -56,7 +188,164 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
-        throw new RuntimeException("Not implemented");
+        ChessPosition start = move.getStartPosition();
+        ChessPiece piece = board.getPiece(start);
+        if (piece == null) {
+            throw new InvalidMoveException("No piece at " + start);
+        }
+        if (piece.getTeamColor() != teamTurn) {
+            throw new InvalidMoveException("It is " + teamTurn + "'s turn");
+        }
+        if (!validMoves(start).contains(move)) {
+            throw new InvalidMoveException("Illegal move: " + move);
+        }
+
+        ChessPosition end = move.getEndPosition();
+        boolean irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN || board.getPiece(end) != null;
+        boolean tracked = moveTable != null && moveTable.isCurrent(getZobristKey());
+        boolean[] inCheck = null;
+        long epPawns = 0;
+        if (tracked) {
+            inCheck = new boolean[]{isInCheck(TeamColor.WHITE), isInCheck(TeamColor.BLACK)};
+            epPawns = enPassantPawns();
+        }
+        long changed = changedSquares(piece, move);
+        applyMove(board, move);
+
+        castlingRights &= ~(castlingMask(start) | castlingMask(end));
+        enPassantTarget = null;
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN
+                && Math.abs(end.getRow() - start.getRow()) == 2) {
+            enPassantTarget = new ChessPosition((start.getRow() + end.getRow()) / 2, start.getColumn());
+        }
+        teamTurn = opponent(teamTurn);
+
+        if (irreversible) {
+            halfmoveClock = 0;
+            historyLength = 0;
+        } else {
+            halfmoveClock++;
+        }
+        recordPosition();
+
+        if (tracked) {
+            inCheck[0] |= isInCheck(TeamColor.WHITE);
+            inCheck[1] |= isInCheck(TeamColor.BLACK);
+            moveTable.update(changed, inCheck, epPawns | enPassantPawns());
+        }
+    }
+
+    /**
+     * @return the squares a move changes, as a bit mask of {@link Position} squares
+     */
+    private long changedSquares(ChessPiece piece, ChessMove move) {
+        int from = Move.square(move.getStartPosition());
+        int to = Move.square(move.getEndPosition());
+        long changed = 1L << from | 1L << to;
+        if (piece.getPieceType() == ChessPiece.PieceType.KING && Math.abs(to - from) == 2) {
+            changed |= to > from ? 1L << (from + 3) | 1L << (from + 1) : 1L << (from - 4) | 1L << (from - 1);
+        }
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && (from & 7) != (to & 7)
+                && board.getPiece(move.getEndPosition()) == null) {
+            changed |= 1L << ((from & ~7) | (to & 7));
+        }
+        return changed;
+    }
+
+    /**
+     * @return the squares of the pawns that may capture en passant now, as a bit mask
+     */
+    private long enPassantPawns() {
+        if (enPassantTarget == null) {
+            return 0;
+        }
+        int pawnRow = teamTurn == TeamColor.WHITE ? enPassantTarget.getRow() - 1 : enPassantTarget.getRow() + 1;
+        long pawns = 0;
+        for (int col = enPassantTarget.getColumn() - 1; col <= enPassantTarget.getColumn() + 1; col += 2) {
+            if (isPiece(board, pawnRow, col, teamTurn, ChessPiece.PieceType.PAWN)) {
+                pawns |= 1L << ((pawnRow - 1) * 8 + col - 1);
+            }
+        }
+        return pawns;
+    }
+
+    /**
+     * Validates and makes a sequence of moves, stopping at the first illegal one.
+     * This is the fast path for replaying stored games: the moves are played on a
+     * {@link Position} without exceptions or per-move allocation, and the game is
+     * updated once at the end.
+     *
+     * @param moves moves packed as described in {@link Move}
+     * @return the index of the first illegal move, or -1 if every move was made
+     */
+    public int applyAll(short[] moves) {
+        Position position = Position.of(this);
+        int illegal = -1;
+        for (int i = 0; i < moves.length; i++) {
+            if (!playOn(position, moves[i] & 0xFFFF)) {
+                illegal = i;
+                break;
+            }
+        }
+        loadFrom(position);
+        return illegal;
+    }
+
+    /**
+     * Validates and makes a sequence of moves, stopping at the first illegal one.
+     * See {@link #applyAll(short[])}.
+     *
+     * @param moves moves to make, in order
+     * @return the index of the first illegal move, or -1 if every move was made
+     */
+    public int applyAll(List<ChessMove> moves) {
+        Position position = Position.of(this);
+        int illegal = -1;
+        for (int i = 0; i < moves.size(); i++) {
+            if (!playOn(position, Move.of(moves.get(i)))) {
+                illegal = i;
+                break;
+            }
+        }
+        loadFrom(position);
+        return illegal;
+    }
+
+    private boolean playOn(Position position, int move) {
+        if (!position.tryMake(move)) {
+            return false;
+        }
+        position.forgetMoves();
+        if (position.halfmoveClock() == 0) {
+            historyLength = 0;
+        }
+        keyHistory[historyEnd] = position.key();
+        historyEnd = (historyEnd + 1) & (HISTORY_SIZE - 1);
+        historyLength = Math.min(historyLength + 1, HISTORY_SIZE);
+        return true;
+    }
+
+    /**
+     * Copies the state of a position back into this game, touching only the squares
+     * that changed so anyone holding {@link #getBoard()} sees the update.
+     */
+    private void loadFrom(Position position) {
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPosition square = Move.position(sq);
+            ChessPiece current = board.getPiece(square);
+            int piece = position.piece(sq);
+            if (piece == Position.EMPTY) {
+                if (current != null) {
+                    board.addPiece(square, null);
+                }
+            } else if (current == null || Position.piece(current) != piece) {
+                board.addPiece(square, Position.toChessPiece(piece));
+            }
+        }
+        teamTurn = position.sideToMove() == Position.WHITE ? TeamColor.WHITE : TeamColor.BLACK;
+        castlingRights = position.castling();
+        enPassantTarget = position.epSquare() < 0 ? null : Move.position(position.epSquare());
+        halfmoveClock = position.halfmoveClock();
     }
 
     /**
@@ -66,7 +355,7 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        throw new RuntimeException("Not implemented");
+        return isInCheck(board, teamColor);
     }
 
     /**
@@ -76,7 +365,7 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        throw new RuntimeException("Not implemented");
+        return isInCheck(teamColor) && !hasValidMove(teamColor);
     }
 
     /**
@@ -87,7 +376,7 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        throw new RuntimeException("Not implemented");
+        return !isInCheck(teamColor) && !hasValidMove(teamColor);
     }
 
     /**
@@ -96,7 +385,26 @@ public class ChessGame {
      * @param board the new board to use
      */
     public void setBoard(ChessBoard board) {
-        throw new RuntimeException("Not implemented");
+        this.board = board;
+        enPassantTarget = null;
+        castlingRights = 0;
+        if (isPiece(board, 1, 5, TeamColor.WHITE, ChessPiece.PieceType.KING)) {
+            if (isPiece(board, 1, 8, TeamColor.WHITE, ChessPiece.PieceType.ROOK)) {
+                castlingRights |= Position.WHITE_KINGSIDE;
+            }
+            if (isPiece(board, 1, 1, TeamColor.WHITE, ChessPiece.PieceType.ROOK)) {
+                castlingRights |= Position.WHITE_QUEENSIDE;
+            }
+        }
+        if (isPiece(board, 8, 5, TeamColor.BLACK, ChessPiece.PieceType.KING)) {
+            if (isPiece(board, 8, 8, TeamColor.BLACK, ChessPiece.PieceType.ROOK)) {
+                castlingRights |= Position.BLACK_KINGSIDE;
+            }
+            if (isPiece(board, 8, 1, TeamColor.BLACK, ChessPiece.PieceType.ROOK)) {
+                castlingRights |= Position.BLACK_QUEENSIDE;
+            }
+        }
+        resetHistory();
     }
 
     /**
@@ -105,6 +413,335 @@ public class ChessGame {
      * @return the chessboard
      */
     public ChessBoard getBoard() {
-        throw new RuntimeException("Not implemented");
+        return board;
+    }
+
+    /**
+     * Determines whether the game is over and why. Checkmate and stalemate are checked
+     * for the team whose turn it is.
+     *
+     * @return the status of the game
+     */
+    public GameStatus getGameStatus() {
+        if (!hasValidMove(teamTurn)) {
+            return isInCheck(teamTurn) ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if (isThreefoldRepetition()) {
+            return GameStatus.THREEFOLD_REPETITION;
+        }
+        if (isFiftyMoveRule()) {
+            return GameStatus.FIFTY_MOVE_RULE;
+        }
+        return GameStatus.IN_PROGRESS;
+    }
+
+    /**
+     * Determines if the current position has now occurred three times. Only positions
+     * since the last capture or pawn move with the same team to move can match, so
+     * only those entries of the history are compared.
+     *
+     * @return True if the same position has occurred at least three times
+     */
+    public boolean isThreefoldRepetition() {
+        long key = keyHistory[(historyEnd - 1) & (HISTORY_SIZE - 1)];
+        int count = 1;
+        for (int back = 2; back < historyLength; back += 2) {
+            if (keyHistory[(historyEnd - 1 - back) & (HISTORY_SIZE - 1)] == key && ++count == 3) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the keys of the positions since the last capture or pawn move before the
+     * current one, most recent first
+     */
+    long[] earlierKeys() {
+        long[] keys = new long[Math.max(0, historyLength - 1)];
+        for (int back = 1; back < historyLength; back++) {
+            keys[back - 1] = keyHistory[(historyEnd - 1 - back) & (HISTORY_SIZE - 1)];
+        }
+        return keys;
+    }
+
+    /**
+     * Determines if fifty moves by each team have passed without a capture or pawn move
+     *
+     * @return True if the fifty-move rule applies
+     */
+    public boolean isFiftyMoveRule() {
+        return halfmoveClock >= 100;
+    }
+
+    /**
+     * @return the number of moves since the last capture or pawn move, counting each
+     * team's move separately
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Gets the Zobrist hash of the whole position: the pieces, the team to move, the
+     * castling rights and, when a capture is possible, the en passant file
+     *
+     * @return the position's key
+     */
+    public long getZobristKey() {
+        return zobristKey();
+    }
+
+    /**
+     * Works out {@link #getZobristKey()} without calling anything a subclass could
+     * override, so the constructor can record the starting position
+     */
+    private long zobristKey() {
+        long key = board.getZobristKey() ^ Zobrist.CASTLING[castlingRights];
+        if (teamTurn == TeamColor.BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        int epFile = enPassantFile();
+        return epFile < 0 ? key : key ^ Zobrist.EN_PASSANT[epFile];
+    }
+
+    /**
+     * Gets the Zobrist hash of the color-flipped position: the board mirrored top to
+     * bottom with white and black swapped, the other team to move, and the castling
+     * rights swapped. That position plays out exactly like this one.
+     *
+     * @return the flipped position's key
+     */
+    public long getFlippedZobristKey() {
+        long key = board.getFlippedZobristKey() ^ Zobrist.FLIPPED_CASTLING[castlingRights];
+        if (teamTurn == TeamColor.WHITE) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        int epFile = enPassantFile();
+        return epFile < 0 ? key : key ^ Zobrist.EN_PASSANT[epFile];
+    }
+
+    /**
+     * Gets a key shared by this position and its color-flipped twin, the smaller of
+     * {@link #getZobristKey()} and {@link #getFlippedZobristKey()}, so caches of results
+     * that do not depend on color hold one entry for both
+     *
+     * @return the canonical key
+     */
+    public long getCanonicalKey() {
+        return Math.min(getZobristKey(), getFlippedZobristKey());
+    }
+
+    /**
+     * @return the file (0-7) of the en passant target if a pawn can capture there, or -1
+     */
+    private int enPassantFile() {
+        if (enPassantTarget != null) {
+            int pawnRow = teamTurn == TeamColor.WHITE ? enPassantTarget.getRow() - 1 : enPassantTarget.getRow() + 1;
+            int col = enPassantTarget.getColumn();
+            if (isPiece(board, pawnRow, col - 1, teamTurn, ChessPiece.PieceType.PAWN)
+                    || isPiece(board, pawnRow, col + 1, teamTurn, ChessPiece.PieceType.PAWN)) {
+                return col - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Forgets earlier positions, since after the board or turn is replaced they
+     * no longer lead to the current one
+     */
+    private void resetHistory() {
+        halfmoveClock = 0;
+        historyLength = 0;
+        recordPosition();
+    }
+
+    private void recordPosition() {
+        keyHistory[historyEnd & (HISTORY_SIZE - 1)] = zobristKey();
+        historyEnd = (historyEnd + 1) & (HISTORY_SIZE - 1);
+        historyLength = Math.min(historyLength + 1, HISTORY_SIZE);
+    }
+
+    /**
+     * @return the remaining castling rights as a mask of the {@link Position} castling flags
+     */
+    int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * @return the square a pawn just skipped over with a double move, or null
+     */
+    ChessPosition getEnPassantTarget() {
+        return enPassantTarget;
+    }
+
+    static TeamColor opponent(TeamColor color) {
+        return color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+
+    private boolean hasValidMove(TeamColor teamColor) {
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                ChessPosition position = new ChessPosition(r, c);
+                ChessPiece piece = board.getPiece(position);
+                if (piece != null && piece.getTeamColor() == teamColor && !validMoves(position).isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the castling and en passant moves that {@link ChessPiece#pieceMoves} cannot
+     * know about because they depend on the history of the game.
+     */
+    private void addSpecialMoves(ChessPiece piece, ChessPosition start, Collection<ChessMove> moves) {
+        TeamColor color = piece.getTeamColor();
+        int row = start.getRow();
+        if (piece.getPieceType() == ChessPiece.PieceType.KING && start.getColumn() == 5) {
+            int kingside = color == TeamColor.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+            int queenside = color == TeamColor.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+            boolean canCastle = (castlingRights & (kingside | queenside)) != 0
+                    && row == (color == TeamColor.WHITE ? 1 : 8)
+                    && !isSquareAttacked(board, start, opponent(color));
+            if (canCastle && (castlingRights & kingside) != 0
+                    && isEmpty(row, 6) && isEmpty(row, 7)
+                    && !isSquareAttacked(board, new ChessPosition(row, 6), opponent(color))) {
+                moves.add(new ChessMove(start, new ChessPosition(row, 7), null));
+            }
+            if (canCastle && (castlingRights & queenside) != 0
+                    && isEmpty(row, 4) && isEmpty(row, 3) && isEmpty(row, 2)
+                    && !isSquareAttacked(board, new ChessPosition(row, 4), opponent(color))) {
+                moves.add(new ChessMove(start, new ChessPosition(row, 3), null));
+            }
+        }
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN && enPassantTarget != null && color == teamTurn) {
+            int forward = color == TeamColor.WHITE ? 1 : -1;
+            if (enPassantTarget.getRow() == row + forward
+                    && Math.abs(enPassantTarget.getColumn() - start.getColumn()) == 1) {
+                moves.add(new ChessMove(start, enPassantTarget, null));
+            }
+        }
+    }
+
+    private boolean isEmpty(int row, int col) {
+        return board.getPiece(new ChessPosition(row, col)) == null;
+    }
+
+    /**
+     * Moves a piece on the given board without any legality checks, including the rook
+     * hop of a castle and the pawn removed by en passant.
+     */
+    static void applyMove(ChessBoard board, ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        ChessPiece piece = board.getPiece(start);
+
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN
+                && start.getColumn() != end.getColumn() && board.getPiece(end) == null) {
+            board.addPiece(new ChessPosition(start.getRow(), end.getColumn()), null);
+        }
+        if (piece.getPieceType() == ChessPiece.PieceType.KING
+                && Math.abs(end.getColumn() - start.getColumn()) == 2) {
+            int row = start.getRow();
+            int rookFrom = end.getColumn() > start.getColumn() ? 8 : 1;
+            int rookTo = end.getColumn() > start.getColumn() ? 6 : 4;
+            ChessPosition rookStart = new ChessPosition(row, rookFrom);
+            board.addPiece(new ChessPosition(row, rookTo), board.getPiece(rookStart));
+            board.addPiece(rookStart, null);
+        }
+
+        board.addPiece(start, null);
+        if (move.getPromotionPiece() != null) {
+            board.addPiece(end, new ChessPiece(piece.getTeamColor(), move.getPromotionPiece()));
+        } else {
+            board.addPiece(end, piece);
+        }
+    }
+
+    static boolean isInCheck(ChessBoard board, TeamColor teamColor) {
+        for (int r = 1; r <= 8; r++) {
+            for (int c = 1; c <= 8; c++) {
+                ChessPosition position = new ChessPosition(r, c);
+                ChessPiece piece = board.getPiece(position);
+                if (piece != null && piece.getTeamColor() == teamColor
+                        && piece.getPieceType() == ChessPiece.PieceType.KING) {
+                    return isSquareAttacked(board, position, opponent(teamColor));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if any piece of the attacking team could capture on the given square.
+     */
+    static boolean isSquareAttacked(ChessBoard board, ChessPosition square, TeamColor attacker) {
+        int row = square.getRow();
+        int col = square.getColumn();
+
+        int pawnRow = attacker == TeamColor.WHITE ? row - 1 : row + 1;
+        if (isPiece(board, pawnRow, col - 1, attacker, ChessPiece.PieceType.PAWN)
+                || isPiece(board, pawnRow, col + 1, attacker, ChessPiece.PieceType.PAWN)) {
+            return true;
+        }
+        for (int[] offset : KNIGHT_OFFSETS) {
+            if (isPiece(board, row + offset[0], col + offset[1], attacker, ChessPiece.PieceType.KNIGHT)) {
+                return true;
+            }
+        }
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                if ((dr != 0 || dc != 0) && isPiece(board, row + dr, col + dc, attacker, ChessPiece.PieceType.KING)) {
+                    return true;
+                }
+            }
+        }
+        return isSlidingAttack(board, row, col, attacker, ROOK_DIRECTIONS, ChessPiece.PieceType.ROOK)
+                || isSlidingAttack(board, row, col, attacker, BISHOP_DIRECTIONS, ChessPiece.PieceType.BISHOP);
+    }
+
+    private static boolean isSlidingAttack(ChessBoard board, int row, int col, TeamColor attacker,
+                                           int[][] directions, ChessPiece.PieceType slider) {
+        for (int[] direction : directions) {
+            int r = row + direction[0];
+            int c = col + direction[1];
+            while (r >= 1 && r <= 8 && c >= 1 && c <= 8) {
+                ChessPiece target = board.getPiece(new ChessPosition(r, c));
+                if (target != null) {
+                    if (target.getTeamColor() == attacker && (target.getPieceType() == slider
+                            || target.getPieceType() == ChessPiece.PieceType.QUEEN)) {
+                        return true;
+                    }
+                    break;
+                }
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPiece(ChessBoard board, int row, int col, TeamColor color, ChessPiece.PieceType type) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return false;
+        }
+        ChessPiece piece = board.getPiece(new ChessPosition(row, col));
+        return piece != null && piece.getTeamColor() == color && piece.getPieceType() == type;
+    }
+
+    private static int castlingMask(ChessPosition square) {
+        return switch ((square.getRow() - 1) * 8 + square.getColumn() - 1) {
+            case 0 -> Position.WHITE_QUEENSIDE;
+            case 4 -> Position.WHITE_KINGSIDE | Position.WHITE_QUEENSIDE;
+            case 7 -> Position.WHITE_KINGSIDE;
+            case 56 -> Position.BLACK_QUEENSIDE;
+            case 60 -> Position.BLACK_KINGSIDE | Position.BLACK_QUEENSIDE;
+            case 63 -> Position.BLACK_KINGSIDE;
+            default -> 0;
+        };
     }
 }
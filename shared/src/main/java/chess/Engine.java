@@ -0,0 +1,78 @@
+package chess;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Something that picks moves: a search engine, at whatever strength its settings give.
+ * <p>
+ * An engine searches one position at a time; to play several games at once, give each
+ * its own engine.
+ */
+public interface Engine {
+
+    /**
+     * Chooses a move for the team on turn within the limits
+     *
+     * @return the move, or null if the game is already over
+     */
+    ChessMove bestMove(ChessGame game, Limits limits);
+
+    /**
+     * Chooses a move within the limits, returning as soon as it can once the stop flag is
+     * set. The flag is the caller's, so setting it before the search has started still
+     * stops it; the engine never sets it. Engines that cannot watch a flag ignore it.
+     */
+    default ChessMove bestMove(ChessGame game, Limits limits, AtomicBoolean stop) {
+        return bestMove(game, limits);
+    }
+
+    /**
+     * Asks a running {@link #bestMove} to return as soon as it can, from any thread. The
+     * engine finishes cooperatively and cleans up its own threads; it is never interrupted.
+     * A call before the search starts is lost, so a caller that may stop a search early
+     * passes its own flag instead.
+     */
+    default void stop() {
+    }
+
+    /**
+     * How much an engine may search for one move. Zero means no limit of that kind; the
+     * search stops at whichever limit it reaches first.
+     *
+     * @param depth  the deepest full-width search, in plies, for engines that search by depth
+     * @param nodes  the most nodes (for {@link MctsEngine}, playouts) to search
+     * @param millis     the most wall-clock time to spend
+     * @param softMillis the time after which a search should finish up rather than go
+     *                   deeper; engines without that choice treat it as their time limit
+     */
+    record Limits(int depth, long nodes, long millis, long softMillis) {
+
+        public Limits {
+            if (depth < 0 || nodes < 0 || millis < 0 || softMillis < 0) {
+                throw new IllegalArgumentException("Limits cannot be negative");
+            }
+            if (depth == 0 && nodes == 0 && millis == 0 && softMillis == 0) {
+                throw new IllegalArgumentException("A search needs a depth, node or time limit");
+            }
+            if (millis != 0 && softMillis > millis) {
+                throw new IllegalArgumentException("The soft time limit cannot exceed the time limit");
+            }
+        }
+
+        public Limits(int depth, long nodes, long millis) {
+            this(depth, nodes, millis, 0);
+        }
+
+        public static Limits depth(int depth) {
+            return new Limits(depth, 0, 0);
+        }
+
+        public static Limits nodes(long nodes) {
+            return new Limits(0, nodes, 0);
+        }
+
+        public static Limits millis(long millis) {
+            return new Limits(0, 0, millis);
+        }
+    }
+}
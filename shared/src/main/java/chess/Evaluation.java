@@ -0,0 +1,402 @@
+package chess;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A tapered piece-square evaluation: every piece scores a value for its type and
+ * square, one table for the middlegame and one for the endgame, and the two totals
+ * are blended by how much material is left. Material is part of the tables.
+ * <p>
+ * The score is linear in the table entries, which is what lets {@link TexelTuner} fit
+ * them to game results. The tables are white's; black's pieces use the vertically
+ * mirrored square and count against white. The tuned tables ship as the resource
+ * {@value #RESOURCE}, a text file of {@value #PARAMS} whole numbers: the middlegame
+ * tables for pawn to king, then the endgame tables, each starting at a1.
+ * <p>
+ * On top of the tables come pawn structure terms with fixed weights: doubled, isolated
+ * and passed pawns, passed pawns free to advance, and pawns shielding a castled king.
+ * Everything that depends only on the pawns can be cached in a {@link PawnTable}; the
+ * tuner fits only the tables.
+ */
+public final class Evaluation {
+
+    /**
+     * The number of table entries: two phases, six piece types, 64 squares
+     */
+    public static final int PARAMS = 2 * 6 * 64;
+    /**
+     * The phase of a position with every minor and major piece on the board
+     */
+    public static final int MAX_PHASE = 24;
+
+    static final String RESOURCE = "/chess/evaluation.txt";
+    private static final int[] PHASE_WEIGHTS = {0, 0, 1, 1, 2, 4, 0};
+    private static final String[] PIECE_NAMES = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+
+    // Pawn structure weights, indexed by rank from the pawn's own side where they vary
+    private static final int DOUBLED = score(-10, -20);
+    private static final int ISOLATED = score(-10, -15);
+    private static final int[] PASSED = {0, score(5, 10), score(10, 15), score(15, 30), score(25, 50),
+            score(45, 80), score(70, 120), 0};
+    private static final int[] FREE_PASSER = {0, 0, 5, 10, 20, 35, 60, 0};
+    private static final int SHIELD_NEAR = 12;
+    private static final int SHIELD_FAR = 6;
+    private static final long FILE_A = 0x0101010101010101L;
+    /**
+     * By color index and square, the squares on the same and adjacent files ahead of a pawn
+     */
+    private static final long[][] PASSED_SPAN = new long[2][64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int file = sq & 7;
+            long files = adjacentFiles(file) | FILE_A << file;
+            int row = sq >> 3;
+            PASSED_SPAN[0][sq] = row == 7 ? 0 : files & -1L << (row + 1) * 8;
+            PASSED_SPAN[1][sq] = row == 0 ? 0 : files & -1L >>> (8 - row) * 8;
+        }
+    }
+
+    private static volatile Evaluation standard;
+
+    private final int[] params;
+
+    /**
+     * @param params the tables, laid out as in {@link #index}
+     */
+    public Evaluation(int[] params) {
+        if (params.length != PARAMS) {
+            throw new IllegalArgumentException("Expected " + PARAMS + " parameters, got " + params.length);
+        }
+        this.params = params.clone();
+    }
+
+    /**
+     * @return the evaluation with the tuned tables shipped in the resource
+     */
+    public static Evaluation standard() {
+        Evaluation evaluation = standard;
+        if (evaluation == null) {
+            try (InputStream in = Evaluation.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing resource " + RESOURCE);
+                }
+                evaluation = read(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read " + RESOURCE, e);
+            }
+            standard = evaluation;
+        }
+        return evaluation;
+    }
+
+    /**
+     * Reads tables written by {@link #write}; text after a '#' on a line is a comment
+     */
+    public static Evaluation read(InputStream in) throws IOException {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+        StreamTokenizer tokens = new StreamTokenizer(reader);
+        tokens.resetSyntax();
+        tokens.whitespaceChars(0, ' ');
+        tokens.wordChars('!', '~');
+        tokens.commentChar('#');
+        int[] params = new int[PARAMS];
+        int count = 0;
+        while (tokens.nextToken() != StreamTokenizer.TT_EOF) {
+            if (count == PARAMS) {
+                throw new IOException("More than " + PARAMS + " parameters");
+            }
+            try {
+                params[count++] = Integer.parseInt(tokens.sval);
+            } catch (NumberFormatException e) {
+                throw new IOException("Not a number on line " + tokens.lineno() + ": " + tokens.sval);
+            }
+        }
+        if (count != PARAMS) {
+            throw new IOException("Expected " + PARAMS + " parameters, got " + count);
+        }
+        return new Evaluation(params);
+    }
+
+    public static Evaluation read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Writes the tables as text, one rank per line from rank 1, for use as the resource
+     */
+    public void write(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int phase = 0; phase < 2; phase++) {
+                for (int type = Position.PAWN; type <= Position.KING; type++) {
+                    out.write("# " + (phase == 0 ? "middlegame " : "endgame ") + PIECE_NAMES[type - 1] + "\n");
+                    for (int rank = 0; rank < 8; rank++) {
+                        StringBuilder line = new StringBuilder();
+                        for (int column = 0; column < 8; column++) {
+                            line.append(String.format("%5d", params[index(phase, type, rank * 8 + column)]));
+                        }
+                        out.write(line.append('\n').toString());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param phase 0 for the middlegame table, 1 for the endgame table
+     * @param type  a {@link Position} piece type
+     * @param square the square from white's side
+     * @return where a table entry is kept in the parameters
+     */
+    static int index(int phase, int type, int square) {
+        return (phase * 6 + type - 1) * 64 + square;
+    }
+
+    /**
+     * @return the material phase, from {@link #MAX_PHASE} with every piece on the board down to 0
+     */
+    static int phase(Position position) {
+        int phase = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            phase += PHASE_WEIGHTS[Position.type(position.piece(sq))];
+        }
+        return Math.min(phase, MAX_PHASE);
+    }
+
+    /**
+     * @return the part of {@link #whiteScore} that does not come from the tables, the pawn
+     * structure, free passer and king shield terms, blended by phase but not rounded
+     */
+    static double fixedTerms(Position position) {
+        long whitePawns = 0;
+        long blackPawns = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.piece(sq);
+            if (Position.type(piece) == Position.PAWN) {
+                if (Position.color(piece) == Position.WHITE) {
+                    whitePawns |= 1L << sq;
+                } else {
+                    blackPawns |= 1L << sq;
+                }
+            }
+        }
+        long whitePassed = passedPawns(whitePawns, blackPawns, 0);
+        long blackPassed = passedPawns(blackPawns, whitePawns, 1);
+        int structure = pawnStructure(whitePawns, whitePassed, 0) - pawnStructure(blackPawns, blackPassed, 1);
+        int middlegame = middlegame(structure) + shield(position, Position.WHITE) - shield(position, Position.BLACK);
+        int endgame = endgame(structure)
+                + freePassers(position, whitePassed, 0) - freePassers(position, blackPassed, 1);
+        int phase = phase(position);
+        return (middlegame * phase + endgame * (MAX_PHASE - phase)) / (double) MAX_PHASE;
+    }
+
+    /**
+     * @return the score in centipawns for the side to move
+     */
+    public int evaluate(Position position) {
+        return evaluate(position, null);
+    }
+
+    /**
+     * @param pawns caches the pawn structure terms, or null to work them out every time
+     * @return the score in centipawns for the side to move
+     */
+    public int evaluate(Position position, PawnTable pawns) {
+        int score = whiteScore(position, pawns);
+        return position.sideToMove() == Position.WHITE ? score : -score;
+    }
+
+    /**
+     * @return the score in centipawns from white's point of view
+     */
+    public int whiteScore(Position position) {
+        return whiteScore(position, null);
+    }
+
+    /**
+     * @param pawns caches the pawn structure terms, or null to work them out every time
+     * @return the score in centipawns from white's point of view
+     */
+    public int whiteScore(Position position, PawnTable pawns) {
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        long whitePawns = 0;
+        long blackPawns = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.piece(sq);
+            if (piece == Position.EMPTY) {
+                continue;
+            }
+            int type = Position.type(piece);
+            phase += PHASE_WEIGHTS[type];
+            if (Position.color(piece) == Position.WHITE) {
+                middlegame += params[index(0, type, sq)];
+                endgame += params[index(1, type, sq)];
+                if (type == Position.PAWN) {
+                    whitePawns |= 1L << sq;
+                }
+            } else {
+                middlegame -= params[index(0, type, sq ^ 56)];
+                endgame -= params[index(1, type, sq ^ 56)];
+                if (type == Position.PAWN) {
+                    blackPawns |= 1L << sq;
+                }
+            }
+        }
+
+        long pawnKey = position.pawnKey();
+        int slot = pawns == null ? -1 : pawns.slot(pawnKey);
+        long whitePassed;
+        long blackPassed;
+        if (slot >= 0 && pawns.holds(slot, pawnKey)) {
+            middlegame += pawns.middlegame(slot);
+            endgame += pawns.endgame(slot);
+            whitePassed = pawns.passed(slot, Position.WHITE);
+            blackPassed = pawns.passed(slot, Position.BLACK);
+        } else {
+            whitePassed = passedPawns(whitePawns, blackPawns, 0);
+            blackPassed = passedPawns(blackPawns, whitePawns, 1);
+            int structure = pawnStructure(whitePawns, whitePassed, 0) - pawnStructure(blackPawns, blackPassed, 1);
+            middlegame += middlegame(structure);
+            endgame += endgame(structure);
+            if (slot >= 0) {
+                pawns.store(slot, pawnKey, middlegame(structure), endgame(structure), whitePassed, blackPassed);
+            }
+        }
+
+        // The terms below depend on more than the pawns, so they are never cached
+        endgame += freePassers(position, whitePassed, 0) - freePassers(position, blackPassed, 1);
+        middlegame += shield(position, Position.WHITE) - shield(position, Position.BLACK);
+
+        phase = Math.min(phase, MAX_PHASE);
+        return (middlegame * phase + endgame * (MAX_PHASE - phase)) / MAX_PHASE;
+    }
+
+    /**
+     * @param side 0 for white, 1 for black
+     * @return the pawns that no enemy pawn can stop or capture on their way to promotion
+     */
+    private static long passedPawns(long own, long enemy, int side) {
+        long passed = 0;
+        for (long rest = own; rest != 0; rest &= rest - 1) {
+            int sq = Long.numberOfTrailingZeros(rest);
+            if ((PASSED_SPAN[side][sq] & enemy) == 0) {
+                passed |= 1L << sq;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * @return one side's doubled, isolated and passed pawn terms, packed by {@link #score}
+     */
+    private static int pawnStructure(long own, long passed, int side) {
+        int total = 0;
+        for (int file = 0; file < 8; file++) {
+            int count = Long.bitCount(own & FILE_A << file);
+            if (count == 0) {
+                continue;
+            }
+            if (count > 1) {
+                total += (count - 1) * DOUBLED;
+            }
+            if ((own & adjacentFiles(file)) == 0) {
+                total += count * ISOLATED;
+            }
+        }
+        for (long rest = passed; rest != 0; rest &= rest - 1) {
+            total += PASSED[relativeRank(Long.numberOfTrailingZeros(rest), side)];
+        }
+        return total;
+    }
+
+    /**
+     * @return the endgame bonus for passed pawns whose next square is empty
+     */
+    private static int freePassers(Position position, long passed, int side) {
+        int bonus = 0;
+        for (long rest = passed; rest != 0; rest &= rest - 1) {
+            int sq = Long.numberOfTrailingZeros(rest);
+            int rank = relativeRank(sq, side);
+            if (rank < 7 && position.piece(side == 0 ? sq + 8 : sq - 8) == Position.EMPTY) {
+                bonus += FREE_PASSER[rank];
+            }
+        }
+        return bonus;
+    }
+
+    /**
+     * @return the middlegame bonus for own pawns in front of a king castled to either wing
+     */
+    private static int shield(Position position, int color) {
+        int king = position.kingSquare(color);
+        int file = king & 7;
+        int forward = color == Position.WHITE ? 8 : -8;
+        if (king < 0 || relativeRank(king, color >> 3) != 0 || file == 3 || file == 4) {
+            return 0;
+        }
+        int pawn = Position.PAWN | color;
+        int bonus = 0;
+        for (int f = Math.max(0, file - 1); f <= Math.min(7, file + 1); f++) {
+            int near = king - file + f + forward;
+            if (position.piece(near) == pawn) {
+                bonus += SHIELD_NEAR;
+            } else if (position.piece(near + forward) == pawn) {
+                bonus += SHIELD_FAR;
+            }
+        }
+        return bonus;
+    }
+
+    private static long adjacentFiles(int file) {
+        return (file > 0 ? FILE_A << (file - 1) : 0) | (file < 7 ? FILE_A << (file + 1) : 0);
+    }
+
+    private static int relativeRank(int square, int side) {
+        return side == 0 ? square >> 3 : 7 - (square >> 3);
+    }
+
+    /**
+     * Packs a middlegame and an endgame value into one int, so both can be summed at once
+     */
+    private static int score(int middlegame, int endgame) {
+        return (endgame << 16) + middlegame;
+    }
+
+    private static int middlegame(int score) {
+        return (short) score;
+    }
+
+    private static int endgame(int score) {
+        return (short) ((score + 0x8000) >> 16);
+    }
+
+    /**
+     * @return a copy of the tables
+     */
+    public int[] params() {
+        return params.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Evaluation other && Arrays.equals(params, other.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(params);
+    }
+}
@@ -0,0 +1,182 @@
+package chess;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation, e.g. the starting position
+ * {@value #START}.
+ */
+public final class Fen {
+
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECES = " PNBRQK";
+
+    private Fen() {
+    }
+
+    /**
+     * Parses a FEN string into a new position
+     *
+     * @throws IllegalArgumentException if the text is not valid FEN
+     */
+    public static Position parse(CharSequence fen) {
+        Position position = new Position();
+        load(position, fen);
+        return position;
+    }
+
+    /**
+     * Replaces a position with the one described by a FEN string. The move
+     * number field is optional and ignored.
+     *
+     * @throws IllegalArgumentException if the text is not valid FEN
+     */
+    public static void load(Position position, CharSequence fen) {
+        position.clear();
+        int i = skipSpaces(fen, 0);
+        int row = 7;
+        int col = 0;
+        while (i < fen.length() && fen.charAt(i) != ' ') {
+            char c = fen.charAt(i++);
+            if (c == '/') {
+                row--;
+                col = 0;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int type = PIECES.indexOf(Character.toUpperCase(c));
+                if (type <= 0 || row < 0 || col > 7) {
+                    throw new IllegalArgumentException("Bad piece placement in FEN: " + fen);
+                }
+                position.put(row * 8 + col++, type | (Character.isUpperCase(c) ? Position.WHITE : Position.BLACK));
+            }
+        }
+        if (row != 0 || position.kingSquare(Position.WHITE) < 0 || position.kingSquare(Position.BLACK) < 0) {
+            throw new IllegalArgumentException("FEN must describe 8 ranks with both kings: " + fen);
+        }
+
+        i = skipSpaces(fen, i);
+        if (i >= fen.length() || (fen.charAt(i) != 'w' && fen.charAt(i) != 'b')) {
+            throw new IllegalArgumentException("Bad side to move in FEN: " + fen);
+        }
+        position.setSideToMove(fen.charAt(i++) == 'w' ? Position.WHITE : Position.BLACK);
+
+        i = skipSpaces(fen, i);
+        int castling = 0;
+        while (i < fen.length() && fen.charAt(i) != ' ') {
+            switch (fen.charAt(i++)) {
+                case 'K' -> castling |= Position.WHITE_KINGSIDE;
+                case 'Q' -> castling |= Position.WHITE_QUEENSIDE;
+                case 'k' -> castling |= Position.BLACK_KINGSIDE;
+                case 'q' -> castling |= Position.BLACK_QUEENSIDE;
+                case '-' -> {
+                }
+                default -> throw new IllegalArgumentException("Bad castling rights in FEN: " + fen);
+            }
+        }
+        position.setCastling(castling);
+
+        i = skipSpaces(fen, i);
+        if (i < fen.length() && fen.charAt(i) != '-') {
+            if (i + 1 >= fen.length()) {
+                throw new IllegalArgumentException("Bad en passant square in FEN: " + fen);
+            }
+            int square = (fen.charAt(i + 1) - '1') * 8 + fen.charAt(i) - 'a';
+            int expectedRow = position.sideToMove() == Position.WHITE ? 5 : 2;
+            if (square < 0 || square > 63 || square >> 3 != expectedRow) {
+                throw new IllegalArgumentException("Bad en passant square in FEN: " + fen);
+            }
+            if (position.canCaptureEnPassant(square)) {
+                position.setEpSquare(square);
+            }
+            i += 2;
+        } else {
+            i++;
+        }
+
+        i = skipSpaces(fen, i);
+        int halfmoves = 0;
+        while (i < fen.length() && Character.isDigit(fen.charAt(i))) {
+            halfmoves = halfmoves * 10 + fen.charAt(i++) - '0';
+        }
+        position.setHalfmoveClock(halfmoves);
+    }
+
+    /**
+     * @return the move number field of a FEN string, or 1 if it has none or it is not a
+     * positive number
+     */
+    public static int moveNumber(CharSequence fen) {
+        int i = skipSpaces(fen, 0);
+        for (int field = 0; field < 5; field++) {
+            while (i < fen.length() && fen.charAt(i) != ' ') {
+                i++;
+            }
+            i = skipSpaces(fen, i);
+        }
+        int number = 0;
+        while (i < fen.length() && Character.isDigit(fen.charAt(i)) && number < 100_000) {
+            number = number * 10 + fen.charAt(i++) - '0';
+        }
+        return number > 0 ? number : 1;
+    }
+
+    /**
+     * Writes a position as FEN. Positions do not track the move number, so it is always 1.
+     */
+    public static String toFen(Position position) {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = position.piece(row * 8 + col);
+                if (piece == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char c = PIECES.charAt(Position.type(piece));
+                fen.append(Position.color(piece) == Position.WHITE ? c : Character.toLowerCase(c));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 0) {
+                fen.append('/');
+            }
+        }
+        fen.append(position.sideToMove() == Position.WHITE ? " w " : " b ");
+        int castling = position.castling();
+        if (castling == 0) {
+            fen.append('-');
+        }
+        if ((castling & Position.WHITE_KINGSIDE) != 0) {
+            fen.append('K');
+        }
+        if ((castling & Position.WHITE_QUEENSIDE) != 0) {
+            fen.append('Q');
+        }
+        if ((castling & Position.BLACK_KINGSIDE) != 0) {
+            fen.append('k');
+        }
+        if ((castling & Position.BLACK_QUEENSIDE) != 0) {
+            fen.append('q');
+        }
+        fen.append(' ');
+        if (position.epSquare() < 0) {
+            fen.append('-');
+        } else {
+            Move.appendSquare(fen, position.epSquare());
+        }
+        return fen.append(' ').append(position.halfmoveClock()).append(" 1").toString();
+    }
+
+    private static int skipSpaces(CharSequence text, int i) {
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+}
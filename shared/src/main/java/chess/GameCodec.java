@@ -0,0 +1,307 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Compresses a game's moves to about a byte each, or less.
+ * <p>
+ * Every move is stored as its rank among the legal moves of the position it was played
+ * in, so a game needs no more information than which of roughly 30 choices was made
+ * each ply. Legal moves are ranked by a fixed, cheap ordering that puts likely moves
+ * first (good captures, queen promotions, castling, centralizing moves), which makes
+ * small ranks the common case. With entropy coding on, ranks are written with a static
+ * Huffman code that gives those small ranks the short codes. Decoding replays the game
+ * on a {@link Position}, ranking each position's moves the same way.
+ * <p>
+ * The encoded form is a coding byte, the number of moves as a varint, then the ranks.
+ * The start position is not stored. A codec keeps its working buffers between calls, so
+ * reuse one per thread.
+ */
+public final class GameCodec {
+
+    private static final int RAW = 0;
+    private static final int HUFFMAN = 1;
+
+    private static final int[] PIECE_VALUES = {0, 1, 3, 3, 5, 9, 0};
+    private static final int[] CENTRALITY = new int[64];
+    private static final int MAX_CODE_LENGTH = 32;
+    /**
+     * Code lengths and codes of the static Huffman code, indexed by rank
+     */
+    private static final int[] CODE_LENGTHS = new int[Position.MAX_MOVES];
+    private static final int[] CODES = new int[Position.MAX_MOVES];
+    /**
+     * Canonical decoding tables: per code length, the first code, the index of its first
+     * symbol in {@link #SYMBOLS}, and how many codes have that length
+     */
+    private static final int[] FIRST_CODE = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] FIRST_SYMBOL = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] LENGTH_COUNT = new int[MAX_CODE_LENGTH + 1];
+    private static final int[] SYMBOLS = new int[Position.MAX_MOVES];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            int file = sq & 7;
+            int rank = sq >> 3;
+            CENTRALITY[sq] = -(Math.abs(2 * file - 7) + Math.abs(2 * rank - 7));
+        }
+        buildCode();
+    }
+
+    private final int[] moves = new int[Position.MAX_MOVES];
+    private final long[] ranked = new long[Position.MAX_MOVES];
+    private byte[] out = new byte[64];
+    private int outLength;
+    private long bits;
+    private int bitCount;
+
+    public GameCodec() {
+    }
+
+    /**
+     * Encodes moves played from a position, leaving the position after the last move
+     *
+     * @param entropyCoded whether to Huffman code the ranks rather than store a byte each
+     * @throws IllegalArgumentException if a move is not legal
+     */
+    public byte[] encode(Position start, short[] moves, int count, boolean entropyCoded) {
+        outLength = 0;
+        bits = 0;
+        bitCount = 0;
+        writeByte(entropyCoded ? HUFFMAN : RAW);
+        for (int n = count; ; n >>>= 7) {
+            if (n < 0x80) {
+                writeByte(n);
+                break;
+            }
+            writeByte(n & 0x7F | 0x80);
+        }
+        for (int ply = 0; ply < count; ply++) {
+            int move = moves[ply] & 0xFFFF;
+            int rank = rank(start, move);
+            if (rank < 0) {
+                throw new IllegalArgumentException("Illegal move " + Move.toString(move) + " at ply " + (ply + 1));
+            }
+            if (entropyCoded) {
+                writeBits(CODES[rank], CODE_LENGTHS[rank]);
+            } else {
+                writeByte(rank);
+            }
+            start.make(move);
+            start.forgetMoves();
+        }
+        if (bitCount > 0) {
+            writeBits(0, 8 - bitCount);
+        }
+        return Arrays.copyOf(out, outLength);
+    }
+
+    public byte[] encode(PgnGame game, boolean entropyCoded) {
+        short[] moves = game.moves();
+        return encode(Fen.parse(game.startFen()), moves, moves.length, entropyCoded);
+    }
+
+    /**
+     * Decodes moves played from a position, leaving the position after the last move
+     *
+     * @return the moves, packed as in {@link Move}
+     * @throws IllegalArgumentException if the data is not a game played from this position
+     */
+    public short[] decode(Position start, byte[] data) {
+        if (data.length == 0 || (data[0] != RAW && data[0] != HUFFMAN)) {
+            throw new IllegalArgumentException("Not an encoded game");
+        }
+        boolean entropyCoded = data[0] == HUFFMAN;
+        int offset = 1;
+        int count = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (offset >= data.length || shift > 28) {
+                throw new IllegalArgumentException("Truncated move count");
+            }
+            int b = data[offset++];
+            count |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+
+        // Every move takes at least a byte, or a bit when entropy coded
+        long room = (long) (data.length - offset) * (entropyCoded ? 8 : 1);
+        if (count < 0 || count > room) {
+            throw new IllegalArgumentException("Move count " + Integer.toUnsignedString(count)
+                    + " does not fit in " + (data.length - offset) + " bytes");
+        }
+        short[] result = new short[count];
+        long bitOffset = (long) offset * 8;
+        for (int ply = 0; ply < count; ply++) {
+            int rank;
+            if (entropyCoded) {
+                int code = 0;
+                int length = 0;
+                while (true) {
+                    if (bitOffset >= (long) data.length * 8 || length == MAX_CODE_LENGTH) {
+                        throw new IllegalArgumentException("Truncated or corrupt moves at ply " + (ply + 1));
+                    }
+                    code = code << 1 | data[(int) (bitOffset >> 3)] >> (7 - (int) (bitOffset & 7)) & 1;
+                    bitOffset++;
+                    length++;
+                    if (code - FIRST_CODE[length] < LENGTH_COUNT[length]) {
+                        rank = SYMBOLS[FIRST_SYMBOL[length] + code - FIRST_CODE[length]];
+                        break;
+                    }
+                }
+            } else {
+                if (offset >= data.length) {
+                    throw new IllegalArgumentException("Truncated moves at ply " + (ply + 1));
+                }
+                rank = data[offset++] & 0xFF;
+            }
+            int move = moveAt(start, rank);
+            if (move == Move.NONE) {
+                throw new IllegalArgumentException("No move of rank " + rank + " at ply " + (ply + 1));
+            }
+            result[ply] = (short) move;
+            start.make(move);
+            start.forgetMoves();
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a game into a {@link ChessGame} starting from a FEN position
+     */
+    public ChessGame decodeGame(String startFen, byte[] data) {
+        short[] decoded = decode(Fen.parse(startFen), data);
+        ChessGame game = ChessGame.of(Fen.parse(startFen));
+        game.applyAll(decoded);
+        return game;
+    }
+
+    /**
+     * @return the move's rank among the legal moves, or -1 if it is not legal
+     */
+    private int rank(Position position, int move) {
+        int count = position.legalMoves(moves, 0);
+        long target = -1;
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                target = orderKey(position, move);
+            }
+        }
+        if (target < 0) {
+            return -1;
+        }
+        int rank = 0;
+        for (int i = 0; i < count; i++) {
+            if (orderKey(position, moves[i]) > target) {
+                rank++;
+            }
+        }
+        return rank;
+    }
+
+    private int moveAt(Position position, int rank) {
+        int count = position.legalMoves(moves, 0);
+        if (rank >= count) {
+            return Move.NONE;
+        }
+        for (int i = 0; i < count; i++) {
+            ranked[i] = orderKey(position, moves[i]);
+        }
+        Arrays.sort(ranked, 0, count);
+        return 0xFFFF - (int) (ranked[count - 1 - rank] & 0xFFFF);
+    }
+
+    /**
+     * Orders moves best first when compared from largest to smallest. The score sits in
+     * the high bits and the move itself breaks ties, so every legal move has a distinct key.
+     */
+    private static long orderKey(Position position, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int moving = Position.type(position.piece(from));
+        int captured = Position.type(position.piece(to));
+        if (moving == Position.PAWN && captured == Position.EMPTY && (from & 7) != (to & 7)) {
+            captured = Position.PAWN;
+        }
+        int score;
+        if (captured != Position.EMPTY) {
+            score = 1 << 12 | PIECE_VALUES[captured] << 4 | (15 - PIECE_VALUES[moving]);
+        } else if (moving == Position.KING && Math.abs(to - from) == 2) {
+            score = 1 << 11;
+        } else {
+            score = 1 << 10 | 64 + CENTRALITY[to] - CENTRALITY[from];
+        }
+        int promotion = Move.promotion(move);
+        if (promotion == Position.QUEEN) {
+            score += 1 << 13;
+        } else if (promotion != 0) {
+            score -= 1 << 10;
+        }
+        return (long) (score + (1 << 14)) << 16 | (0xFFFF - move);
+    }
+
+    private void writeByte(int b) {
+        if (outLength == out.length) {
+            out = Arrays.copyOf(out, out.length * 2);
+        }
+        out[outLength++] = (byte) b;
+    }
+
+    private void writeBits(int code, int length) {
+        bits = bits << length | code;
+        bitCount += length;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            writeByte((int) (bits >>> bitCount));
+        }
+    }
+
+    /**
+     * Builds a canonical Huffman code for ranks from a fixed model in which rank r is
+     * played with weight proportional to 1 / (r + 2)^1.7, which is close to how often
+     * players choose the r-th move of the ordering
+     */
+    private static void buildCode() {
+        int symbols = Position.MAX_MOVES;
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        int[] parent = new int[2 * symbols];
+        for (int rank = 0; rank < symbols; rank++) {
+            long weight = Math.max(1, Math.round(1e9 / Math.pow(rank + 2, 1.7)));
+            queue.add(new long[]{weight, rank});
+        }
+        int next = symbols;
+        while (queue.size() > 1) {
+            long[] a = queue.poll();
+            long[] b = queue.poll();
+            parent[(int) a[1]] = next;
+            parent[(int) b[1]] = next;
+            queue.add(new long[]{a[0] + b[0], next++});
+        }
+        int root = next - 1;
+        for (int rank = 0; rank < symbols; rank++) {
+            int length = 0;
+            for (int node = rank; node != root; node = parent[node]) {
+                length++;
+            }
+            CODE_LENGTHS[rank] = length;
+        }
+
+        // Canonical codes: shorter codes first, ranks in order within a length
+        int filled = 0;
+        int code = 0;
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+            FIRST_CODE[length] = code;
+            FIRST_SYMBOL[length] = filled;
+            for (int rank = 0; rank < symbols; rank++) {
+                if (CODE_LENGTHS[rank] == length) {
+                    SYMBOLS[filled++] = rank;
+                    CODES[rank] = code++;
+                    LENGTH_COUNT[length]++;
+                }
+            }
+            code <<= 1;
+        }
+    }
+}
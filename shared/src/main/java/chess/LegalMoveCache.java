@@ -0,0 +1,259 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the legal moves in whole positions, shared by everyone asking
+ * about the same position (players, observers, hint requests) across games.
+ * <p>
+ * Entries are keyed by {@link ChessGame#getCanonicalKey()} and hold an immutable move
+ * list for every occupied square, for both teams, so one miss answers every later
+ * {@link #validMoves} call on that position. A position and its color-flipped twin
+ * share an entry, stored for whichever of the two owns the canonical key; the other
+ * gets its moves mirrored back on the way out. Lookups are lock-free. When the entry
+ * limit or the memory cap is reached, entries are evicted with the CLOCK
+ * (second chance) policy, which approximates LRU without reordering on every hit.
+ */
+public final class LegalMoveCache {
+
+    /**
+     * Rough heap cost of an entry with no moves: the square array, the entry and its map node
+     */
+    private static final int ENTRY_BYTES = 400;
+    /**
+     * Rough heap cost of one cached move: the ChessMove, its two positions and a list slot
+     */
+    private static final int MOVE_BYTES = 80;
+
+    /**
+     * Slots for the first entries; the slot arrays double from here up to the entry limit
+     */
+    private static final int INITIAL_SLOTS = 256;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private Entry[] slots;
+    private int[] freeSlots;
+    private int freeCount;
+    private int nextUnused;
+    private int hand;
+    private int count;
+    private long usedBytes;
+
+    /**
+     * @param maxEntries the most positions to keep
+     * @param maxBytes   the estimated heap the cached moves may use
+     */
+    public LegalMoveCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < ENTRY_BYTES) {
+            throw new IllegalArgumentException("Cache must hold at least one entry");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.slots = new Entry[Math.min(maxEntries, INITIAL_SLOTS)];
+        this.freeSlots = new int[slots.length];
+    }
+
+    /**
+     * Creates a cache limited only by memory. Its slots grow with the entries, so a large
+     * budget costs nothing until it is used.
+     *
+     * @param maxBytes the estimated heap the cached moves may use
+     */
+    public LegalMoveCache(long maxBytes) {
+        this((int) Math.min(Integer.MAX_VALUE - 8, maxBytes / ENTRY_BYTES), maxBytes);
+    }
+
+    /**
+     * Gets the valid moves for a piece, the same as {@link ChessGame#validMoves}
+     *
+     * @return an immutable collection of moves, or null if no piece is at startPosition
+     */
+    public Collection<ChessMove> validMoves(ChessGame game, ChessPosition startPosition) {
+        long key = game.getZobristKey();
+        long flippedKey = game.getFlippedZobristKey();
+        if (flippedKey < key) {
+            return flip(lookup(game, flippedKey, true).moves[Move.square(startPosition) ^ 56]);
+        }
+        return lookup(game, key, false).moves[Move.square(startPosition)];
+    }
+
+    /**
+     * @return true if the team has any valid move, answered from the cache
+     */
+    public boolean hasValidMove(ChessGame game, ChessGame.TeamColor team) {
+        Entry entry = lookup(game, game.getCanonicalKey(), game.getFlippedZobristKey() < game.getZobristKey());
+        return team == game.getTeamTurn() ? entry.sideToMoveHasMove : entry.otherSideHasMove;
+    }
+
+    /**
+     * @param key     the game's canonical key
+     * @param flipped whether that is the key of the game's color-flipped twin
+     */
+    private Entry lookup(ChessGame game, long key, boolean flipped) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.referenced = true;
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        Position position = Position.of(game);
+        if (flipped) {
+            position.flip();
+        }
+        return insert(compute(key, position));
+    }
+
+    private static List<ChessMove> flip(List<ChessMove> moves) {
+        if (moves == null) {
+            return null;
+        }
+        ChessMove[] flipped = new ChessMove[moves.size()];
+        for (int i = 0; i < flipped.length; i++) {
+            flipped[i] = Move.toChessMove(Move.flip(Move.of(moves.get(i))));
+        }
+        return List.of(flipped);
+    }
+
+    private static Entry compute(long key, Position position) {
+        List<ChessMove>[] moves = LegalMoveTable.newMoveLists();
+        int[] buffer = new int[Position.MAX_MOVES];
+        int total = 0;
+
+        int side = position.sideToMove();
+        int count = position.legalMoves(buffer, 0);
+        boolean sideToMoveHasMove = count > 0;
+        total += group(position, side, buffer, count, moves);
+
+        // Pieces of the team not on turn can still be asked about, so work out theirs too
+        position.setEpSquare(-1);
+        position.setSideToMove(side ^ Position.BLACK);
+        count = position.legalMoves(buffer, 0);
+        boolean otherSideHasMove = count > 0;
+        total += group(position, side ^ Position.BLACK, buffer, count, moves);
+
+        return new Entry(key, moves, sideToMoveHasMove, otherSideHasMove, ENTRY_BYTES + (long) total * MOVE_BYTES);
+    }
+
+    private static int group(Position position, int color, int[] buffer, int count, List<ChessMove>[] moves) {
+        List<List<ChessMove>> bySquare = new ArrayList<>(64);
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.piece(sq);
+            bySquare.add(piece != Position.EMPTY && Position.color(piece) == color ? new ArrayList<>() : null);
+        }
+        for (int i = 0; i < count; i++) {
+            bySquare.get(Move.from(buffer[i])).add(Move.toChessMove(buffer[i]));
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            if (bySquare.get(sq) != null) {
+                moves[sq] = List.copyOf(bySquare.get(sq));
+            }
+        }
+        return count;
+    }
+
+    private synchronized Entry insert(Entry entry) {
+        Entry existing = entries.get(entry.key);
+        if (existing != null) {
+            return existing;
+        }
+        while (count > 0 && (count == maxEntries || usedBytes + entry.bytes > maxBytes)) {
+            evictOne();
+        }
+        if (freeCount == 0 && nextUnused == slots.length) {
+            int length = (int) Math.min(maxEntries, 2L * slots.length);
+            slots = Arrays.copyOf(slots, length);
+            freeSlots = Arrays.copyOf(freeSlots, length);
+        }
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextUnused++;
+        slots[slot] = entry;
+        count++;
+        usedBytes += entry.bytes;
+        entries.put(entry.key, entry);
+        return entry;
+    }
+
+    /**
+     * Sweeps the clock hand forward, giving recently used entries a second chance,
+     * and evicts the first entry that has not been used since the last sweep
+     */
+    private void evictOne() {
+        while (true) {
+            Entry candidate = slots[hand];
+            if (candidate != null && candidate.referenced) {
+                candidate.referenced = false;
+            } else if (candidate != null) {
+                entries.remove(candidate.key, candidate);
+                slots[hand] = null;
+                freeSlots[freeCount++] = hand;
+                count--;
+                usedBytes -= candidate.bytes;
+                evictions.increment();
+                hand = (hand + 1) % slots.length;
+                return;
+            }
+            hand = (hand + 1) % slots.length;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        Arrays.fill(slots, null);
+        freeCount = 0;
+        nextUnused = 0;
+        hand = 0;
+        count = 0;
+        usedBytes = 0;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated heap used by cached moves
+     */
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    private static final class Entry {
+        final long key;
+        final List<ChessMove>[] moves;
+        final boolean sideToMoveHasMove;
+        final boolean otherSideHasMove;
+        final long bytes;
+        volatile boolean referenced;
+
+        Entry(long key, List<ChessMove>[] moves, boolean sideToMoveHasMove, boolean otherSideHasMove, long bytes) {
+            this.key = key;
+            this.moves = moves;
+            this.sideToMoveHasMove = sideToMoveHasMove;
+            this.otherSideHasMove = otherSideHasMove;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package chess;
+
+import java.util.List;
+
+/**
+ * The valid moves of every piece of a {@link ChessGame}, kept up to date move by move.
+ * <p>
+ * After a move only a few pieces can have different moves: pieces on the changed
+ * squares, sliders whose lines cross them, knights and pawns that target them, pawns
+ * next to an en passant square, and both kings. A team whose king is or was in check,
+ * or whose king shares a line with a changed square (so a pin may have appeared or gone),
+ * has every piece recomputed. Everything else keeps its list.
+ * <p>
+ * The table remembers the {@link ChessGame#getZobristKey() key} it was built for, so if
+ * the board is edited behind the game's back it is simply rebuilt on the next lookup.
+ */
+final class LegalMoveTable {
+
+    private static final long[] ROOK_LINES = new long[64];
+    private static final long[] BISHOP_LINES = new long[64];
+    private static final long[] KNIGHT_SQUARES = new long[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            for (int d = 0; d < 8; d++) {
+                for (int target : Position.RAYS[sq][d]) {
+                    if (d < 4) {
+                        ROOK_LINES[sq] |= 1L << target;
+                    } else {
+                        BISHOP_LINES[sq] |= 1L << target;
+                    }
+                }
+            }
+            for (int target : Position.KNIGHT_TARGETS[sq]) {
+                KNIGHT_SQUARES[sq] |= 1L << target;
+            }
+        }
+    }
+
+    private final ChessGame game;
+    private final List<ChessMove>[] moves = newMoveLists();
+    private long key;
+    private boolean current;
+    private long recomputed;
+
+    LegalMoveTable(ChessGame game) {
+        this.game = game;
+    }
+
+    /**
+     * @return an array with room for each square's moves, all null
+     */
+    @SuppressWarnings("unchecked")
+    static List<ChessMove>[] newMoveLists() {
+        return (List<ChessMove>[]) new List<?>[64];
+    }
+
+    /**
+     * @return the moves of the piece on a square, or null if it is empty
+     */
+    List<ChessMove> validMoves(ChessPosition square) {
+        long gameKey = game.getZobristKey();
+        if (!current || key != gameKey) {
+            rebuild(gameKey);
+        }
+        return moves[Move.square(square)];
+    }
+
+    /**
+     * @return whether the table matches the game as it was before the move about to be made
+     */
+    boolean isCurrent(long gameKey) {
+        return current && key == gameKey;
+    }
+
+    /**
+     * @return how many squares have been recomputed since the table was created
+     */
+    long recomputed() {
+        return recomputed;
+    }
+
+    private void rebuild(long gameKey) {
+        ChessBoard board = game.getBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            moves[sq] = board.getPiece(Move.position(sq)) == null ? null : compute(sq);
+        }
+        key = gameKey;
+        current = true;
+    }
+
+    /**
+     * Brings the table up to date after a move
+     *
+     * @param changed    the squares whose contents the move changed
+     * @param inCheck    per team (white, black), whether its king was in check before or is after the move
+     * @param epPawns    the squares of pawns that could capture en passant before or after the move
+     */
+    void update(long changed, boolean[] inCheck, long epPawns) {
+        ChessBoard board = game.getBoard();
+        boolean[] allOf = new boolean[2];
+        for (int team = 0; team < 2; team++) {
+            int king = kingSquare(board, team == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK);
+            allOf[team] = inCheck[team] || king < 0
+                    || ((ROOK_LINES[king] | BISHOP_LINES[king] | 1L << king) & changed) != 0;
+        }
+
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = board.getPiece(Move.position(sq));
+            if (piece == null) {
+                moves[sq] = null;
+                continue;
+            }
+            int team = piece.getTeamColor() == ChessGame.TeamColor.WHITE ? 0 : 1;
+            if (allOf[team] || (changed & 1L << sq) != 0 || (epPawns & 1L << sq) != 0
+                    || dependsOn(piece, sq, changed)) {
+                moves[sq] = compute(sq);
+            }
+        }
+        key = game.getZobristKey();
+        current = true;
+    }
+
+    private static boolean dependsOn(ChessPiece piece, int sq, long changed) {
+        return switch (piece.getPieceType()) {
+            case KING -> true;
+            case KNIGHT -> (KNIGHT_SQUARES[sq] & changed) != 0;
+            case BISHOP -> (BISHOP_LINES[sq] & changed) != 0;
+            case ROOK -> (ROOK_LINES[sq] & changed) != 0;
+            case QUEEN -> ((ROOK_LINES[sq] | BISHOP_LINES[sq]) & changed) != 0;
+            case PAWN -> (pawnSquares(sq, piece.getTeamColor()) & changed) != 0;
+        };
+    }
+
+    /**
+     * @return the squares a pawn's pushes and captures depend on
+     */
+    private static long pawnSquares(int sq, ChessGame.TeamColor color) {
+        int forward = color == ChessGame.TeamColor.WHITE ? 8 : -8;
+        long squares = 0;
+        int ahead = sq + forward;
+        if (ahead >= 0 && ahead < 64) {
+            squares |= 1L << ahead;
+            if ((ahead & 7) > 0) {
+                squares |= 1L << (ahead - 1);
+            }
+            if ((ahead & 7) < 7) {
+                squares |= 1L << (ahead + 1);
+            }
+            int twoAhead = ahead + forward;
+            if (twoAhead >= 0 && twoAhead < 64) {
+                squares |= 1L << twoAhead;
+            }
+        }
+        return squares;
+    }
+
+    private List<ChessMove> compute(int sq) {
+        recomputed++;
+        return List.copyOf(game.computeValidMoves(Move.position(sq)));
+    }
+
+    private static int kingSquare(ChessBoard board, ChessGame.TeamColor color) {
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = board.getPiece(Move.position(sq));
+            if (piece != null && piece.getTeamColor() == color && piece.getPieceType() == ChessPiece.PieceType.KING) {
+                return sq;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,336 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Proves or refutes forced mates: given a position and n, finds whether the side to move
+ * can mate in at most n moves however the other side defends, and if so how.
+ * <p>
+ * The solver runs depth-first proof-number search (df-pn). Every node carries a proof
+ * number, the fewest leaves still to prove to show the mate, and a disproof number, the
+ * fewest to refute it; the search always expands the most proving node and keeps these
+ * numbers in a table, so it follows forcing lines and gives up on hopeless ones instead
+ * of scoring every move to full depth like an alpha-beta search. The plies left are part
+ * of each table key, which keeps bounded and unbounded results apart and rules out
+ * cycles. Once a mate is proven, the line is worked out with the attacker playing the
+ * fastest mate and the defender the longest resistance.
+ * <p>
+ * A solver keeps its table between positions and is used by one thread at a time.
+ */
+public final class MateSolver {
+
+    /**
+     * The longest mate a solver looks for
+     */
+    public static final int MAX_MOVES = 32;
+    private static final int INFINITY = 1 << 28;
+    private static final int SLOT_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    public enum Outcome {
+        /**
+         * The side to move mates within the moves asked for
+         */
+        MATE,
+        /**
+         * The side to move cannot force mate within the moves asked for
+         */
+        NO_MATE,
+        /**
+         * The node limit was reached first
+         */
+        UNKNOWN
+    }
+
+    /**
+     * @param mateIn the moves to mate when the outcome is a mate, and 0 otherwise
+     * @param line   the mating line, attacker's move first, packed as in {@link Move}; empty unless a mate
+     * @param nodes  the nodes expanded, counting the work of finding the line
+     */
+    public record Result(Outcome outcome, int mateIn, int[] line, long nodes) {
+
+        /**
+         * @return the mating line as moves
+         */
+        public List<ChessMove> moves() {
+            List<ChessMove> moves = new ArrayList<>(line.length);
+            for (int move : line) {
+                moves.add(Move.toChessMove(move));
+            }
+            return moves;
+        }
+    }
+
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final int mask;
+    private final int[][] moves = new int[2 * MAX_MOVES][Position.MAX_MOVES];
+    /**
+     * The children's proof and disproof numbers at each ply of the node being expanded
+     */
+    private final int[][] proofNumbers = new int[2 * MAX_MOVES][Position.MAX_MOVES];
+    private final int[][] disproofNumbers = new int[2 * MAX_MOVES][Position.MAX_MOVES];
+    /**
+     * A child's proof and disproof numbers, as read by {@link #child}
+     */
+    private final int[] numbers = new int[2];
+    private long nodeLimit = 1_000_000;
+    private Position position;
+    private long nodes;
+    private long budget;
+    private boolean aborted;
+
+    public MateSolver() {
+        this(16);
+    }
+
+    /**
+     * @param megabytes the memory for the table, rounded down to a power of two number of slots
+     */
+    public MateSolver(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Table needs at least 1 MB");
+        }
+        int count = (int) Math.min(Long.highestOneBit((long) megabytes * 1024 * 1024 / SLOT_BYTES), 1 << 28);
+        this.keys = new long[count];
+        this.proofs = new int[count];
+        this.disproofs = new int[count];
+        this.mask = count - 1;
+    }
+
+    /**
+     * Sets how many nodes a solve may expand proving the mate, and as many again finding
+     * its line, before giving up with {@link Outcome#UNKNOWN}
+     */
+    public MateSolver nodes(long limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Need at least one node");
+        }
+        this.nodeLimit = limit;
+        return this;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+    }
+
+    public Result solve(ChessGame game, int moves) {
+        return solve(Position.of(game), moves);
+    }
+
+    /**
+     * Looks for a mate in at most the given number of moves by the side to move
+     */
+    public Result solve(Position root, int moves) {
+        if (moves < 1 || moves > MAX_MOVES) {
+            throw new IllegalArgumentException("Can look for mates in 1 to " + MAX_MOVES + " moves");
+        }
+        position = root.copy();
+        position.forgetMoves();
+        nodes = 0;
+        budget = nodeLimit;
+        aborted = false;
+        try {
+            int plies = 2 * moves - 1;
+            if (!prove(plies, 0)) {
+                return new Result(aborted ? Outcome.UNKNOWN : Outcome.NO_MATE, 0, new int[0], nodes);
+            }
+            budget = nodes + nodeLimit;
+            int[] line = new int[plies];
+            int mateIn = (shortest(plies, 0) + 1) / 2;
+            int length = extract(plies, 0, line, 0);
+            return new Result(Outcome.MATE, mateIn, Arrays.copyOf(line, length), nodes);
+        } finally {
+            position = null;
+        }
+    }
+
+    /**
+     * @return whether the attacker mates from the current position within the plies,
+     * false also when the search was cut short
+     */
+    private boolean prove(int plies, int ply) {
+        if (aborted) {
+            return false;
+        }
+        expand(plies, ply, INFINITY, INFINITY);
+        int slot = slot(plies);
+        return keys[slot] == key(plies) && proofs[slot] == 0;
+    }
+
+    /**
+     * @return the fewest plies, up to the given odd number, in which the side to move
+     * mates, or -1 if it cannot or the search was cut short
+     */
+    private int shortest(int plies, int ply) {
+        for (int n = 1; n <= plies; n += 2) {
+            if (prove(n, ply)) {
+                return n;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the fastest mate against the longest defence into the line
+     *
+     * @return the end of the line, which is cut short if the node budget runs out
+     */
+    private int extract(int plies, int ply, int[] line, int length) {
+        boolean attacker = (plies & 1) == 1;
+        int target = attacker ? shortest(plies, ply) : -1;
+        if (target < 0 && attacker) {
+            return length;
+        }
+        int[] list = moves[ply];
+        int count = position.legalMoves(list, 0);
+        if (count == 0) {
+            return length;
+        }
+        int chosen = Move.NONE;
+        int chosenPlies = -1;
+        for (int i = 0; i < count && !aborted; i++) {
+            int move = list[i];
+            position.make(move);
+            if (attacker) {
+                boolean mates = prove(target - 1, ply + 1);
+                position.unmake();
+                if (mates) {
+                    chosen = move;
+                    chosenPlies = target - 1;
+                    break;
+                }
+            } else {
+                int resistance = shortest(plies - 1, ply + 1);
+                position.unmake();
+                if (resistance > chosenPlies) {
+                    chosen = move;
+                    chosenPlies = resistance;
+                }
+            }
+        }
+        if (chosen == Move.NONE || aborted) {
+            return length;
+        }
+        line[length] = chosen;
+        position.make(chosen);
+        int end = extract(chosenPlies, ply + 1, line, length + 1);
+        position.unmake();
+        return end;
+    }
+
+    /**
+     * Searches the current position until its proof number reaches one threshold or its
+     * disproof number the other, and leaves its numbers in the table
+     *
+     * @param plies the plies left: odd where the attacker moves and even where the defender does
+     */
+    private void expand(int plies, int ply, int proofThreshold, int disproofThreshold) {
+        nodes++;
+        if (nodes >= budget) {
+            aborted = true;
+        }
+        boolean attacker = (plies & 1) == 1;
+        int[] list = moves[ply];
+        int count = position.legalMoves(list, 0);
+        if (count == 0 || plies == 0) {
+            boolean mated = count == 0 && !attacker && position.inCheck();
+            store(plies, mated ? 0 : INFINITY, mated ? INFINITY : 0);
+            return;
+        }
+        int[] childProofs = proofNumbers[ply];
+        int[] childDisproofs = disproofNumbers[ply];
+        for (int i = 0; i < count; i++) {
+            position.make(list[i]);
+            child(plies - 1, ply + 1);
+            position.unmake();
+            childProofs[i] = numbers[0];
+            childDisproofs[i] = numbers[1];
+        }
+        while (true) {
+            // The side to move picks the child closest to going its way: the attacker by
+            // proof number, the defender by disproof number; the other number adds up
+            int[] mine = attacker ? childProofs : childDisproofs;
+            int[] other = attacker ? childDisproofs : childProofs;
+            int best = -1;
+            int bestNumber = INFINITY + 1;
+            int second = INFINITY;
+            int sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum = Math.min(INFINITY, sum + other[i]);
+                if (mine[i] < bestNumber) {
+                    second = Math.min(second, bestNumber);
+                    best = i;
+                    bestNumber = mine[i];
+                } else if (mine[i] < second) {
+                    second = mine[i];
+                }
+            }
+            int proof = attacker ? bestNumber : sum;
+            int disproof = attacker ? sum : bestNumber;
+            if (proof >= proofThreshold || disproof >= disproofThreshold || aborted) {
+                store(plies, proof, disproof);
+                return;
+            }
+            int mineThreshold = Math.min(attacker ? proofThreshold : disproofThreshold, second + 1);
+            int otherThreshold = Math.min(INFINITY,
+                    (attacker ? disproofThreshold : proofThreshold) - sum + other[best]);
+            position.make(list[best]);
+            if (attacker) {
+                expand(plies - 1, ply + 1, mineThreshold, otherThreshold);
+            } else {
+                expand(plies - 1, ply + 1, otherThreshold, mineThreshold);
+            }
+            // The child always leaves its numbers in the table on the way out
+            int slot = slot(plies - 1);
+            childProofs[best] = proofs[slot];
+            childDisproofs[best] = disproofs[slot];
+            position.unmake();
+        }
+    }
+
+    /**
+     * Reads the numbers of the current position from the table, or settles them at once if
+     * the position is mate, stalemate or out of plies. Otherwise a defender starts with a
+     * proof number of its legal moves, so the fewer replies a move leaves, such as a
+     * check, the sooner it is tried.
+     */
+    private void child(int plies, int ply) {
+        int slot = slot(plies);
+        if (keys[slot] == key(plies)) {
+            numbers[0] = proofs[slot];
+            numbers[1] = disproofs[slot];
+            return;
+        }
+        numbers[0] = 1;
+        numbers[1] = 1;
+        if ((plies & 1) == 0) {
+            int replies = position.legalMoves(moves[ply], 0);
+            if (replies == 0 || plies == 0) {
+                boolean mated = replies == 0 && position.inCheck();
+                numbers[0] = mated ? 0 : INFINITY;
+                numbers[1] = mated ? INFINITY : 0;
+            } else {
+                numbers[0] = replies;
+            }
+        }
+    }
+
+    private void store(int plies, int proof, int disproof) {
+        int slot = slot(plies);
+        keys[slot] = key(plies);
+        proofs[slot] = proof;
+        disproofs[slot] = disproof;
+    }
+
+    private long key(int plies) {
+        return position.canonicalKey() ^ (plies + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    private int slot(int plies) {
+        long key = key(plies);
+        return (int) (key ^ key >>> 32) & mask;
+    }
+}
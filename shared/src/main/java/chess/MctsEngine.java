@@ -0,0 +1,350 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A Monte Carlo tree search engine: UCT selection over a tree grown one node per
+ * playout, with uniformly random playouts to the end of the game. Its strength grows
+ * smoothly with the playout budget, which makes it a good fit for weaker bots.
+ * <p>
+ * The tree is a set of flat arrays indexed by node, with each node's children stored
+ * contiguously, so a search allocates nothing per node. Several threads search the same
+ * tree at once. A thread counts a visit on every node it passes through on the way down,
+ * before its playout has a result, so until the result is added the visit scores as a
+ * loss (a virtual loss) and steers other threads towards other lines. Visit and score
+ * counts are atomic; a node's children are published once by whichever thread expands it.
+ * <p>
+ * An engine reuses its tree arrays between searches and runs one search at a time.
+ */
+public final class MctsEngine implements Engine {
+
+    /**
+     * How strongly UCT favours rarely visited moves over well scoring ones
+     */
+    private static final double EXPLORATION = 1.4;
+    private static final int MAX_TREE_DEPTH = 256;
+    private static final int MAX_PLAYOUT_PLIES = 300;
+    private static final int PLAYOUTS_PER_PLY = 1000;
+
+    private static final int UNEXPANDED = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    /**
+     * Playout results, in half points for white
+     */
+    private static final int BLACK_WINS = 0;
+    private static final int DRAW = 1;
+    private static final int WHITE_WINS = 2;
+
+    private final int threads;
+    private final int[] moves;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final AtomicIntegerArray state;
+    private final AtomicIntegerArray visits;
+    /**
+     * Half points scored by the side that made the move leading to each node
+     */
+    private final AtomicIntegerArray value;
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final AtomicInteger remaining = new AtomicInteger();
+    private long deadline;
+    private AtomicBoolean stop;
+    private final SplittableRandom seeds;
+    private volatile boolean full;
+
+    public MctsEngine() {
+        this(Runtime.getRuntime().availableProcessors(), 1 << 20);
+    }
+
+    /**
+     * @param threads  the number of threads searching the tree together
+     * @param maxNodes the most nodes the tree may grow to; playouts continue from the leaves once it is full
+     */
+    public MctsEngine(int threads, int maxNodes) {
+        this(threads, maxNodes, System.nanoTime());
+    }
+
+    /**
+     * @param seed seeds the playouts, so single threaded searches can be repeated
+     */
+    public MctsEngine(int threads, int maxNodes, long seed) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one search thread");
+        }
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("Tree must hold at least the root");
+        }
+        this.threads = threads;
+        this.moves = new int[maxNodes];
+        this.firstChild = new int[maxNodes];
+        this.childCount = new int[maxNodes];
+        this.state = new AtomicIntegerArray(maxNodes);
+        this.visits = new AtomicIntegerArray(maxNodes);
+        this.value = new AtomicIntegerArray(maxNodes);
+        this.seeds = new SplittableRandom(seed);
+    }
+
+    /**
+     * The outcome of a search
+     *
+     * @param move      the most visited move, the first legal one if no playout finished,
+     *                  or null if the game is over
+     * @param playouts  how many playouts were run
+     * @param nodes     how many nodes the tree grew to
+     * @param score     the expected score of the move for the team on turn, from 0 (loss) to 1 (win)
+     */
+    public record Result(ChessMove move, int playouts, int nodes, double score) {
+    }
+
+    /**
+     * Searches the game's current position with a budget of playouts shared by all threads
+     */
+    public Result search(ChessGame game, int playouts) {
+        return search(game, playouts, 0);
+    }
+
+    /**
+     * Searches the game's current position until the playouts are spent or time runs out
+     *
+     * @param millis the most time to search for, or 0 for no limit
+     */
+    public Result search(ChessGame game, int playouts, long millis) {
+        return search(game, playouts, millis, new AtomicBoolean());
+    }
+
+    /**
+     * Searches until the playouts are spent, time runs out or the stop flag is set. The
+     * flag is the caller's, so setting it before the search has started still stops it.
+     */
+    public synchronized Result search(ChessGame game, int playouts, long millis, AtomicBoolean stop) {
+        this.stop = stop;
+        deadline = millis == 0 ? Long.MAX_VALUE : System.nanoTime() + millis * 1_000_000L;
+        nodeCount.set(1);
+        full = false;
+        state.set(0, UNEXPANDED);
+        visits.set(0, 0);
+        value.set(0, 0);
+        remaining.set(playouts);
+
+        List<Thread> helpers = new ArrayList<>();
+        Throwable[] failure = new Throwable[1];
+        for (int i = 1; i < threads; i++) {
+            long seed = seeds.nextLong();
+            Thread thread = new Thread(() -> work(game, seed), "mcts-worker-" + i);
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> {
+                synchronized (failure) {
+                    failure[0] = e;
+                }
+            });
+            helpers.add(thread);
+            thread.start();
+        }
+        try {
+            work(game, seeds.nextLong());
+        } finally {
+            remaining.set(0);
+            for (Thread thread : helpers) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw new IllegalStateException("Search thread failed", failure[0]);
+            }
+        }
+        return result(game);
+    }
+
+    /**
+     * @return the most visited move after searching with a budget of playouts
+     */
+    public ChessMove bestMove(ChessGame game, int playouts) {
+        return search(game, playouts).move();
+    }
+
+    /**
+     * Searches within the node and time limits. A tree search has no fixed depth, so a
+     * depth limit alone allows {@value #PLAYOUTS_PER_PLY} playouts per ply of depth. Any
+     * playout can be the last, so a soft time limit is used in place of the hard one.
+     */
+    @Override
+    public ChessMove bestMove(ChessGame game, Limits limits) {
+        return bestMove(game, limits, new AtomicBoolean());
+    }
+
+    @Override
+    public ChessMove bestMove(ChessGame game, Limits limits, AtomicBoolean stop) {
+        long nodes = limits.nodes();
+        long millis = limits.softMillis() != 0 ? limits.softMillis() : limits.millis();
+        if (nodes == 0 && millis == 0) {
+            nodes = (long) limits.depth() * PLAYOUTS_PER_PLY;
+        }
+        int playouts = nodes == 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, nodes);
+        return search(game, playouts, millis, stop).move();
+    }
+
+    /**
+     * Ends the running search, if any, after the playouts in progress
+     */
+    @Override
+    public void stop() {
+        remaining.set(0);
+    }
+
+    private Result result(ChessGame game) {
+        int best = -1;
+        if (state.get(0) == EXPANDED) {
+            for (int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++) {
+                if (best < 0 || visits.get(child) > visits.get(best)) {
+                    best = child;
+                }
+            }
+        }
+        int playouts = visits.get(0);
+        if (best < 0) {
+            int[] legal = new int[Position.MAX_MOVES];
+            ChessMove first = Position.of(game).legalMoves(legal, 0) == 0 ? null : Move.toChessMove(legal[0]);
+            return new Result(first, playouts, nodeCount.get(), 0);
+        }
+        double score = visits.get(best) == 0 ? 0.5 : value.get(best) / (2.0 * visits.get(best));
+        return new Result(Move.toChessMove(moves[best]), playouts, Math.min(nodeCount.get(), moves.length), score);
+    }
+
+    /**
+     * One thread's share of the search: select, expand, play out and back up until the budget runs out
+     */
+    private void work(ChessGame game, long seed) {
+        Position position = Position.of(game);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] buffer = new int[Position.MAX_MOVES];
+        int[] path = new int[MAX_TREE_DEPTH + 2];
+        int rootSide = position.sideToMove();
+
+        while (remaining.getAndDecrement() > 0) {
+            if (stop.get() || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0)) {
+                remaining.set(0);
+                break;
+            }
+            int node = 0;
+            int depth = 0;
+            visits.incrementAndGet(node);
+            path[depth++] = node;
+            while (state.get(node) == EXPANDED && childCount[node] > 0 && depth <= MAX_TREE_DEPTH) {
+                node = select(node);
+                visits.incrementAndGet(node);
+                position.make(moves[node]);
+                path[depth++] = node;
+            }
+
+            if (state.get(node) == UNEXPANDED && !full && expand(node, position, buffer) && childCount[node] > 0) {
+                node = firstChild[node] + random.nextInt(childCount[node]);
+                visits.incrementAndGet(node);
+                position.make(moves[node]);
+                path[depth++] = node;
+            }
+
+            int result = playout(position, random, buffer);
+            for (int i = 0; i < depth; i++) {
+                // Even depths are reached by the opponent of the side to move at the root
+                int mover = (i & 1) == 1 ? rootSide : rootSide ^ Position.BLACK;
+                value.addAndGet(path[i], mover == Position.WHITE ? result : WHITE_WINS - result);
+            }
+            for (int i = 1; i < depth; i++) {
+                position.unmake();
+            }
+        }
+    }
+
+    /**
+     * @return the child with the best upper confidence bound
+     */
+    private int select(int node) {
+        double logVisits = Math.log(Math.max(1, visits.get(node)));
+        int best = firstChild[node];
+        double bestBound = Double.NEGATIVE_INFINITY;
+        for (int child = firstChild[node]; child < firstChild[node] + childCount[node]; child++) {
+            int n = visits.get(child);
+            if (n == 0) {
+                return child;
+            }
+            double bound = value.get(child) / (2.0 * n) + EXPLORATION * Math.sqrt(logVisits / n);
+            if (bound > bestBound) {
+                bestBound = bound;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds a node's children, unless another thread is already doing so or the tree is full
+     *
+     * @return true if this thread expanded the node
+     */
+    private boolean expand(int node, Position position, int[] buffer) {
+        if (!state.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return false;
+        }
+        int count = position.legalMoves(buffer, 0);
+        int first = nodeCount.getAndAdd(count);
+        if (first + count > moves.length) {
+            full = true;
+            state.set(node, UNEXPANDED);
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int child = first + i;
+            moves[child] = buffer[i];
+            state.set(child, UNEXPANDED);
+            visits.set(child, 0);
+            value.set(child, 0);
+        }
+        firstChild[node] = first;
+        childCount[node] = count;
+        state.set(node, EXPANDED);
+        return true;
+    }
+
+    /**
+     * Plays random legal moves until the game ends, then takes them back
+     *
+     * @return the result in half points for white
+     */
+    private static int playout(Position position, SplittableRandom random, int[] buffer) {
+        int made = 0;
+        int result;
+        while (true) {
+            if (position.halfmoveClock() >= 100 || position.isRepetition() || made == MAX_PLAYOUT_PLIES) {
+                result = DRAW;
+                break;
+            }
+            int count = position.legalMoves(buffer, 0);
+            if (count == 0) {
+                if (!position.inCheck()) {
+                    result = DRAW;
+                } else {
+                    result = position.sideToMove() == Position.WHITE ? BLACK_WINS : WHITE_WINS;
+                }
+                break;
+            }
+            position.make(buffer[random.nextInt(count)]);
+            made++;
+        }
+        for (; made > 0; made--) {
+            position.unmake();
+        }
+        return result;
+    }
+}
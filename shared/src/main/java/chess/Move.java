@@ -0,0 +1,122 @@
+package chess;
+
+/**
+ * Helpers for moves packed into a single int, as used by {@link Position}.
+ * <p>
+ * Bits 0-5 hold the start square, bits 6-11 the end square and bits 12-14 the
+ * promotion piece type (0 for none). Every move fits in 15 bits, so a move list
+ * can also be stored as a {@code short[]}. Squares are numbered 0-63 as
+ * {@code (row - 1) * 8 + (column - 1)}.
+ */
+public final class Move {
+
+    /**
+     * Never a legal move (a1 to a1), so it can mark "no move"
+     */
+    public static final int NONE = 0;
+
+    private Move() {
+    }
+
+    public static int of(int from, int to) {
+        return from | to << 6;
+    }
+
+    public static int of(int from, int to, int promotion) {
+        return from | to << 6 | promotion << 12;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return move >>> 6 & 63;
+    }
+
+    /**
+     * @return the {@link Position} piece type to promote to, or 0 if no promotion
+     */
+    public static int promotion(int move) {
+        return move >>> 12 & 7;
+    }
+
+    /**
+     * @return the same move on a board mirrored top to bottom, as played in the color-flipped position
+     */
+    public static int flip(int move) {
+        return move ^ (56 | 56 << 6);
+    }
+
+    public static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    public static ChessPosition position(int square) {
+        return new ChessPosition((square >> 3) + 1, (square & 7) + 1);
+    }
+
+    /**
+     * Packs a {@link ChessMove} into an int
+     */
+    public static int of(ChessMove move) {
+        int promotion = move.getPromotionPiece() == null ? 0 : Position.type(move.getPromotionPiece());
+        return of(square(move.getStartPosition()), square(move.getEndPosition()), promotion);
+    }
+
+    /**
+     * Unpacks an int move into a {@link ChessMove}
+     */
+    public static ChessMove toChessMove(int move) {
+        int promotion = promotion(move);
+        return new ChessMove(position(from(move)), position(to(move)),
+                promotion == 0 ? null : Position.pieceType(promotion));
+    }
+
+    /**
+     * @return the move in coordinate notation, e.g. "e2e4" or "e7e8q"
+     */
+    public static String toString(int move) {
+        StringBuilder text = new StringBuilder(5);
+        appendSquare(text, from(move));
+        appendSquare(text, to(move));
+        if (promotion(move) != 0) {
+            text.append(" pnbrqk".charAt(promotion(move)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Parses a move in coordinate notation, as written by {@link #toString(int)}
+     *
+     * @throws IllegalArgumentException if the text is not a move
+     */
+    public static int parse(CharSequence text) {
+        if (text.length() < 4 || text.length() > 5) {
+            throw new IllegalArgumentException("Not a move: " + text);
+        }
+        int from = parseSquare(text, 0);
+        int to = parseSquare(text, 2);
+        int promotion = 0;
+        if (text.length() == 5) {
+            promotion = "nbrq".indexOf(Character.toLowerCase(text.charAt(4))) + Position.KNIGHT;
+            if (promotion < Position.KNIGHT) {
+                throw new IllegalArgumentException("Bad promotion piece: " + text);
+            }
+        }
+        return of(from, to, promotion);
+    }
+
+    private static int parseSquare(CharSequence text, int offset) {
+        int file = text.charAt(offset) - 'a';
+        int rank = text.charAt(offset + 1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            throw new IllegalArgumentException("Bad square in move: " + text);
+        }
+        return rank * 8 + file;
+    }
+
+    static void appendSquare(StringBuilder text, int square) {
+        text.append((char) ('a' + (square & 7))).append((char) ('1' + (square >> 3)));
+    }
+}
@@ -0,0 +1,235 @@
+package chess;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A small NNUE-style evaluation network: 768 piece-square inputs from each side's
+ * point of view, a hidden layer of int16 accumulators per side, a clipped ReLU, and
+ * one output neuron over the side to move's accumulators followed by the other side's.
+ * <p>
+ * An input is a piece of one's own or of the opponent's, its type, and its square as
+ * seen from one's own side, so both sides share the same weights. Weights are int16,
+ * quantized by {@value #QA} in the hidden layer and {@value #QB} in the output layer;
+ * an output of {@code QA * QB} is {@value #SCALE} centipawns. The hidden layer is kept
+ * up to date move by move in an {@link Accumulator}, which is where most of the saving
+ * is, and the arithmetic runs on the Vector API when it is available.
+ * <p>
+ * The network ships as the resource {@value #RESOURCE}, little-endian: the magic
+ * number, the hidden layer size, the input weights input by input, the hidden biases,
+ * the output weights, all int16, and the output bias as an int32. The shipped network
+ * is built from the tuned {@link Evaluation} tables, blending the middlegame and
+ * endgame tables evenly, by {@code java chess.Network network.nnue}; a trained
+ * network in the same format can replace it.
+ */
+public final class Network {
+
+    public static final int INPUTS = 2 * 6 * 64;
+    static final int QA = 255;
+    static final int QB = 64;
+    static final int SCALE = 400;
+    static final String RESOURCE = "/chess/network.nnue";
+    private static final int MAGIC = 0x45554E4E;
+    private static final int DEFAULT_HIDDEN = 64;
+    /**
+     * The output weight of a hidden neuron built by {@link #fromEvaluation}, so that a
+     * centipawn in the tables is about a centipawn out: {@code QA * QB / SCALE}, rounded
+     */
+    private static final int UNIT_WEIGHT = 41;
+    /**
+     * Most pieces of each type a side is expected to have, for the ranges of {@link #fromEvaluation}
+     */
+    private static final int[] MAX_COUNTS = {0, 8, 2, 2, 2, 2, 1};
+
+    private static volatile Network standard;
+
+    final int hidden;
+    final short[] inputWeights;
+    final short[] hiddenBiases;
+    final short[] outputWeights;
+    final int outputBias;
+    final NetworkKernel kernel;
+
+    /**
+     * @param inputWeights  {@code hidden} weights for each input in turn
+     * @param outputWeights the side to move's hidden neurons, then the other side's
+     */
+    public Network(int hidden, short[] inputWeights, short[] hiddenBiases, short[] outputWeights, int outputBias) {
+        this(hidden, inputWeights, hiddenBiases, outputWeights, outputBias, NetworkKernel.create());
+    }
+
+    Network(int hidden, short[] inputWeights, short[] hiddenBiases, short[] outputWeights, int outputBias,
+            NetworkKernel kernel) {
+        if (hidden < 1 || inputWeights.length != INPUTS * hidden || hiddenBiases.length != hidden
+                || outputWeights.length != 2 * hidden) {
+            throw new IllegalArgumentException("Layer sizes do not match a hidden layer of " + hidden);
+        }
+        this.hidden = hidden;
+        this.inputWeights = inputWeights.clone();
+        this.hiddenBiases = hiddenBiases.clone();
+        this.outputWeights = outputWeights.clone();
+        this.outputBias = outputBias;
+        this.kernel = kernel;
+    }
+
+    /**
+     * @return the network shipped in the resource
+     */
+    public static Network standard() {
+        Network network = standard;
+        if (network == null) {
+            try (InputStream in = Network.class.getResourceAsStream(RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing resource " + RESOURCE);
+                }
+                network = read(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read " + RESOURCE, e);
+            }
+            standard = network;
+        }
+        return network;
+    }
+
+    public static Network read(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a network file");
+        }
+        int hidden = buffer.getInt();
+        if (hidden < 1 || buffer.remaining() != ((INPUTS + 3) * (long) hidden) * Short.BYTES + Integer.BYTES) {
+            throw new IOException("Network file has the wrong size for a hidden layer of " + hidden);
+        }
+        short[] inputWeights = new short[INPUTS * hidden];
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        buffer.asShortBuffer().get(inputWeights).get(hiddenBiases).get(outputWeights);
+        buffer.position(buffer.position() + (INPUTS + 3) * hidden * Short.BYTES);
+        return new Network(hidden, inputWeights, hiddenBiases, outputWeights, buffer.getInt());
+    }
+
+    public static Network read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + (INPUTS + 3) * hidden * Short.BYTES + Integer.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(hidden);
+        buffer.asShortBuffer().put(inputWeights).put(hiddenBiases).put(outputWeights);
+        buffer.position(buffer.position() + (INPUTS + 3) * hidden * Short.BYTES);
+        buffer.putInt(outputBias);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(buffer.array());
+        }
+    }
+
+    /**
+     * @param perspective the {@link Position} color whose accumulators the input feeds
+     * @return the input for a {@link Position} piece code on a square
+     */
+    static int input(int perspective, int piece, int square) {
+        int side = Position.color(piece) == perspective ? 0 : 1;
+        int relative = perspective == Position.WHITE ? square : square ^ 56;
+        return (side * 6 + Position.type(piece) - 1) * 64 + relative;
+    }
+
+    /**
+     * @param us   where the side to move's accumulators start in {@code values}
+     * @param them where the other side's start
+     * @return the score in centipawns for the side to move
+     */
+    int output(short[] values, int us, int them) {
+        long sum = kernel.clampedDot(values, us, outputWeights, 0, hidden, QA)
+                + kernel.clampedDot(values, them, outputWeights, hidden, hidden, QA) + (long) outputBias;
+        return (int) (sum * SCALE / (QA * QB));
+    }
+
+    /**
+     * Evaluates a position from scratch; to follow a game or a search, attach an
+     * {@link Accumulator} to the position instead
+     *
+     * @return the score in centipawns for the side to move
+     */
+    public int evaluate(Position position) {
+        Accumulator accumulator = new Accumulator(this);
+        accumulator.refresh(position);
+        return accumulator.evaluate(position.sideToMove());
+    }
+
+    public int hidden() {
+        return hidden;
+    }
+
+    public boolean isVectorized() {
+        return kernel.isVectorized();
+    }
+
+    /**
+     * Builds a network that scores like the evaluation's tables blended evenly between
+     * middlegame and endgame. Each piece type gets enough hidden neurons to share its
+     * table between them without clipping, and the rest are left unused.
+     */
+    public static Network fromEvaluation(Evaluation evaluation, int hidden) {
+        int[] params = evaluation.params();
+        short[] inputWeights = new short[INPUTS * hidden];
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        int neuron = 0;
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            int[] values = new int[64];
+            int low = 0;
+            int high = 0;
+            for (int sq = 0; sq < 64; sq++) {
+                values[sq] = Math.round((params[Evaluation.index(0, type, sq)]
+                        + params[Evaluation.index(1, type, sq)]) / 2.0f);
+                low = Math.min(low, values[sq]);
+                high = Math.max(high, values[sq]);
+            }
+            int count = MAX_COUNTS[type];
+            int neurons = Math.max(1, (count * (high - low) + QA - 2 * count - 1) / (QA - 2 * count));
+            if (neuron + neurons > hidden) {
+                throw new IllegalArgumentException("A hidden layer of " + hidden + " is too small for the tables");
+            }
+            for (int n = 0; n < neurons; n++, neuron++) {
+                hiddenBiases[neuron] = (short) (-count * Math.floorDiv(low, neurons));
+                outputWeights[neuron] = UNIT_WEIGHT;
+                outputWeights[hidden + neuron] = -UNIT_WEIGHT;
+                for (int sq = 0; sq < 64; sq++) {
+                    int share = Math.floorDiv(values[sq], neurons)
+                            + (n < Math.floorMod(values[sq], neurons) ? 1 : 0);
+                    inputWeights[((type - 1) * 64 + sq) * hidden + neuron] = (short) share;
+                }
+            }
+        }
+        return new Network(hidden, inputWeights, hiddenBiases, outputWeights, 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Network other && hidden == other.hidden && outputBias == other.outputBias
+                && Arrays.equals(inputWeights, other.inputWeights) && Arrays.equals(hiddenBiases, other.hiddenBiases)
+                && Arrays.equals(outputWeights, other.outputWeights);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(inputWeights) * 31 + Arrays.hashCode(outputWeights);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: Network <output file>");
+            return;
+        }
+        Network.fromEvaluation(Evaluation.standard(), DEFAULT_HIDDEN).write(Path.of(args[0]));
+    }
+}
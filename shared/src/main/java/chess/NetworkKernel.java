@@ -0,0 +1,61 @@
+package chess;
+
+/**
+ * The arithmetic of {@link Network} inference on int16 arrays. {@link #create()}
+ * returns an implementation using the Vector API when the {@code jdk.incubator.vector}
+ * module is available, and this scalar loop otherwise; both give identical results.
+ */
+class NetworkKernel {
+
+    NetworkKernel() {
+    }
+
+    /**
+     * @return the fastest kernel this JVM supports
+     */
+    static NetworkKernel create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (NetworkKernel) Class.forName("chess.VectorNetworkKernel")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to the scalar loop
+            }
+        }
+        return scalar();
+    }
+
+    static NetworkKernel scalar() {
+        return new NetworkKernel();
+    }
+
+    boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Adds {@code length} weights from {@code weights[from]} to the values at {@code values[at]}
+     */
+    void add(short[] values, int at, short[] weights, int from, int length) {
+        for (int i = 0; i < length; i++) {
+            values[at + i] += weights[from + i];
+        }
+    }
+
+    void subtract(short[] values, int at, short[] weights, int from, int length) {
+        for (int i = 0; i < length; i++) {
+            values[at + i] -= weights[from + i];
+        }
+    }
+
+    /**
+     * @return the sum of each value, clamped to {@code [0, max]}, times its weight
+     */
+    int clampedDot(short[] values, int at, short[] weights, int from, int length, int max) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.max(0, Math.min(max, values[at + i])) * weights[from + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,313 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Move statistics for every position in a game archive: which moves were played, how
+ * often, and how the games ended.
+ * <p>
+ * {@link #build} is a parallel map-reduce. Each worker replays its share of the games
+ * into its own open-addressing table of primitive arrays keyed by position key and
+ * packed move, and the tables are merged pairwise at the end. The result is a sorted
+ * lookup file: a 16 byte header, every position key, then one {@value #RECORD_BYTES}
+ * byte record (move, games, white wins, draws, black wins) per key. The key section is
+ * binary searched, so answering the explorer is one lookup rather than a scan of games.
+ * In memory both sections are split into buffers of at most {@code 2^24} records, so no
+ * offset overflows an int however large the archive.
+ */
+public final class OpeningExplorer {
+
+    /**
+     * How deep into each game statistics are collected by default
+     */
+    public static final int DEFAULT_MAX_PLY = 40;
+
+    private static final int MAGIC = 0x434F5831;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 18;
+    private static final int CHUNK_SHIFT = 24;
+
+    private final long count;
+    private final int chunkShift;
+    private final ByteBuffer[] keys;
+    private final ByteBuffer[] records;
+
+    private OpeningExplorer(long count, int chunkShift, ByteBuffer[] keys, ByteBuffer[] records) {
+        this.count = count;
+        this.chunkShift = chunkShift;
+        this.keys = keys;
+        this.records = records;
+    }
+
+    /**
+     * Tallies the first {@code maxPly} moves of every game, across all cores
+     */
+    public static OpeningExplorer build(Stream<PgnGame> games, int maxPly) {
+        return build(games, maxPly, CHUNK_SHIFT);
+    }
+
+    /**
+     * @param chunkShift the log2 of the records in each buffer
+     */
+    static OpeningExplorer build(Stream<PgnGame> games, int maxPly, int chunkShift) {
+        Tally tally = games.parallel().collect(() -> new Tally(maxPly), Tally::addGame, Tally::merge);
+        return tally.toExplorer(chunkShift);
+    }
+
+    /**
+     * Tallies every game in a PGN file
+     */
+    public static OpeningExplorer build(Path pgn, int maxPly) throws IOException {
+        try (PgnReader reader = new PgnReader(FileChannel.open(pgn, StandardOpenOption.READ))) {
+            return build(reader.games(), maxPly);
+        }
+    }
+
+    /**
+     * Memory-maps a file written by {@link #write}
+     */
+    public static OpeningExplorer open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not an opening explorer file: " + file);
+            }
+            long count = header.getLong(8);
+            int chunks = (int) ((count + (1L << CHUNK_SHIFT) - 1) >>> CHUNK_SHIFT);
+            MappedByteBuffer[] keys = new MappedByteBuffer[chunks];
+            MappedByteBuffer[] records = new MappedByteBuffer[chunks];
+            long recordStart = HEADER_BYTES + count * Long.BYTES;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                long first = (long) chunk << CHUNK_SHIFT;
+                long length = Math.min(count - first, 1L << CHUNK_SHIFT);
+                keys[chunk] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + first * Long.BYTES, length * Long.BYTES);
+                records[chunk] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        recordStart + first * RECORD_BYTES, length * RECORD_BYTES);
+            }
+            return new OpeningExplorer(count, CHUNK_SHIFT, keys, records);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(0).putLong(count).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header);
+            for (ByteBuffer chunk : keys) {
+                writeFully(channel, chunk.duplicate().clear());
+            }
+            for (ByteBuffer chunk : records) {
+                writeFully(channel, chunk.duplicate().clear());
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return the moves played from a position, most played first
+     */
+    public List<MoveStats> lookup(long key) {
+        List<MoveStats> moves = new ArrayList<>();
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(key(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (long i = low; i < count && key(i) == key; i++) {
+            ByteBuffer chunk = records[(int) (i >>> chunkShift)];
+            int offset = (int) (i & (1L << chunkShift) - 1) * RECORD_BYTES;
+            moves.add(new MoveStats(chunk.getShort(offset) & 0xFFFF, chunk.getInt(offset + 2),
+                    chunk.getInt(offset + 6), chunk.getInt(offset + 10), chunk.getInt(offset + 14)));
+        }
+        moves.sort(Comparator.comparingInt(MoveStats::games).reversed());
+        return moves;
+    }
+
+    private long key(long i) {
+        return keys[(int) (i >>> chunkShift)].getLong((int) (i & (1L << chunkShift) - 1) * Long.BYTES);
+    }
+
+    public List<MoveStats> lookup(ChessGame game) {
+        return lookup(game.getZobristKey());
+    }
+
+    /**
+     * @return the number of distinct position and move pairs
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * How one move from one position turned out. Games with no result count towards
+     * {@code games} but none of the tallies.
+     *
+     * @param move packed as in {@link Move}
+     */
+    public record MoveStats(int move, int games, int whiteWins, int draws, int blackWins) {
+        public ChessMove chessMove() {
+            return Move.toChessMove(move);
+        }
+    }
+
+    /**
+     * One worker's counts, in an open-addressing table of parallel primitive arrays
+     */
+    private static final class Tally {
+        private static final int GAMES = 0;
+        private static final int WHITE_WINS = 1;
+        private static final int DRAWS = 2;
+        private static final int BLACK_WINS = 3;
+
+        private final int maxPly;
+        private final Position position = new Position();
+        private long[] keys = new long[1 << 12];
+        private short[] moves = new short[1 << 12];
+        private int[] counts = new int[4 << 12];
+        private int size;
+
+        Tally(int maxPly) {
+            this.maxPly = maxPly;
+        }
+
+        void addGame(PgnGame game) {
+            int outcome = switch (game.result()) {
+                case PgnGame.WHITE_WINS -> WHITE_WINS;
+                case PgnGame.DRAW -> DRAWS;
+                case PgnGame.BLACK_WINS -> BLACK_WINS;
+                default -> -1;
+            };
+            try {
+                Fen.load(position, game.startFen());
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            int plies = Math.min(maxPly, game.moveCount());
+            for (int ply = 0; ply < plies; ply++) {
+                int move = game.move(ply);
+                int slot = slot(position.key(), move);
+                counts[4 * slot + GAMES]++;
+                if (outcome >= 0) {
+                    counts[4 * slot + outcome]++;
+                }
+                position.make(move);
+                position.forgetMoves();
+            }
+        }
+
+        void merge(Tally other) {
+            for (int from = 0; from < other.moves.length; from++) {
+                if (other.moves[from] != Move.NONE) {
+                    int slot = slot(other.keys[from], other.moves[from] & 0xFFFF);
+                    for (int i = 0; i < 4; i++) {
+                        counts[4 * slot + i] += other.counts[4 * from + i];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finds or claims the slot for a position and move
+         */
+        private int slot(long key, int move) {
+            if (2 * (size + 1) > moves.length) {
+                grow();
+            }
+            int mask = moves.length - 1;
+            int slot = hash(key, move) & mask;
+            while (moves[slot] != Move.NONE) {
+                if (keys[slot] == key && (moves[slot] & 0xFFFF) == move) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            moves[slot] = (short) move;
+            size++;
+            return slot;
+        }
+
+        private static int hash(long key, int move) {
+            long h = key ^ move * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ h >>> 32);
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            short[] oldMoves = moves;
+            int[] oldCounts = counts;
+            keys = new long[oldKeys.length * 2];
+            moves = new short[oldMoves.length * 2];
+            counts = new int[oldCounts.length * 2];
+            int mask = moves.length - 1;
+            for (int from = 0; from < oldMoves.length; from++) {
+                if (oldMoves[from] != Move.NONE) {
+                    int slot = hash(oldKeys[from], oldMoves[from] & 0xFFFF) & mask;
+                    while (moves[slot] != Move.NONE) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[from];
+                    moves[slot] = oldMoves[from];
+                    System.arraycopy(oldCounts, 4 * from, counts, 4 * slot, 4);
+                }
+            }
+        }
+
+        OpeningExplorer toExplorer(int chunkShift) {
+            long[] sortedKeys = new long[size];
+            long[] slots = new long[size];
+            int n = 0;
+            for (int slot = 0; slot < moves.length; slot++) {
+                if (moves[slot] != Move.NONE) {
+                    sortedKeys[n] = keys[slot];
+                    slots[n++] = slot;
+                }
+            }
+            RadixSort.sort(sortedKeys, slots, n, new long[n], new long[n]);
+
+            int chunkSize = 1 << chunkShift;
+            int chunks = (int) (((long) n + chunkSize - 1) >>> chunkShift);
+            ByteBuffer[] keyChunks = new ByteBuffer[chunks];
+            ByteBuffer[] recordChunks = new ByteBuffer[chunks];
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int first = chunk << chunkShift;
+                int length = Math.min(n - first, chunkSize);
+                ByteBuffer keyBuffer = ByteBuffer.allocate(length * Long.BYTES);
+                ByteBuffer recordBuffer = ByteBuffer.allocate(length * RECORD_BYTES);
+                for (int i = first; i < first + length; i++) {
+                    int slot = (int) slots[i];
+                    keyBuffer.putLong(sortedKeys[i]);
+                    recordBuffer.putShort(moves[slot]);
+                    for (int c = 0; c < 4; c++) {
+                        recordBuffer.putInt(counts[4 * slot + c]);
+                    }
+                }
+                keyChunks[chunk] = keyBuffer.flip();
+                recordChunks[chunk] = recordBuffer.flip();
+            }
+            return new OpeningExplorer(n, chunkShift, keyChunks, recordChunks);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package chess;
+
+/**
+ * A small cache of pawn structure evaluations, keyed by {@link Position#pawnKey()}.
+ * <p>
+ * The pawns change only on pawn moves and pawn captures, so most positions a search
+ * evaluates share their pawns with one already seen and can skip analysing them.
+ * Each entry holds the pawn key, the middlegame and endgame pawn structure scores for
+ * white, and the passed pawns of each side as square masks, all in primitive arrays
+ * indexed by slot. An entry simply replaces whatever shared its slot.
+ * <p>
+ * A table is not thread-safe; give each searching thread its own.
+ */
+public final class PawnTable {
+
+    private final long[] keys;
+    private final short[] middlegame;
+    private final short[] endgame;
+    private final long[] whitePassed;
+    private final long[] blackPassed;
+    private final int mask;
+    private long probes;
+    private long hits;
+
+    /**
+     * @param entries the number of entries, rounded down to a power of two
+     */
+    public PawnTable(int entries) {
+        if (entries < 1) {
+            throw new IllegalArgumentException("Table needs at least one entry");
+        }
+        int size = Integer.highestOneBit(entries);
+        keys = new long[size];
+        middlegame = new short[size];
+        endgame = new short[size];
+        whitePassed = new long[size];
+        blackPassed = new long[size];
+        mask = size - 1;
+        // Empty slots then hold the entry for no pawns at all, key 0, which is all zeros too
+    }
+
+    /**
+     * @return the slot for a pawn key, whether or not it holds that key's entry
+     */
+    int slot(long pawnKey) {
+        return (int) (pawnKey ^ pawnKey >>> 32) & mask;
+    }
+
+    /**
+     * @return whether a slot holds the entry for a pawn key
+     */
+    boolean holds(int slot, long pawnKey) {
+        probes++;
+        if (keys[slot] == pawnKey) {
+            hits++;
+            return true;
+        }
+        return false;
+    }
+
+    void store(int slot, long pawnKey, int middlegameScore, int endgameScore, long whitePassedPawns,
+               long blackPassedPawns) {
+        keys[slot] = pawnKey;
+        middlegame[slot] = (short) middlegameScore;
+        endgame[slot] = (short) endgameScore;
+        whitePassed[slot] = whitePassedPawns;
+        blackPassed[slot] = blackPassedPawns;
+    }
+
+    int middlegame(int slot) {
+        return middlegame[slot];
+    }
+
+    int endgame(int slot) {
+        return endgame[slot];
+    }
+
+    /**
+     * @return the squares of the passed pawns of a color, bit {@code sq} for square {@code sq}
+     */
+    long passed(int slot, int color) {
+        return color == Position.WHITE ? whitePassed[slot] : blackPassed[slot];
+    }
+
+    /**
+     * @return how many lookups have been made
+     */
+    public long probes() {
+        return probes;
+    }
+
+    /**
+     * @return how many lookups found their entry
+     */
+    public long hits() {
+        return hits;
+    }
+}
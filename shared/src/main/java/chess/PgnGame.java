@@ -0,0 +1,141 @@
+package chess;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One game read from a PGN file: its tag pairs, its moves packed as in {@link Move},
+ * and its result. A {@link PgnReader} refills the same object for every game, so
+ * callers that keep a game around should take a {@link #copy()}.
+ */
+public final class PgnGame {
+
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNKNOWN = "*";
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private short[] moves = new short[256];
+    private int moveCount;
+    private String result = UNKNOWN;
+    private String error;
+
+    public PgnGame() {
+    }
+
+    /**
+     * Creates a game, e.g. to export one that was not read from PGN
+     *
+     * @param tags   tag pairs in the order they should be written; a "FEN" tag sets the start position
+     * @param moves  the moves, packed as in {@link Move}
+     * @param result one of the result tokens, such as {@link #WHITE_WINS}
+     */
+    public static PgnGame of(Map<String, String> tags, short[] moves, String result) {
+        PgnGame game = new PgnGame();
+        game.tags.putAll(tags);
+        game.moves = Arrays.copyOf(moves, Math.max(16, moves.length));
+        game.moveCount = moves.length;
+        game.result = result;
+        return game;
+    }
+
+    void reset() {
+        tags.clear();
+        moveCount = 0;
+        result = UNKNOWN;
+        error = null;
+    }
+
+    void putTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(16, moves.length * 2));
+        }
+        moves[moveCount++] = (short) move;
+    }
+
+    void setResult(String result) {
+        this.result = result;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * @return the value of a tag such as "White" or "Event", or null if the game does not have it
+     */
+    public String tag(String name) {
+        return tags.get(name);
+    }
+
+    public Map<String, String> tags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * @return the FEN the game starts from
+     */
+    public String startFen() {
+        String fen = tags.get("FEN");
+        return fen == null ? Fen.START : fen;
+    }
+
+    public int moveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return the packed move at a ply, counting from 0
+     */
+    public int move(int ply) {
+        return moves[ply] & 0xFFFF;
+    }
+
+    /**
+     * @return a copy of the moves, ready for {@link ChessGame#applyAll(short[])}
+     */
+    public short[] moves() {
+        return Arrays.copyOf(moves, moveCount);
+    }
+
+    /**
+     * @return the result token: {@link #WHITE_WINS}, {@link #BLACK_WINS}, {@link #DRAW} or {@link #UNKNOWN}
+     */
+    public String result() {
+        return result;
+    }
+
+    /**
+     * @return why the move text could not be read, or null if every move was resolved.
+     * The moves before the problem are still available.
+     */
+    public String error() {
+        return error;
+    }
+
+    /**
+     * @return a new game at the start position, with every move applied
+     */
+    public ChessGame toChessGame() {
+        ChessGame game = ChessGame.of(Fen.parse(startFen()));
+        game.applyAll(moves());
+        return game;
+    }
+
+    public PgnGame copy() {
+        PgnGame copy = new PgnGame();
+        copy.tags.putAll(tags);
+        copy.moves = moves();
+        copy.moveCount = moveCount;
+        copy.result = result;
+        copy.error = error;
+        return copy;
+    }
+}
@@ -0,0 +1,438 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads games one at a time from a PGN stream of any size, using a fixed-size buffer.
+ * <p>
+ * The move text is scanned byte by byte: comments, variations and annotation glyphs
+ * are skipped, and each SAN token is resolved in place against the legal moves of a
+ * {@link Position}, so reading moves allocates nothing. Games with unreadable or illegal
+ * moves are still returned, with {@link PgnGame#error()} set and the moves up to the
+ * problem kept.
+ */
+public final class PgnReader implements Closeable {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final int MAX_TOKEN = 256;
+    private static final int MAX_TAG_VALUE = 1 << 12;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final byte[] token = new byte[MAX_TOKEN];
+    private int tokenLength;
+    private final byte[] tagValue = new byte[MAX_TAG_VALUE];
+    private final Position position = new Position();
+    private final int[] moves = new int[Position.MAX_MOVES];
+    private boolean started;
+
+    private long gamesRead;
+    private long bytesRead;
+    private final long startNanos = System.nanoTime();
+
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    public PgnReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    /**
+     * Reads the next game into {@code game}, replacing whatever it held
+     *
+     * @return false once the stream has no more games
+     */
+    public boolean next(PgnGame game) throws IOException {
+        game.reset();
+        if (!started) {
+            started = true;
+            skipByteOrderMark();
+        }
+        int c = skipSpace();
+        if (c < 0) {
+            return false;
+        }
+        while (c == '[') {
+            readTag(game);
+            c = skipSpace();
+        }
+        try {
+            Fen.load(position, game.startFen());
+        } catch (IllegalArgumentException e) {
+            game.setError(e.getMessage());
+        }
+        readMoveText(game);
+        gamesRead++;
+        return true;
+    }
+
+    /**
+     * Streams the remaining games, each its own copy. The stream can be made parallel;
+     * reading stays on one thread while the games are handed out in batches.
+     *
+     * @throws UncheckedIOException from the stream if reading fails
+     */
+    public Stream<PgnGame> games() {
+        Iterator<PgnGame> iterator = new Iterator<>() {
+            private final PgnGame game = new PgnGame();
+            private boolean ready;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready && !finished) {
+                    try {
+                        ready = PgnReader.this.next(game);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    finished = !ready;
+                }
+                return ready;
+            }
+
+            @Override
+            public PgnGame next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return game.copy();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public long gamesRead() {
+        return gamesRead;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return games read per second since this reader was created
+     */
+    public double gamesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? gamesRead / seconds : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readTag(PgnGame game) throws IOException {
+        read();
+        skipSpace();
+        tokenLength = 0;
+        int c = peek();
+        while (c > ' ' && c != '"' && c != ']') {
+            appendToken(read());
+            c = peek();
+        }
+        String name = new String(token, 0, tokenLength, StandardCharsets.US_ASCII);
+        c = skipSpace();
+        int length = 0;
+        if (c == '"') {
+            read();
+            while ((c = read()) >= 0 && c != '"' && c != '\n') {
+                if (c == '\\') {
+                    c = read();
+                }
+                if (length < MAX_TAG_VALUE && c >= 0) {
+                    tagValue[length++] = (byte) c;
+                }
+            }
+        }
+        while (c >= 0 && c != ']' && c != '\n') {
+            c = read();
+        }
+        game.putTag(name, new String(tagValue, 0, length, StandardCharsets.UTF_8));
+    }
+
+    private void readMoveText(PgnGame game) throws IOException {
+        boolean failed = game.error() != null;
+        while (true) {
+            int c = skipSpace();
+            switch (c) {
+                case -1, '[' -> {
+                    return;
+                }
+                case '{' -> skipPast('}');
+                case ';', '%' -> skipPast('\n');
+                case '(' -> skipVariation();
+                case '.', '$', ')' -> read();
+                default -> {
+                    readToken();
+                    String result = resultToken();
+                    if (result != null) {
+                        game.setResult(result);
+                        return;
+                    }
+                    if (!failed && !isMoveNumber()) {
+                        String problem = playSan(game);
+                        if (problem != null) {
+                            game.setError(problem);
+                            failed = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the SAN move in the token buffer and plays it
+     *
+     * @return a description of the problem, or null if the move was played
+     */
+    private String playSan(PgnGame game) {
+        int length = tokenLength;
+        while (length > 0 && isAnnotation(token[length - 1])) {
+            length--;
+        }
+        int move = length > 0 && (token[0] == 'O' || token[0] == '0') ? castlingMove(length) : pieceMove(length);
+        if (move == Move.NONE) {
+            return "Cannot play " + new String(token, 0, tokenLength, StandardCharsets.ISO_8859_1)
+                    + " at ply " + (game.moveCount() + 1);
+        }
+        position.make(move);
+        position.forgetMoves();
+        game.addMove(move);
+        return null;
+    }
+
+    private int castlingMove(int length) {
+        int zeros = 0;
+        for (int i = 0; i < length; i++) {
+            if (token[i] == 'O' || token[i] == '0') {
+                zeros++;
+            }
+        }
+        int home = position.sideToMove() == Position.WHITE ? 4 : 60;
+        int move = Move.of(home, zeros >= 3 ? home - 2 : home + 2);
+        return Position.type(position.piece(home)) == Position.KING && position.isLegal(move) ? move : Move.NONE;
+    }
+
+    private int pieceMove(int length) {
+        int type = Position.PAWN;
+        int start = 0;
+        if (length > 0 && pieceType(token[0]) != 0 && token[0] != 'P') {
+            type = pieceType(token[0]);
+            start = 1;
+        } else if (length > 0 && token[0] == 'P') {
+            start = 1;
+        }
+        int end = length;
+        int promotion = 0;
+        if (type == Position.PAWN && end > 0 && pieceType(token[end - 1]) != 0) {
+            promotion = pieceType(token[end - 1]);
+            end--;
+            if (end > 0 && token[end - 1] == '=') {
+                end--;
+            }
+        }
+        if (end - start < 2) {
+            return Move.NONE;
+        }
+        int toFile = token[end - 2] - 'a';
+        int toRank = token[end - 1] - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            return Move.NONE;
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int i = start; i < end - 2; i++) {
+            byte b = token[i];
+            if (b >= 'a' && b <= 'h') {
+                fromFile = b - 'a';
+            } else if (b >= '1' && b <= '8') {
+                fromRank = b - '1';
+            } else if (b != 'x' && b != ':' && b != '-') {
+                return Move.NONE;
+            }
+        }
+        if (type == Position.PAWN && fromFile < 0) {
+            fromFile = toFile;
+        }
+
+        int to = toRank * 8 + toFile;
+        int count = position.pseudoLegalMoves(moves, 0);
+        int found = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int candidate = moves[i];
+            int from = Move.from(candidate);
+            if (Move.to(candidate) != to || Move.promotion(candidate) != promotion
+                    || Position.type(position.piece(from)) != type
+                    || (fromFile >= 0 && (from & 7) != fromFile)
+                    || (fromRank >= 0 && from >> 3 != fromRank)
+                    || !position.keepsKingSafe(candidate)) {
+                continue;
+            }
+            if (found != Move.NONE) {
+                return Move.NONE;
+            }
+            found = candidate;
+        }
+        return found;
+    }
+
+    private static int pieceType(byte b) {
+        return switch (b) {
+            case 'P' -> Position.PAWN;
+            case 'N', 'n' -> Position.KNIGHT;
+            case 'B' -> Position.BISHOP;
+            case 'R', 'r' -> Position.ROOK;
+            case 'Q', 'q' -> Position.QUEEN;
+            case 'K' -> Position.KING;
+            default -> 0;
+        };
+    }
+
+    private static boolean isAnnotation(byte b) {
+        return b == '+' || b == '#' || b == '!' || b == '?';
+    }
+
+    private boolean isMoveNumber() {
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] < '0' || token[i] > '9') {
+                return false;
+            }
+        }
+        return tokenLength > 0;
+    }
+
+    private String resultToken() {
+        if (tokenMatches(PgnGame.WHITE_WINS)) {
+            return PgnGame.WHITE_WINS;
+        } else if (tokenMatches(PgnGame.BLACK_WINS)) {
+            return PgnGame.BLACK_WINS;
+        } else if (tokenMatches(PgnGame.DRAW)) {
+            return PgnGame.DRAW;
+        } else if (tokenMatches(PgnGame.UNKNOWN)) {
+            return PgnGame.UNKNOWN;
+        }
+        return null;
+    }
+
+    private boolean tokenMatches(String text) {
+        if (tokenLength != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readToken() throws IOException {
+        tokenLength = 0;
+        int c = peek();
+        while (c > ' ' && c != '.' && c != '{' && c != '}' && c != '(' && c != ')'
+                && c != ';' && c != '[' && c != ']' && c != '$') {
+            appendToken(read());
+            c = peek();
+        }
+        if (tokenLength == 0) {
+            read();
+        }
+    }
+
+    private void appendToken(int c) {
+        if (tokenLength < MAX_TOKEN) {
+            token[tokenLength++] = (byte) c;
+        }
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 0;
+        int c;
+        while ((c = read()) >= 0) {
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return;
+            } else if (c == '{') {
+                skipPast('}');
+            } else if (c == ';') {
+                skipPast('\n');
+            }
+        }
+    }
+
+    private void skipPast(int end) throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != end) {
+            // skip
+        }
+    }
+
+    /**
+     * Consumes whitespace and returns the next byte without consuming it
+     */
+    private int skipSpace() throws IOException {
+        int c = peek();
+        while (c >= 0 && c <= ' ') {
+            read();
+            c = peek();
+        }
+        return c;
+    }
+
+    private void skipByteOrderMark() throws IOException {
+        if (peek() == 0xEF) {
+            read();
+            read();
+            read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int n;
+        do {
+            n = channel.read(buffer);
+        } while (n == 0);
+        buffer.flip();
+        if (n < 0) {
+            return false;
+        }
+        bytesRead += n;
+        return true;
+    }
+}
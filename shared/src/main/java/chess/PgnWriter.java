@@ -0,0 +1,196 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes moves in standard algebraic notation and games as PGN.
+ * <p>
+ * SAN needs the legal moves of the position to decide on disambiguation and the check
+ * and mate suffixes, so games are replayed on a {@link Position}. Text is appended to a
+ * caller's {@link StringBuilder}, or streamed to a channel one game at a time through a
+ * reused buffer, so exporting any number of games never holds more than one in memory.
+ * A writer keeps its buffers between calls; use one per thread.
+ */
+public final class PgnWriter {
+
+    private static final String PIECE_LETTERS = " PNBRQK";
+    private static final int LINE_LENGTH = 80;
+    private static final int BUFFER_BYTES = 1 << 13;
+
+    private final Position position = new Position();
+    private final int[] moves = new int[Position.MAX_MOVES];
+    private final StringBuilder text = new StringBuilder(1024);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+    public PgnWriter() {
+    }
+
+    /**
+     * Appends a legal move in SAN, e.g. {@code Nbd7}, {@code exd6}, {@code O-O}, {@code e8=Q#}
+     *
+     * @param position the position before the move; it is left unchanged
+     */
+    public StringBuilder appendSan(StringBuilder out, Position position, int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int type = Position.type(position.piece(from));
+        if (type == Position.KING && Math.abs(to - from) == 2) {
+            out.append(to > from ? "O-O" : "O-O-O");
+        } else if (type == Position.PAWN) {
+            if ((from & 7) != (to & 7)) {
+                out.append((char) ('a' + (from & 7))).append('x');
+            }
+            Move.appendSquare(out, to);
+            if (Move.promotion(move) != 0) {
+                out.append('=').append(PIECE_LETTERS.charAt(Move.promotion(move)));
+            }
+        } else {
+            out.append(PIECE_LETTERS.charAt(type));
+            appendDisambiguation(out, position, move, type);
+            if (position.piece(to) != Position.EMPTY) {
+                out.append('x');
+            }
+            Move.appendSquare(out, to);
+        }
+
+        position.make(move);
+        if (position.inCheck()) {
+            out.append(position.hasLegalMove() ? '+' : '#');
+        }
+        position.unmake();
+        return out;
+    }
+
+    /**
+     * @return a legal move of a game in SAN, for the team on turn
+     */
+    public String san(ChessGame game, ChessMove move) {
+        position.load(game);
+        return appendSan(new StringBuilder(8), position, Move.of(move)).toString();
+    }
+
+    private void appendDisambiguation(StringBuilder out, Position position, int move, int type) {
+        int from = Move.from(move);
+        int count = position.legalMoves(moves, 0);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < count; i++) {
+            int other = Move.from(moves[i]);
+            if (other != from && Move.to(moves[i]) == Move.to(move)
+                    && Position.type(position.piece(other)) == type) {
+                ambiguous = true;
+                sameFile |= (other & 7) == (from & 7);
+                sameRank |= other >> 3 == from >> 3;
+            }
+        }
+        if (ambiguous && (!sameFile || sameRank)) {
+            out.append((char) ('a' + (from & 7)));
+        }
+        if (sameFile) {
+            out.append((char) ('1' + (from >> 3)));
+        }
+    }
+
+    /**
+     * Appends a game as PGN: its tags, the move text wrapped to 80 columns, and a blank line
+     *
+     * @throws IllegalArgumentException if a move is not legal where it is played; the
+     * builder may then hold part of the game
+     */
+    public StringBuilder appendGame(StringBuilder out, PgnGame game) {
+        for (Map.Entry<String, String> tag : game.tags().entrySet()) {
+            if (!tag.getKey().equals("Result")) {
+                appendTag(out, tag.getKey(), tag.getValue());
+            }
+        }
+        appendTag(out, "Result", game.result());
+        out.append('\n');
+
+        Fen.load(position, game.startFen());
+        int lineStart = out.length();
+        int moveNumber = Fen.moveNumber(game.startFen());
+        for (int ply = 0; ply < game.moveCount(); ply++) {
+            int tokenStart = out.length();
+            if (out.length() > lineStart) {
+                out.append(' ');
+            }
+            if (position.sideToMove() == Position.WHITE) {
+                out.append(moveNumber).append(". ");
+            } else if (ply == 0) {
+                out.append(moveNumber).append("... ");
+            }
+            int move = game.move(ply);
+            if (!position.isLegal(move)) {
+                throw new IllegalArgumentException("Illegal move " + Move.toString(move) + " at ply " + ply);
+            }
+            appendSan(out, position, move);
+            if (out.length() - lineStart > LINE_LENGTH - 1 && tokenStart > lineStart) {
+                out.setCharAt(tokenStart, '\n');
+                lineStart = tokenStart + 1;
+            }
+            if (position.sideToMove() == Position.BLACK) {
+                moveNumber++;
+            }
+            position.make(move);
+            position.forgetMoves();
+        }
+        if (out.length() > lineStart) {
+            out.append(out.length() - lineStart + game.result().length() >= LINE_LENGTH ? '\n' : ' ');
+        }
+        return out.append(game.result()).append("\n\n");
+    }
+
+    private static void appendTag(StringBuilder out, String name, String value) {
+        out.append('[').append(name).append(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        out.append("\"]\n");
+    }
+
+    /**
+     * Writes one game to a channel as UTF-8, through this writer's reused buffers
+     *
+     * @throws IllegalArgumentException if a move is not legal where it is played, in
+     * which case nothing is written
+     */
+    public void write(PgnGame game, WritableByteChannel channel) throws IOException {
+        text.setLength(0);
+        appendGame(text, game);
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            drain(channel);
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        encoder.flush(bytes);
+        drain(channel);
+    }
+
+    private void drain(WritableByteChannel channel) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+}
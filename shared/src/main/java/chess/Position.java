@@ -0,0 +1,962 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A compact, mutable position for code that has to play through a lot of moves
+ * quickly, such as endgame table generation and bulk replay.
+ * <p>
+ * Squares are numbered 0-63 as {@code (row - 1) * 8 + (column - 1)}, pieces are
+ * small ints (a type OR'd with a color) and moves are packed ints (see {@link Move}),
+ * so generating, making and unmaking moves allocates nothing. {@link ChessGame}
+ * stays the reference implementation of the rules; this class follows the same rules.
+ */
+public final class Position {
+
+    public static final int EMPTY = 0;
+    public static final int PAWN = 1;
+    public static final int KNIGHT = 2;
+    public static final int BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+    public static final int KING = 6;
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 8;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    /**
+     * Upper bound on the number of moves in any position, for sizing move buffers
+     */
+    public static final int MAX_MOVES = 256;
+    private static final int MAX_PLY = 1024;
+
+    static final int[][] KNIGHT_TARGETS = new int[64][];
+    static final int[][] KING_TARGETS = new int[64][];
+    /**
+     * RAYS[square][direction] lists the squares walking outward from square.
+     * Directions 0-3 are the rook directions and 4-7 the bishop directions.
+     */
+    static final int[][][] RAYS = new int[64][8][];
+    private static final int[] CASTLING_MASK = new int[64];
+    /**
+     * Piece values for {@link #see}, by type; the king's is large so it captures last
+     */
+    private static final int[] SEE_VALUES = {0, 100, 320, 330, 500, 900, 20000};
+
+    static {
+        int[][] knight = {{2, 1}, {2, -1}, {-1, 2}, {1, 2}, {-2, 1}, {-2, -1}, {1, -2}, {-1, -2}};
+        int[][] king = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}, {0, 1}, {1, 0}, {-1, 0}, {0, -1}};
+        int[][] rays = {{0, 1}, {1, 0}, {-1, 0}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT_TARGETS[sq] = targets(sq, knight);
+            KING_TARGETS[sq] = targets(sq, king);
+            for (int d = 0; d < 8; d++) {
+                int[] ray = new int[8];
+                int n = 0;
+                int r = (sq >> 3) + rays[d][0];
+                int c = (sq & 7) + rays[d][1];
+                while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                    ray[n++] = r * 8 + c;
+                    r += rays[d][0];
+                    c += rays[d][1];
+                }
+                RAYS[sq][d] = Arrays.copyOf(ray, n);
+            }
+            CASTLING_MASK[sq] = 15;
+        }
+        CASTLING_MASK[0] = 15 & ~WHITE_QUEENSIDE;
+        CASTLING_MASK[4] = 15 & ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[7] = 15 & ~WHITE_KINGSIDE;
+        CASTLING_MASK[56] = 15 & ~BLACK_QUEENSIDE;
+        CASTLING_MASK[60] = 15 & ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[63] = 15 & ~BLACK_KINGSIDE;
+    }
+
+    private static int[] targets(int sq, int[][] offsets) {
+        int[] result = new int[8];
+        int n = 0;
+        for (int[] offset : offsets) {
+            int r = (sq >> 3) + offset[0];
+            int c = (sq & 7) + offset[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                result[n++] = r * 8 + c;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private final int[] squares = new int[64];
+    private final int[] kings = {-1, -1};
+    private int sideToMove = WHITE;
+    private int castling;
+    private int epSquare = -1;
+    private int halfmoveClock;
+    private long key;
+    private long flippedKey = Zobrist.BLACK_TO_MOVE;
+    private long pawnKey;
+    private Accumulator accumulator;
+
+    private int ply;
+    private final int[] undoMove = new int[MAX_PLY];
+    private final int[] undoState = new int[MAX_PLY];
+    private final long[] undoKey = new long[MAX_PLY];
+    private final long[] undoFlippedKey = new long[MAX_PLY];
+    private final long[] undoPawnKey = new long[MAX_PLY];
+    /**
+     * Keys of the positions before the first one on the undo stack, most recent first,
+     * which count for repetitions but cannot be unmade
+     */
+    private long[] earlierKeys = NO_KEYS;
+    private final int[] scratch = new int[MAX_MOVES];
+    private final int[] seeBoard = new int[64];
+    private final int[] seeGain = new int[33];
+
+    private static final long[] NO_KEYS = new long[0];
+
+    public Position() {
+    }
+
+    /**
+     * Creates a position matching the current state of a game
+     */
+    public static Position of(ChessGame game) {
+        Position position = new Position();
+        position.load(game);
+        return position;
+    }
+
+    /**
+     * @return an independent copy, including the moves that can still be unmade
+     */
+    public Position copy() {
+        Position copy = new Position();
+        System.arraycopy(squares, 0, copy.squares, 0, 64);
+        copy.kings[0] = kings[0];
+        copy.kings[1] = kings[1];
+        copy.sideToMove = sideToMove;
+        copy.castling = castling;
+        copy.epSquare = epSquare;
+        copy.halfmoveClock = halfmoveClock;
+        copy.key = key;
+        copy.flippedKey = flippedKey;
+        copy.pawnKey = pawnKey;
+        copy.ply = ply;
+        copy.earlierKeys = earlierKeys;
+        System.arraycopy(undoMove, 0, copy.undoMove, 0, ply);
+        System.arraycopy(undoState, 0, copy.undoState, 0, ply);
+        System.arraycopy(undoKey, 0, copy.undoKey, 0, ply);
+        System.arraycopy(undoFlippedKey, 0, copy.undoFlippedKey, 0, ply);
+        System.arraycopy(undoPawnKey, 0, copy.undoPawnKey, 0, ply);
+        return copy;
+    }
+
+    /**
+     * Replaces this position with the current state of a game, remembering the game's
+     * positions since the last capture or pawn move so repeating them is recognized
+     */
+    public void load(ChessGame game) {
+        clear();
+        ChessBoard board = game.getBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = board.getPiece(Move.position(sq));
+            if (piece != null) {
+                put(sq, piece(piece));
+            }
+        }
+        setSideToMove(game.getTeamTurn() == ChessGame.TeamColor.WHITE ? WHITE : BLACK);
+        setCastling(game.getCastlingRights());
+        ChessPosition target = game.getEnPassantTarget();
+        if (target != null && canCaptureEnPassant(Move.square(target))) {
+            setEpSquare(Move.square(target));
+        }
+        halfmoveClock = game.getHalfmoveClock();
+        earlierKeys = game.earlierKeys();
+    }
+
+    /**
+     * En passant only counts as part of the position when a pawn is there to take it,
+     * so the same placement reached with and without a double pawn move hashes the same.
+     */
+    boolean canCaptureEnPassant(int target) {
+        int pawn = PAWN | sideToMove;
+        int pawnSquare = sideToMove == WHITE ? target - 8 : target + 8;
+        int col = pawnSquare & 7;
+        return (col > 0 && squares[pawnSquare - 1] == pawn) || (col < 7 && squares[pawnSquare + 1] == pawn);
+    }
+
+    /**
+     * @return a new {@link ChessBoard} holding the same pieces as this position
+     */
+    public ChessBoard toBoard() {
+        ChessBoard board = new ChessBoard();
+        for (int sq = 0; sq < 64; sq++) {
+            if (squares[sq] != EMPTY) {
+                board.addPiece(Move.position(sq), toChessPiece(squares[sq]));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Removes every piece and resets the side to move, castling rights and clocks
+     */
+    public void clear() {
+        Arrays.fill(squares, EMPTY);
+        kings[0] = -1;
+        kings[1] = -1;
+        sideToMove = WHITE;
+        castling = 0;
+        epSquare = -1;
+        halfmoveClock = 0;
+        key = 0;
+        flippedKey = Zobrist.BLACK_TO_MOVE;
+        pawnKey = 0;
+        ply = 0;
+        earlierKeys = NO_KEYS;
+        if (accumulator != null) {
+            accumulator.reset();
+        }
+    }
+
+    public void put(int square, int piece) {
+        key ^= Zobrist.PIECES[squares[square]][square] ^ Zobrist.PIECES[piece][square];
+        flippedKey ^= Zobrist.FLIPPED_PIECES[squares[square]][square] ^ Zobrist.FLIPPED_PIECES[piece][square];
+        pawnKey ^= Zobrist.PAWNS[squares[square]][square] ^ Zobrist.PAWNS[piece][square];
+        if (accumulator != null) {
+            if (squares[square] != EMPTY) {
+                accumulator.remove(squares[square], square);
+            }
+            if (piece != EMPTY) {
+                accumulator.add(piece, square);
+            }
+        }
+        squares[square] = piece;
+        if (type(piece) == KING) {
+            kings[color(piece) >> 3] = square;
+        }
+    }
+
+    public void remove(int square) {
+        key ^= Zobrist.PIECES[squares[square]][square];
+        flippedKey ^= Zobrist.FLIPPED_PIECES[squares[square]][square];
+        pawnKey ^= Zobrist.PAWNS[squares[square]][square];
+        if (accumulator != null && squares[square] != EMPTY) {
+            accumulator.remove(squares[square], square);
+        }
+        if (type(squares[square]) == KING && kings[color(squares[square]) >> 3] == square) {
+            kings[color(squares[square]) >> 3] = -1;
+        }
+        squares[square] = EMPTY;
+    }
+
+    public int piece(int square) {
+        return squares[square];
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int color) {
+        if (color != sideToMove) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+            flippedKey ^= Zobrist.BLACK_TO_MOVE;
+        }
+        sideToMove = color;
+    }
+
+    public int castling() {
+        return castling;
+    }
+
+    public void setCastling(int castling) {
+        key ^= Zobrist.CASTLING[this.castling] ^ Zobrist.CASTLING[castling];
+        flippedKey ^= Zobrist.FLIPPED_CASTLING[this.castling] ^ Zobrist.FLIPPED_CASTLING[castling];
+        this.castling = castling;
+    }
+
+    /**
+     * @return the square a pawn just skipped over with a double move, or -1
+     */
+    public int epSquare() {
+        return epSquare;
+    }
+
+    public void setEpSquare(int square) {
+        key ^= epKey(epSquare) ^ epKey(square);
+        flippedKey ^= epKey(epSquare) ^ epKey(square);
+        epSquare = square;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * @return the Zobrist key of the whole position, matching {@link ChessGame#getZobristKey()}
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * @return the key of the color-flipped position, matching {@link ChessGame#getFlippedZobristKey()}
+     */
+    public long flippedKey() {
+        return flippedKey;
+    }
+
+    /**
+     * @return the key of the pawns alone, matching {@link ChessBoard#getPawnZobristKey()}
+     */
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * @return the key shared with the color-flipped position, matching {@link ChessGame#getCanonicalKey()}
+     */
+    public long canonicalKey() {
+        return Math.min(key, flippedKey);
+    }
+
+    /**
+     * @return whether the canonical key is the flipped position's, so results cached
+     * under it have to be flipped back (squares mirrored with {@code ^ 56}, colors swapped)
+     */
+    public boolean isCanonicalFlipped() {
+        return flippedKey < key;
+    }
+
+    /**
+     * Replaces this position with its color-flipped twin: the board mirrored top to
+     * bottom with the colors swapped, the other side to move, and castling rights and
+     * the en passant square carried over. Moves made so far are forgotten.
+     */
+    public void flip() {
+        int[] flipped = new int[64];
+        for (int sq = 0; sq < 64; sq++) {
+            flipped[sq ^ 56] = squares[sq] == EMPTY ? EMPTY : squares[sq] ^ BLACK;
+        }
+        int side = sideToMove ^ BLACK;
+        int flippedCastling = Zobrist.flipCastling(castling);
+        int flippedEp = epSquare < 0 ? -1 : epSquare ^ 56;
+        int clock = halfmoveClock;
+        clear();
+        for (int sq = 0; sq < 64; sq++) {
+            if (flipped[sq] != EMPTY) {
+                put(sq, flipped[sq]);
+            }
+        }
+        setSideToMove(side);
+        setCastling(flippedCastling);
+        setEpSquare(flippedEp);
+        halfmoveClock = clock;
+    }
+
+    private static long epKey(int square) {
+        return square < 0 ? 0 : Zobrist.EN_PASSANT[square & 7];
+    }
+
+    /**
+     * Checks whether the current position already occurred since the last capture or
+     * pawn move, looking only at earlier positions with the same side to move. Moves
+     * made on this object are seen, and so are the game's earlier positions when it was
+     * loaded from a {@link ChessGame}.
+     */
+    public boolean isRepetition() {
+        for (int back = 2; back <= halfmoveClock; back += 2) {
+            int i = ply - back;
+            long earlier;
+            if (i >= 0) {
+                earlier = undoKey[i];
+            } else if (-i <= earlierKeys.length) {
+                earlier = earlierKeys[-i - 1];
+            } else {
+                return false;
+            }
+            if (earlier == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Attaches a network accumulator that follows every change from now on, refreshed
+     * from the current pieces; null detaches it. Copies do not share it.
+     */
+    public void setAccumulator(Accumulator accumulator) {
+        this.accumulator = accumulator;
+        if (accumulator != null) {
+            accumulator.refresh(this);
+        }
+    }
+
+    public int kingSquare(int color) {
+        return kings[color >> 3];
+    }
+
+    /**
+     * @return how many moves have been made and not yet unmade
+     */
+    public int ply() {
+        return ply;
+    }
+
+    public boolean inCheck() {
+        return kingAttacked(sideToMove);
+    }
+
+    /**
+     * @return whether a color's king is attacked; a side without a king, as on some test
+     * boards, is never in check
+     */
+    private boolean kingAttacked(int color) {
+        int king = kings[color >> 3];
+        return king >= 0 && isAttacked(king, color ^ BLACK);
+    }
+
+    /**
+     * Makes a move without checking that it is legal. Castling and en passant are
+     * recognised from the pieces involved, as in {@link ChessGame}.
+     */
+    public void make(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int promotion = Move.promotion(move);
+        int piece = squares[from];
+        int type = type(piece);
+        int captured = squares[to];
+        int captureSquare = to;
+        if (type == PAWN && to == epSquare) {
+            captureSquare = sideToMove == WHITE ? to - 8 : to + 8;
+            captured = squares[captureSquare];
+        }
+
+        undoMove[ply] = move;
+        undoKey[ply] = key;
+        undoFlippedKey[ply] = flippedKey;
+        undoPawnKey[ply] = pawnKey;
+        undoState[ply] = captured | castling << 4 | (epSquare + 1) << 8 | Math.min(halfmoveClock, 0x7FFF) << 16;
+        ply++;
+
+        int moved = promotion != 0 ? promotion | sideToMove : piece;
+        key ^= Zobrist.PIECES[captured][captureSquare] ^ Zobrist.PIECES[piece][from] ^ Zobrist.PIECES[moved][to];
+        flippedKey ^= Zobrist.FLIPPED_PIECES[captured][captureSquare] ^ Zobrist.FLIPPED_PIECES[piece][from]
+                ^ Zobrist.FLIPPED_PIECES[moved][to];
+        if (type == PAWN || type(captured) == PAWN) {
+            pawnKey ^= Zobrist.PAWNS[captured][captureSquare] ^ Zobrist.PAWNS[piece][from] ^ Zobrist.PAWNS[moved][to];
+        }
+        if (accumulator != null) {
+            accumulator.push();
+            if (captured != EMPTY) {
+                accumulator.remove(captured, captureSquare);
+            }
+            accumulator.remove(piece, from);
+            accumulator.add(moved, to);
+        }
+        squares[captureSquare] = EMPTY;
+        squares[from] = EMPTY;
+        squares[to] = moved;
+        if (type == KING) {
+            kings[sideToMove >> 3] = to;
+            if (to - from == 2) {
+                moveRook(to + 1, to - 1);
+            } else if (from - to == 2) {
+                moveRook(to - 2, to + 1);
+            }
+        }
+        key ^= Zobrist.CASTLING[castling] ^ epKey(epSquare);
+        flippedKey ^= Zobrist.FLIPPED_CASTLING[castling] ^ epKey(epSquare);
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+
+        epSquare = -1;
+        if (type == PAWN && (to - from == 16 || from - to == 16)) {
+            int enemyPawn = PAWN | (sideToMove ^ BLACK);
+            int col = to & 7;
+            if ((col > 0 && squares[to - 1] == enemyPawn) || (col < 7 && squares[to + 1] == enemyPawn)) {
+                epSquare = (from + to) >> 1;
+            }
+        }
+        halfmoveClock = type == PAWN || captured != EMPTY ? 0 : halfmoveClock + 1;
+        sideToMove ^= BLACK;
+        key ^= Zobrist.CASTLING[castling] ^ epKey(epSquare) ^ Zobrist.BLACK_TO_MOVE;
+        flippedKey ^= Zobrist.FLIPPED_CASTLING[castling] ^ epKey(epSquare) ^ Zobrist.BLACK_TO_MOVE;
+    }
+
+    private void moveRook(int from, int to) {
+        int rook = squares[from];
+        key ^= Zobrist.PIECES[rook][from] ^ Zobrist.PIECES[rook][to];
+        flippedKey ^= Zobrist.FLIPPED_PIECES[rook][from] ^ Zobrist.FLIPPED_PIECES[rook][to];
+        if (accumulator != null) {
+            accumulator.remove(rook, from);
+            accumulator.add(rook, to);
+        }
+        squares[to] = rook;
+        squares[from] = EMPTY;
+    }
+
+    /**
+     * Takes back the last move made with {@link #make}
+     */
+    public void unmake() {
+        ply--;
+        int move = undoMove[ply];
+        int state = undoState[ply];
+        sideToMove ^= BLACK;
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int piece = Move.promotion(move) != 0 ? PAWN | sideToMove : squares[to];
+        int captured = state & 15;
+        castling = state >> 4 & 15;
+        epSquare = (state >> 8 & 127) - 1;
+        halfmoveClock = state >>> 16;
+        key = undoKey[ply];
+        flippedKey = undoFlippedKey[ply];
+        pawnKey = undoPawnKey[ply];
+        if (accumulator != null) {
+            accumulator.pop();
+        }
+
+        squares[from] = piece;
+        if (type(piece) == PAWN && to == epSquare) {
+            squares[to] = EMPTY;
+            squares[sideToMove == WHITE ? to - 8 : to + 8] = captured;
+        } else {
+            squares[to] = captured;
+        }
+        if (type(piece) == KING) {
+            kings[sideToMove >> 3] = from;
+            if (to - from == 2) {
+                squares[to + 1] = squares[to - 1];
+                squares[to - 1] = EMPTY;
+            } else if (from - to == 2) {
+                squares[to - 2] = squares[to + 1];
+                squares[to + 1] = EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Appends every legal move for the side to move
+     *
+     * @param moves buffer to write into
+     * @param start index of the first free slot in the buffer
+     * @return the index after the last move written
+     */
+    public int legalMoves(int[] moves, int start) {
+        int end = pseudoLegalMoves(moves, start);
+        int us = sideToMove;
+        int count = start;
+        for (int i = start; i < end; i++) {
+            make(moves[i]);
+            if (!kingAttacked(us)) {
+                moves[count++] = moves[i];
+            }
+            unmake();
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the move is legal for the side to move
+     */
+    public boolean isLegal(int move) {
+        if (!tryMake(move)) {
+            return false;
+        }
+        unmake();
+        return true;
+    }
+
+    /**
+     * Makes the move if it is legal for the side to move
+     *
+     * @return true if the move was made, false if it was illegal and nothing changed
+     */
+    public boolean tryMake(int move) {
+        int end = pseudoLegalMoves(scratch, 0);
+        for (int i = 0; i < end; i++) {
+            if (scratch[i] == move) {
+                int us = sideToMove;
+                make(move);
+                if (!kingAttacked(us)) {
+                    return true;
+                }
+                unmake();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks a move from {@link #pseudoLegalMoves} for the one thing that generation
+     * skips: whether it leaves the mover's own king in check
+     *
+     * @return true if the pseudo-legal move is legal
+     */
+    public boolean keepsKingSafe(int move) {
+        int us = sideToMove;
+        make(move);
+        boolean safe = !kingAttacked(us);
+        unmake();
+        return safe;
+    }
+
+    /**
+     * Forgets the moves made so far, so they can no longer be unmade or repeated, along
+     * with any earlier positions of the game it was loaded from. Long replays call this
+     * to keep reusing the undo stack.
+     */
+    public void forgetMoves() {
+        ply = 0;
+        earlierKeys = NO_KEYS;
+        if (accumulator != null) {
+            accumulator.collapse();
+        }
+    }
+
+    /**
+     * @return true if the side to move has at least one legal move
+     */
+    public boolean hasLegalMove() {
+        int end = pseudoLegalMoves(scratch, 0);
+        int us = sideToMove;
+        for (int i = 0; i < end; i++) {
+            make(scratch[i]);
+            boolean legal = !kingAttacked(us);
+            unmake();
+            if (legal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends every move for the side to move, including ones that leave the own
+     * king in check. Castling is only generated when it is fully legal.
+     */
+    public int pseudoLegalMoves(int[] moves, int start) {
+        int count = start;
+        int us = sideToMove;
+        for (int from = 0; from < 64; from++) {
+            int piece = squares[from];
+            if (piece == EMPTY || color(piece) != us) {
+                continue;
+            }
+            switch (type(piece)) {
+                case PAWN -> count = pawnMoves(from, moves, count);
+                case KNIGHT -> count = stepMoves(from, KNIGHT_TARGETS[from], moves, count);
+                case BISHOP -> count = slideMoves(from, 4, 8, moves, count);
+                case ROOK -> count = slideMoves(from, 0, 4, moves, count);
+                case QUEEN -> count = slideMoves(from, 0, 8, moves, count);
+                case KING -> {
+                    count = stepMoves(from, KING_TARGETS[from], moves, count);
+                    count = castlingMoves(from, moves, count);
+                }
+                default -> {
+                }
+            }
+        }
+        return count;
+    }
+
+    private int pawnMoves(int from, int[] moves, int count) {
+        int us = sideToMove;
+        int forward = us == WHITE ? 8 : -8;
+        int startRow = us == WHITE ? 1 : 6;
+        int one = from + forward;
+        if (one < 0 || one > 63) {
+            return count;
+        }
+        if (squares[one] == EMPTY) {
+            count = pawnMove(from, one, moves, count);
+            int two = one + forward;
+            if (from >> 3 == startRow && squares[two] == EMPTY) {
+                moves[count++] = Move.of(from, two);
+            }
+        }
+        int col = from & 7;
+        if (col > 0) {
+            count = pawnCapture(from, one - 1, moves, count);
+        }
+        if (col < 7) {
+            count = pawnCapture(from, one + 1, moves, count);
+        }
+        return count;
+    }
+
+    private int pawnCapture(int from, int to, int[] moves, int count) {
+        int target = squares[to];
+        if ((target != EMPTY && color(target) != sideToMove) || to == epSquare) {
+            count = pawnMove(from, to, moves, count);
+        }
+        return count;
+    }
+
+    private static int pawnMove(int from, int to, int[] moves, int count) {
+        if (to >= 56 || to < 8) {
+            moves[count++] = Move.of(from, to, QUEEN);
+            moves[count++] = Move.of(from, to, ROOK);
+            moves[count++] = Move.of(from, to, BISHOP);
+            moves[count++] = Move.of(from, to, KNIGHT);
+        } else {
+            moves[count++] = Move.of(from, to);
+        }
+        return count;
+    }
+
+    private int stepMoves(int from, int[] targets, int[] moves, int count) {
+        for (int to : targets) {
+            int target = squares[to];
+            if (target == EMPTY || color(target) != sideToMove) {
+                moves[count++] = Move.of(from, to);
+            }
+        }
+        return count;
+    }
+
+    private int slideMoves(int from, int firstDirection, int lastDirection, int[] moves, int count) {
+        int[][] rays = RAYS[from];
+        for (int d = firstDirection; d < lastDirection; d++) {
+            for (int to : rays[d]) {
+                int target = squares[to];
+                if (target == EMPTY) {
+                    moves[count++] = Move.of(from, to);
+                } else {
+                    if (color(target) != sideToMove) {
+                        moves[count++] = Move.of(from, to);
+                    }
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private int castlingMoves(int from, int[] moves, int count) {
+        int us = sideToMove;
+        int home = us == WHITE ? 4 : 60;
+        int kingside = us == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = us == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        if (from != home || (castling & (kingside | queenside)) == 0) {
+            return count;
+        }
+        int them = us ^ BLACK;
+        int rook = ROOK | us;
+        if (isAttacked(home, them)) {
+            return count;
+        }
+        if ((castling & kingside) != 0 && squares[home + 3] == rook
+                && squares[home + 1] == EMPTY && squares[home + 2] == EMPTY
+                && !isAttacked(home + 1, them) && !isAttacked(home + 2, them)) {
+            moves[count++] = Move.of(home, home + 2);
+        }
+        if ((castling & queenside) != 0 && squares[home - 4] == rook
+                && squares[home - 1] == EMPTY && squares[home - 2] == EMPTY && squares[home - 3] == EMPTY
+                && !isAttacked(home - 1, them) && !isAttacked(home - 2, them)) {
+            moves[count++] = Move.of(home, home - 2);
+        }
+        return count;
+    }
+
+    /**
+     * @return true if a piece of the given color attacks the square
+     */
+    public boolean isAttacked(int square, int byColor) {
+        int col = square & 7;
+        if (byColor == WHITE) {
+            if (square >= 8 && ((col > 0 && squares[square - 9] == PAWN)
+                    || (col < 7 && squares[square - 7] == PAWN))) {
+                return true;
+            }
+        } else if (square < 56 && ((col > 0 && squares[square + 7] == (PAWN | BLACK))
+                || (col < 7 && squares[square + 9] == (PAWN | BLACK)))) {
+            return true;
+        }
+        int knight = KNIGHT | byColor;
+        for (int from : KNIGHT_TARGETS[square]) {
+            if (squares[from] == knight) {
+                return true;
+            }
+        }
+        int king = KING | byColor;
+        for (int from : KING_TARGETS[square]) {
+            if (squares[from] == king) {
+                return true;
+            }
+        }
+        int queen = QUEEN | byColor;
+        int[][] rays = RAYS[square];
+        for (int d = 0; d < 8; d++) {
+            int slider = (d < 4 ? ROOK : BISHOP) | byColor;
+            for (int from : rays[d]) {
+                int piece = squares[from];
+                if (piece != EMPTY) {
+                    if (piece == slider || piece == queen) {
+                        return true;
+                    }
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Static exchange evaluation: plays out the captures on a move's target square, each
+     * side taking with its least valuable piece and free to stop whenever carrying on
+     * would lose more, without looking at anything else on the board
+     *
+     * @return the material the mover should expect to win, in centipawns, negative if it loses
+     */
+    public int see(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int[] board = seeBoard;
+        System.arraycopy(squares, 0, board, 0, 64);
+        int[] gain = seeGain;
+        int mover = board[from];
+        int captured = board[to];
+        if (type(mover) == PAWN && to == epSquare) {
+            captured = PAWN | (sideToMove ^ BLACK);
+            board[sideToMove == WHITE ? to - 8 : to + 8] = EMPTY;
+        }
+        gain[0] = SEE_VALUES[type(captured)];
+        int onSquare = Move.promotion(move) != 0 ? Move.promotion(move) : type(mover);
+        if (Move.promotion(move) != 0) {
+            gain[0] += SEE_VALUES[onSquare] - SEE_VALUES[PAWN];
+        }
+        board[from] = EMPTY;
+        int side = sideToMove ^ BLACK;
+        int depth = 0;
+        while (true) {
+            int attacker = leastValuableAttacker(board, to, side);
+            if (attacker < 0) {
+                break;
+            }
+            depth++;
+            gain[depth] = SEE_VALUES[onSquare] - gain[depth - 1];
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                break;
+            }
+            onSquare = type(board[attacker]);
+            board[attacker] = EMPTY;
+            side ^= BLACK;
+        }
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+
+    /**
+     * @return the square of the cheapest piece of a color attacking a square on a board, or -1
+     */
+    private static int leastValuableAttacker(int[] board, int square, int color) {
+        int col = square & 7;
+        int pawn = PAWN | color;
+        if (color == WHITE && square >= 8) {
+            if (col > 0 && board[square - 9] == pawn) {
+                return square - 9;
+            }
+            if (col < 7 && board[square - 7] == pawn) {
+                return square - 7;
+            }
+        } else if (color == BLACK && square < 56) {
+            if (col > 0 && board[square + 7] == pawn) {
+                return square + 7;
+            }
+            if (col < 7 && board[square + 9] == pawn) {
+                return square + 9;
+            }
+        }
+        int knight = KNIGHT | color;
+        for (int from : KNIGHT_TARGETS[square]) {
+            if (board[from] == knight) {
+                return from;
+            }
+        }
+        int best = -1;
+        int bestType = KING + 1;
+        int[][] rays = RAYS[square];
+        for (int d = 0; d < 8; d++) {
+            for (int from : rays[d]) {
+                int piece = board[from];
+                if (piece != EMPTY) {
+                    int type = type(piece);
+                    boolean slides = type == QUEEN || type == (d < 4 ? ROOK : BISHOP);
+                    if (color(piece) == color && slides && type < bestType) {
+                        best = from;
+                        bestType = type;
+                    }
+                    break;
+                }
+            }
+        }
+        if (best >= 0) {
+            return best;
+        }
+        int king = KING | color;
+        for (int from : KING_TARGETS[square]) {
+            if (board[from] == king) {
+                return from;
+            }
+        }
+        return -1;
+    }
+
+    public static int type(int piece) {
+        return piece & 7;
+    }
+
+    public static int color(int piece) {
+        return piece & BLACK;
+    }
+
+    public static int type(ChessPiece.PieceType type) {
+        return switch (type) {
+            case PAWN -> PAWN;
+            case KNIGHT -> KNIGHT;
+            case BISHOP -> BISHOP;
+            case ROOK -> ROOK;
+            case QUEEN -> QUEEN;
+            case KING -> KING;
+        };
+    }
+
+    public static ChessPiece.PieceType pieceType(int type) {
+        return switch (type) {
+            case PAWN -> ChessPiece.PieceType.PAWN;
+            case KNIGHT -> ChessPiece.PieceType.KNIGHT;
+            case BISHOP -> ChessPiece.PieceType.BISHOP;
+            case ROOK -> ChessPiece.PieceType.ROOK;
+            case QUEEN -> ChessPiece.PieceType.QUEEN;
+            case KING -> ChessPiece.PieceType.KING;
+            default -> throw new IllegalArgumentException("Not a piece type: " + type);
+        };
+    }
+
+    public static int piece(ChessPiece piece) {
+        return type(piece.getPieceType()) | (piece.getTeamColor() == ChessGame.TeamColor.WHITE ? WHITE : BLACK);
+    }
+
+    public static ChessPiece toChessPiece(int piece) {
+        ChessGame.TeamColor color = color(piece) == WHITE ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+        return new ChessPiece(color, pieceType(type(piece)));
+    }
+}
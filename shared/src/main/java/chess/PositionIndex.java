@@ -0,0 +1,381 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An on-disk index from position to the games that reached it, for "find games with
+ * this position" searches over the whole archive.
+ * <p>
+ * Each posting is a {@link ChessGame#getZobristKey() position key} with a game id and
+ * ply. New postings collect in memory and are written, sorted by key, as an immutable
+ * run file; runs are memory-mapped and binary searched, so a lookup touches a few pages
+ * per run. Adding games only ever creates new files. Once there are more than
+ * {@value #MAX_RUNS} runs the smallest are merged into one, which keeps lookups to a
+ * handful of searches however many games are imported.
+ * <p>
+ * A run file is a 16 byte header (magic, count) followed by every key, then every
+ * posting in the same order, so searches only read the key section.
+ */
+public final class PositionIndex implements Closeable {
+
+    private static final int MAGIC = 0x43504931;
+    private static final int HEADER_BYTES = 16;
+    private static final int DEFAULT_BUFFER_POSTINGS = 1 << 20;
+    private static final int MAX_RUNS = 8;
+    /**
+     * Each section of a run is mapped as one buffer, which is limited to 2GB
+     */
+    private static final long MAX_RUN_POSTINGS = Integer.MAX_VALUE / Long.BYTES;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    private final Path directory;
+    private final long[] keys;
+    private final long[] postings;
+    private final long[] sortKeys;
+    private final long[] sortPostings;
+    private int buffered;
+    private final Position replay = new Position();
+    private volatile List<Run> runs;
+    private int nextRun;
+
+    private PositionIndex(Path directory, int bufferPostings, List<Run> runs, int nextRun) {
+        this.directory = directory;
+        this.keys = new long[bufferPostings];
+        this.postings = new long[bufferPostings];
+        this.sortKeys = new long[bufferPostings];
+        this.sortPostings = new long[bufferPostings];
+        this.runs = runs;
+        this.nextRun = nextRun;
+    }
+
+    /**
+     * Opens the index in a directory, creating it if needed
+     */
+    public static PositionIndex open(Path directory) throws IOException {
+        return open(directory, DEFAULT_BUFFER_POSTINGS);
+    }
+
+    /**
+     * @param bufferPostings the postings held in memory before they are written out as a run
+     */
+    public static PositionIndex open(Path directory, int bufferPostings) throws IOException {
+        if (bufferPostings < 1) {
+            throw new IllegalArgumentException("Buffer must hold at least one posting");
+        }
+        Files.createDirectories(directory);
+        List<Run> runs = new ArrayList<>();
+        int nextRun = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "run-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Left by a write that never finished
+                    Files.delete(file);
+                    continue;
+                }
+                int number = Integer.parseInt(name.substring(4, name.indexOf('.')));
+                nextRun = Math.max(nextRun, number + 1);
+                runs.add(Run.open(file));
+            }
+        }
+        return new PositionIndex(directory, bufferPostings, List.copyOf(runs), nextRun);
+    }
+
+    /**
+     * Adds one posting; it can be looked up once it has been flushed
+     */
+    public synchronized void add(long key, int gameId, int ply) throws IOException {
+        if (buffered == keys.length) {
+            flush();
+        }
+        keys[buffered] = key;
+        postings[buffered++] = (long) gameId << 32 | ply;
+    }
+
+    /**
+     * Adds the position a game is in now
+     */
+    public void add(int gameId, int ply, ChessGame game) throws IOException {
+        add(game.getZobristKey(), gameId, ply);
+    }
+
+    /**
+     * Replays an imported game and adds every position in it, from the start position
+     * at ply 0 to the final position
+     */
+    public synchronized void addGame(int gameId, PgnGame game) throws IOException {
+        Fen.load(replay, game.startFen());
+        add(replay.key(), gameId, 0);
+        for (int ply = 0; ply < game.moveCount(); ply++) {
+            replay.make(game.move(ply));
+            replay.forgetMoves();
+            add(replay.key(), gameId, ply + 1);
+        }
+    }
+
+    /**
+     * Writes the buffered postings as a new run, merging runs if there are too many
+     */
+    public synchronized void flush() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        RadixSort.sort(keys, postings, buffered, sortKeys, sortPostings);
+        Path file = runFile(nextRun++);
+        try (RunWriter writer = new RunWriter(file, buffered)) {
+            for (int i = 0; i < buffered; i++) {
+                writer.put(keys[i], postings[i]);
+            }
+        }
+        buffered = 0;
+        List<Run> updated = new ArrayList<>(runs);
+        updated.add(Run.open(file));
+        runs = List.copyOf(updated);
+        if (runs.size() > MAX_RUNS) {
+            merge(false);
+        }
+    }
+
+    /**
+     * Flushes and merges every run into as few files as possible
+     */
+    public synchronized void compact() throws IOException {
+        flush();
+        while (runs.size() > 1 && merge(true)) {
+            // keep merging while runs still fit together
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * @return every game and ply at which the position occurred, ordered by game and ply
+     */
+    public List<Posting> lookup(long key) {
+        long[] found = new long[16];
+        int count = 0;
+        for (Run run : runs) {
+            for (long i = run.firstIndexOf(key); i < run.count && run.key(i) == key; i++) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = run.posting(i);
+            }
+        }
+        Arrays.sort(found, 0, count);
+        List<Posting> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // A merge interrupted before it removed its inputs leaves duplicates behind
+            if (i == 0 || found[i] != found[i - 1]) {
+                result.add(new Posting((int) (found[i] >>> 32), (int) found[i]));
+            }
+        }
+        return result;
+    }
+
+    public List<Posting> lookup(ChessGame game) {
+        return lookup(game.getZobristKey());
+    }
+
+    public int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * @return the postings written to disk, not counting ones still buffered
+     */
+    public long size() {
+        long size = 0;
+        for (Run run : runs) {
+            size += run.count;
+        }
+        return size;
+    }
+
+    /**
+     * Merges the smallest runs that fit together into one
+     *
+     * @param all whether to merge every run that fits, rather than just enough to get under the limit
+     * @return false if no two runs fit together
+     */
+    private boolean merge(boolean all) throws IOException {
+        List<Run> bySize = new ArrayList<>(runs);
+        bySize.sort(Comparator.comparingLong(run -> run.count));
+        List<Run> inputs = new ArrayList<>();
+        long total = 0;
+        for (Run run : bySize) {
+            if (total + run.count > MAX_RUN_POSTINGS || (!all && runs.size() - inputs.size() < MAX_RUNS / 2)) {
+                break;
+            }
+            inputs.add(run);
+            total += run.count;
+        }
+        if (inputs.size() < 2) {
+            return false;
+        }
+
+        Path file = runFile(nextRun++);
+        try (RunWriter writer = new RunWriter(file, total)) {
+            long[] next = new long[inputs.size()];
+            for (long written = 0; written < total; written++) {
+                int smallest = -1;
+                for (int r = 0; r < inputs.size(); r++) {
+                    if (next[r] < inputs.get(r).count && (smallest < 0 || Long.compareUnsigned(
+                            inputs.get(r).key(next[r]), inputs.get(smallest).key(next[smallest])) < 0)) {
+                        smallest = r;
+                    }
+                }
+                Run run = inputs.get(smallest);
+                writer.put(run.key(next[smallest]), run.posting(next[smallest]));
+                next[smallest]++;
+            }
+        }
+
+        List<Run> updated = new ArrayList<>(runs);
+        updated.removeAll(inputs);
+        updated.add(Run.open(file));
+        runs = List.copyOf(updated);
+        for (Run run : inputs) {
+            Files.deleteIfExists(run.file);
+        }
+        return true;
+    }
+
+    private Path runFile(int number) {
+        return directory.resolve(String.format("run-%08d.idx", number));
+    }
+
+    /**
+     * A game and the ply at which it reached a position; ply 0 is the start position
+     */
+    public record Posting(int gameId, int ply) {
+    }
+
+    private static final class Run {
+        final Path file;
+        final long count;
+        final ByteBuffer keys;
+        final ByteBuffer postings;
+
+        private Run(Path file, long count, ByteBuffer keys, ByteBuffer postings) {
+            this.file = file;
+            this.count = count;
+            this.keys = keys;
+            this.postings = postings;
+        }
+
+        static Run open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                channel.read(header, 0);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IOException("Not a position index run: " + file);
+                }
+                long count = header.getLong(8);
+                long bytes = count * Long.BYTES;
+                MappedByteBuffer keys = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, bytes);
+                MappedByteBuffer postings = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + bytes, bytes);
+                return new Run(file, count, keys, postings);
+            }
+        }
+
+        long key(long i) {
+            return keys.getLong((int) i * Long.BYTES);
+        }
+
+        long posting(long i) {
+            return postings.getLong((int) i * Long.BYTES);
+        }
+
+        /**
+         * @return the first index whose key is not less than {@code key}
+         */
+        long firstIndexOf(long key) {
+            long low = 0;
+            long high = count;
+            while (low < high) {
+                long mid = (low + high) >>> 1;
+                if (Long.compareUnsigned(key(mid), key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Writes a run to a temporary file, renaming it into place once it is complete
+     */
+    private static final class RunWriter implements Closeable {
+        private final Path file;
+        private final Path temporary;
+        private final FileChannel channel;
+        private final ByteBuffer keyBuffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        private final ByteBuffer postingBuffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        private long keyOffset = HEADER_BYTES;
+        private long postingOffset;
+
+        RunWriter(Path file, long count) throws IOException {
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.postingOffset = HEADER_BYTES + count * Long.BYTES;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(0).putLong(count).flip();
+            channel.write(header, 0);
+        }
+
+        void put(long key, long posting) throws IOException {
+            keyBuffer.putLong(key);
+            postingBuffer.putLong(posting);
+            if (!keyBuffer.hasRemaining()) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            keyOffset += write(keyBuffer, keyOffset);
+            postingOffset += write(postingBuffer, postingOffset);
+        }
+
+        private long write(ByteBuffer buffer, long offset) throws IOException {
+            buffer.flip();
+            long written = 0;
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, offset + written);
+            }
+            buffer.clear();
+            return written;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
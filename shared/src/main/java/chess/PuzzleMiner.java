@@ -0,0 +1,541 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Finds puzzles in a PGN archive: positions from real games where one move is clearly
+ * best and mates or wins material.
+ * <p>
+ * Most positions are turned away by a cheap filter before any searching: a position is
+ * a candidate only if it has a capture that wins material by {@link Position#see} (other
+ * than taking back on the square just moved to) or a check that leaves at most
+ * {@value #MAX_FORCING_REPLIES} replies. Candidates get a bounded two-line
+ * {@link Search}; the position is a puzzle if the best line mates within
+ * {@value #MAX_MATE} moves, the second does not and a {@link MateSolver} proves the
+ * mate, or if the best line wins at least {@value #MIN_WIN} centipawns, more than the
+ * static evaluation and more than the second line, each by {@value #MARGIN}.
+ * <p>
+ * The work is spread like {@link ArchiveVerifier}'s: a reader thread batches games for
+ * worker threads, each with its own search, and the calling thread puts the batches back
+ * in archive order. Puzzles are appended to the output one per line, as
+ * {@code fen;solution;score;game;ply} with the solution in coordinate notation and the
+ * score either {@code #n} for mate in n or centipawns. After every batch the output is
+ * flushed to disk and a checkpoint records how many games and bytes are done; mining
+ * with the same checkpoint again picks up there, cutting off anything written after it.
+ * Running {@code main} mines from the command line:
+ * {@code java chess.PuzzleMiner games.pgn puzzles.txt puzzles.checkpoint}.
+ */
+public final class PuzzleMiner {
+
+    private static final int BATCH_SIZE = 8;
+    private static final int BATCHES_PER_THREAD = 2;
+    /**
+     * Opening positions are left alone; their tactics are well known
+     */
+    private static final int SKIP_PLIES = 8;
+    /**
+     * What a capture has to win by {@link Position#see}, a pawn, to make a candidate
+     */
+    private static final int MIN_SEE = 100;
+    private static final int MAX_FORCING_REPLIES = 3;
+    private static final int MAX_MATE = 5;
+    private static final long MATE_NODES = 200_000;
+    private static final int MIN_WIN = 150;
+    private static final int MARGIN = 200;
+    /**
+     * The moves of a material puzzle's solution: the winning move, the reply and the follow-up
+     */
+    private static final int MATERIAL_PLIES = 3;
+
+    private final int threads;
+    private Engine.Limits limits = Engine.Limits.nodes(200_000);
+    private int tableMegabytes = 16;
+    private Consumer<Puzzle> puzzleListener = puzzle -> {
+    };
+    private Consumer<Progress> progressListener = progress -> {
+    };
+    private long progressIntervalNanos = 1_000_000_000L;
+
+    public PuzzleMiner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads the number of worker threads searching candidates
+     */
+    public PuzzleMiner(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets how long each candidate is searched for
+     */
+    public PuzzleMiner limits(Engine.Limits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Sets the size of each worker's transposition table
+     */
+    public PuzzleMiner tableMegabytes(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Table needs at least 1 MB");
+        }
+        this.tableMegabytes = megabytes;
+        return this;
+    }
+
+    /**
+     * Sets the listener called with every puzzle, in archive order, on the thread running
+     * {@link #mine}, once it is written
+     */
+    public PuzzleMiner onPuzzle(Consumer<Puzzle> listener) {
+        this.puzzleListener = listener;
+        return this;
+    }
+
+    /**
+     * Sets the listener called with progress at most once per interval, and once at the end
+     */
+    public PuzzleMiner onProgress(Consumer<Progress> listener, long intervalMillis) {
+        this.progressListener = listener;
+        this.progressIntervalNanos = intervalMillis * 1_000_000L;
+        return this;
+    }
+
+    /**
+     * Mines an archive into an output file, resuming from the checkpoint if it exists.
+     * Delete the checkpoint to start over.
+     *
+     * @return the totals, including those of earlier runs on the same checkpoint
+     */
+    public Progress mine(Path archive, Path output, Path checkpoint) throws IOException {
+        Map<String, Long> saved = Files.exists(checkpoint) ? readCheckpoint(checkpoint) : Map.of();
+        Progress resumed = new Progress(saved.getOrDefault("games", 0L), saved.getOrDefault("positions", 0L),
+                saved.getOrDefault("candidates", 0L), saved.getOrDefault("puzzles", 0L), 0);
+        long bytes = saved.getOrDefault("bytes", 0L);
+        try (FileChannel in = FileChannel.open(archive, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (out.size() < bytes) {
+                throw new IOException("Output is shorter than its checkpoint says");
+            }
+            out.truncate(bytes);
+            out.position(bytes);
+            Run run = new Run(new PgnReader(in), resumed.games());
+            try {
+                return run.aggregate(out, checkpoint, resumed);
+            } finally {
+                run.stop();
+            }
+        }
+    }
+
+    /**
+     * A puzzle found in a game
+     *
+     * @param game     the game's position in the archive, counting from 0
+     * @param ply      the moves played before the puzzle position
+     * @param solution the best move and its expected continuation, in coordinate notation
+     * @param score    the best line's score for the side to move, as {@link Search.Info#score}
+     * @param mateIn   the moves to mate, or 0 if the puzzle wins material
+     */
+    public record Puzzle(long game, int ply, String fen, List<String> solution, int score, int mateIn) {
+
+        public boolean isMate() {
+            return mateIn > 0;
+        }
+
+        /**
+         * @return the puzzle as a line of the output file, without the line separator
+         */
+        public String toLine() {
+            return fen + ';' + String.join(" ", solution) + ';' + (isMate() ? "#" + mateIn : String.valueOf(score))
+                    + ';' + game + ';' + ply;
+        }
+    }
+
+    /**
+     * @param positions  the positions looked at, past the opening
+     * @param candidates the positions that passed the filter and were searched
+     */
+    public record Progress(long games, long positions, long candidates, long puzzles, long elapsedNanos) {
+        public double positionsPerSecond() {
+            return elapsedNanos > 0 ? positions * 1e9 / elapsedNanos : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d games, %,d positions, %,d candidates, %,d puzzles, %,.0f positions/s",
+                    games, positions, candidates, puzzles, positionsPerSecond());
+        }
+    }
+
+    /**
+     * Writes a checkpoint for the games done and the output bytes holding their puzzles,
+     * replacing the old one in a single step so an interruption leaves one or the other
+     */
+    static void writeCheckpoint(Path checkpoint, Progress done, long bytes) throws IOException {
+        String text = "games=" + done.games() + "\npositions=" + done.positions() + "\ncandidates=" + done.candidates()
+                + "\npuzzles=" + done.puzzles() + "\nbytes=" + bytes + "\n";
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Map<String, Long> readCheckpoint(Path checkpoint) throws IOException {
+        Map<String, Long> values = new HashMap<>();
+        for (String line : Files.readAllLines(checkpoint, StandardCharsets.UTF_8)) {
+            int equals = line.indexOf('=');
+            if (equals > 0) {
+                try {
+                    values.put(line.substring(0, equals).trim(), Long.parseLong(line.substring(equals + 1).trim()));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad checkpoint line: " + line);
+                }
+            }
+        }
+        if (!values.containsKey("games") || !values.containsKey("bytes")) {
+            throw new IOException("Checkpoint " + checkpoint + " is incomplete");
+        }
+        return values;
+    }
+
+    /**
+     * Looks for puzzles in one game with one worker's search
+     */
+    private final class Finder {
+        private final Search search;
+        private final MateSolver solver = new MateSolver(tableMegabytes).nodes(MATE_NODES);
+        private final Evaluation evaluation = Evaluation.standard();
+        private final int[] moves = new int[Position.MAX_MOVES];
+        private final int[] replies = new int[Position.MAX_MOVES];
+        private Search.Info first;
+        private Search.Info best;
+        private Search.Info second;
+
+        Finder() {
+            search = new Search(new TranspositionTable(tableMegabytes), evaluation)
+                    .multiPv(2)
+                    .onInfo(info -> {
+                        if (info.multiPv() == 1) {
+                            first = info;
+                        } else {
+                            best = first;
+                            second = info;
+                        }
+                    });
+        }
+
+        void mine(long index, PgnGame game, Batch batch) {
+            Position position;
+            try {
+                position = Fen.parse(game.startFen());
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            int lastTarget = -1;
+            int skipUntil = SKIP_PLIES;
+            for (int ply = 0; ply < game.moveCount(); ply++) {
+                if (ply >= skipUntil) {
+                    batch.positions++;
+                    if (isCandidate(position, lastTarget)) {
+                        batch.candidates++;
+                        Puzzle puzzle = judge(index, ply, position, lastTarget);
+                        if (puzzle != null) {
+                            batch.puzzles.add(puzzle);
+                            // The rest of the solution would turn up again as puzzles of its own
+                            skipUntil = ply + puzzle.solution().size() + 1;
+                        }
+                    }
+                }
+                int move = game.move(ply);
+                lastTarget = Move.to(move);
+                position.make(move);
+                if (position.halfmoveClock() == 0) {
+                    position.forgetMoves();
+                }
+            }
+        }
+
+        /**
+         * @param lastTarget the square the last move went to, or -1
+         * @return whether the position has a winning capture or a forcing check
+         */
+        boolean isCandidate(Position position, int lastTarget) {
+            int count = position.legalMoves(moves, 0);
+            if (count < 2) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                int to = Move.to(move);
+                boolean capture = position.piece(to) != Position.EMPTY
+                        || (to == position.epSquare() && Position.type(position.piece(Move.from(move))) == Position.PAWN);
+                if (capture && to != lastTarget && position.see(move) >= MIN_SEE) {
+                    return true;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                position.make(moves[i]);
+                boolean forcing = position.inCheck() && position.legalMoves(replies, 0) <= MAX_FORCING_REPLIES;
+                position.unmake();
+                if (forcing) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the puzzle in the position, or null if the search finds none
+         */
+        Puzzle judge(long index, int ply, Position position, int lastTarget) {
+            first = null;
+            best = null;
+            second = null;
+            search.search(position, limits);
+            if (best == null || best.pv().length == 0) {
+                return null;
+            }
+            int plies;
+            int mateIn = 0;
+            int[] pv = best.pv();
+            if (best.isMate()) {
+                if (best.mateIn() <= 0 || best.mateIn() > MAX_MATE || (second.isMate() && second.mateIn() > 0)) {
+                    return null;
+                }
+                // The search's mate score is a heuristic one; only a proven mate makes a puzzle
+                MateSolver.Result proof = solver.solve(position, best.mateIn());
+                if (proof.outcome() != MateSolver.Outcome.MATE) {
+                    return null;
+                }
+                mateIn = proof.mateIn();
+                pv = proof.line();
+                plies = pv.length;
+            } else {
+                int score = best.score();
+                if (score < MIN_WIN || score - second.score() < MARGIN
+                        || score - evaluation.evaluate(position) < MARGIN || Move.to(best.bestMove()) == lastTarget) {
+                    return null;
+                }
+                plies = MATERIAL_PLIES;
+            }
+            List<String> solution = new ArrayList<>(plies);
+            for (int i = 0; i < Math.min(plies, pv.length); i++) {
+                solution.add(Move.toString(pv[i]));
+            }
+            return new Puzzle(index, ply, Fen.toFen(position), List.copyOf(solution), best.score(), mateIn);
+        }
+    }
+
+    /**
+     * A slice of the archive on its way through the pipeline. The reader marks the last
+     * one with {@code end}; a thread that fails sends one carrying its exception.
+     */
+    private static final class Batch {
+        final long sequence;
+        final long firstIndex;
+        final List<PgnGame> games = new ArrayList<>(BATCH_SIZE);
+        final List<Puzzle> puzzles = new ArrayList<>();
+        long positions;
+        long candidates;
+        boolean end;
+        Throwable failure;
+
+        Batch(long sequence, long firstIndex) {
+            this.sequence = sequence;
+            this.firstIndex = firstIndex;
+        }
+    }
+
+    private final class Run {
+        private final PgnReader reader;
+        private final long skip;
+        private final BlockingQueue<Batch> work;
+        private final BlockingQueue<Batch> done;
+        /**
+         * Bounds the batches between the reader and the aggregator, including ones
+         * held back waiting for an earlier batch
+         */
+        private final Semaphore inFlight;
+        private final List<Thread> running = new ArrayList<>();
+        private final long start = System.nanoTime();
+
+        /**
+         * @param skip the games done by an earlier run, which are read past without mining
+         */
+        Run(PgnReader reader, long skip) {
+            this.reader = reader;
+            this.skip = skip;
+            int capacity = threads * BATCHES_PER_THREAD;
+            this.work = new ArrayBlockingQueue<>(capacity);
+            this.done = new ArrayBlockingQueue<>(capacity + threads + 1);
+            this.inFlight = new Semaphore(capacity);
+            start("puzzle-reader", this::read);
+            for (int i = 0; i < threads; i++) {
+                start("puzzle-worker-" + i, this::work);
+            }
+        }
+
+        private void start(String name, Runnable task) {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            running.add(thread);
+            thread.start();
+        }
+
+        private void read() {
+            long sequence = 0;
+            long index = 0;
+            try {
+                PgnGame game = new PgnGame();
+                Batch batch = null;
+                while (reader.next(game)) {
+                    if (index < skip) {
+                        index++;
+                        continue;
+                    }
+                    if (batch == null) {
+                        batch = new Batch(sequence++, index);
+                    }
+                    batch.games.add(game.copy());
+                    index++;
+                    if (batch.games.size() == BATCH_SIZE) {
+                        inFlight.acquire();
+                        work.put(batch);
+                        batch = null;
+                    }
+                }
+                if (batch != null) {
+                    inFlight.acquire();
+                    work.put(batch);
+                }
+                Batch end = new Batch(sequence, index);
+                end.end = true;
+                inFlight.acquire();
+                done.put(end);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void work() {
+            try {
+                Finder finder = new Finder();
+                while (true) {
+                    Batch batch = work.take();
+                    for (int i = 0; i < batch.games.size(); i++) {
+                        finder.mine(batch.firstIndex + i, batch.games.get(i), batch);
+                    }
+                    done.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable e) {
+            Batch failed = new Batch(-1, -1);
+            failed.failure = e;
+            // done has room for every batch in flight plus one failure per thread, so this never blocks
+            done.offer(failed);
+        }
+
+        Progress aggregate(FileChannel out, Path checkpoint, Progress resumed) throws IOException {
+            Map<Long, Batch> waiting = new HashMap<>();
+            long next = 0;
+            long games = resumed.games();
+            long positions = resumed.positions();
+            long candidates = resumed.candidates();
+            long puzzles = resumed.puzzles();
+            long lastProgress = start;
+            try {
+                while (true) {
+                    Batch batch = done.take();
+                    if (batch.failure != null) {
+                        throw batch.failure instanceof IOException io ? io : new IOException(batch.failure);
+                    }
+                    waiting.put(batch.sequence, batch);
+                    while ((batch = waiting.remove(next)) != null) {
+                        next++;
+                        inFlight.release();
+                        if (batch.end) {
+                            Progress progress = new Progress(games, positions, candidates, puzzles,
+                                    System.nanoTime() - start);
+                            progressListener.accept(progress);
+                            return progress;
+                        }
+                        StringBuilder lines = new StringBuilder();
+                        for (Puzzle puzzle : batch.puzzles) {
+                            lines.append(puzzle.toLine()).append('\n');
+                        }
+                        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                        while (buffer.hasRemaining()) {
+                            out.write(buffer);
+                        }
+                        out.force(false);
+                        games += batch.games.size();
+                        positions += batch.positions;
+                        candidates += batch.candidates;
+                        puzzles += batch.puzzles.size();
+                        writeCheckpoint(checkpoint, new Progress(games, positions, candidates, puzzles, 0),
+                                out.position());
+                        for (Puzzle puzzle : batch.puzzles) {
+                            puzzleListener.accept(puzzle);
+                        }
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastProgress >= progressIntervalNanos) {
+                        lastProgress = now;
+                        progressListener.accept(new Progress(games, positions, candidates, puzzles, now - start));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while mining puzzles", e);
+            }
+        }
+
+        void stop() {
+            for (Thread thread : running) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.out.println("Usage: PuzzleMiner <pgn file> <output file> <checkpoint file>");
+            return;
+        }
+        PuzzleMiner miner = new PuzzleMiner().onProgress(progress -> System.err.println(progress), 10_000);
+        System.out.println(miner.mine(Path.of(args[0]), Path.of(args[1]), Path.of(args[2])));
+    }
+}
@@ -0,0 +1,60 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Sorts parallel arrays of keys and values by unsigned key, for the on-disk indexes
+ * that binary search their keys.
+ */
+final class RadixSort {
+
+    private RadixSort() {
+    }
+
+    /**
+     * Sorts the first {@code count} keys, moving each value with its key. This is a
+     * least-significant-byte radix sort, so it is stable and allocates nothing but a
+     * small histogram.
+     *
+     * @param scratchKeys   working space at least {@code count} long
+     * @param scratchValues working space at least {@code count} long
+     */
+    static void sort(long[] keys, long[] values, int count, long[] scratchKeys, long[] scratchValues) {
+        if (count == 0) {
+            return;
+        }
+        long[] fromKeys = keys;
+        long[] fromValues = values;
+        long[] toKeys = scratchKeys;
+        long[] toValues = scratchValues;
+        int[] counts = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                counts[(int) (fromKeys[i] >>> shift & 0xFF) + 1]++;
+            }
+            if (counts[(int) (fromKeys[0] >>> shift & 0xFF) + 1] == count) {
+                // Every key has the same byte here, so this pass would change nothing
+                continue;
+            }
+            for (int b = 0; b < 256; b++) {
+                counts[b + 1] += counts[b];
+            }
+            for (int i = 0; i < count; i++) {
+                int slot = counts[(int) (fromKeys[i] >>> shift & 0xFF)]++;
+                toKeys[slot] = fromKeys[i];
+                toValues[slot] = fromValues[i];
+            }
+            long[] swap = fromKeys;
+            fromKeys = toKeys;
+            toKeys = swap;
+            swap = fromValues;
+            fromValues = toValues;
+            toValues = swap;
+        }
+        if (fromKeys != keys) {
+            System.arraycopy(fromKeys, 0, keys, 0, count);
+            System.arraycopy(fromValues, 0, values, 0, count);
+        }
+    }
+}
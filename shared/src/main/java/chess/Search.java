@@ -0,0 +1,585 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * An alpha-beta engine: iterative deepening principal variation search with a
+ * quiescence search of captures, a {@link TranspositionTable}, and move ordering by
+ * table move, captures (most valuable victim first), killer moves and history.
+ * Quiet moves late in the ordering are searched one ply shallower first.
+ * <p>
+ * With more than one thread, helper threads search the same position at the same time
+ * and share only the table (lazy SMP); what they store speeds up the main thread,
+ * which alone reports progress and picks the move. Positions are scored by an
+ * {@link Evaluation}, each thread caching pawn structure in its own {@link PawnTable},
+ * or optionally by a {@link Network}.
+ * <p>
+ * A search stops at its depth, node or time limit, or soon after its stop flag is set,
+ * whichever comes first. With a soft time limit, as from a {@link TimeManager}, no new
+ * depth is started once it has passed. Each thread polls the flags and the clock every
+ * {@value #CHECK_INTERVAL} nodes, so a stop from another thread is cheap to watch for
+ * and still honoured within a millisecond or so; the helper threads are always joined
+ * before the search returns.
+ */
+public final class Search implements Engine {
+
+    public static final int MAX_DEPTH = 100;
+    /**
+     * The score of delivering mate now; mate in n plies scores {@code MATE - n}
+     */
+    public static final int MATE = 32000;
+    private static final int MAX_PLY = 128;
+    private static final int MATE_BOUND = MATE - MAX_PLY;
+    private static final int INFINITY = 32500;
+    private static final int CHECK_INTERVAL = 512;
+    private static final int PAWN_TABLE_ENTRIES = 1 << 14;
+    private static final int[] PIECE_VALUES = {0, 100, 320, 330, 500, 900, 0};
+
+    private final TranspositionTable table;
+    private final Evaluation evaluation;
+    private int threads = 1;
+    private int multiPv = 1;
+    private Network network;
+    private Consumer<Info> infoListener = info -> {
+    };
+    private volatile AtomicBoolean current;
+
+    public Search() {
+        this(new TranspositionTable(16), Evaluation.standard());
+    }
+
+    public Search(TranspositionTable table, Evaluation evaluation) {
+        this.table = table;
+        this.evaluation = evaluation;
+    }
+
+    /**
+     * Sets how many threads search together
+     */
+    public Search threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one search thread");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets a network to evaluate positions with in place of the tables, each thread
+     * keeping its own {@link Accumulator} up to date move by move; null goes back to the
+     * tables
+     */
+    public Search network(Network network) {
+        this.network = network;
+        return this;
+    }
+
+    /**
+     * Sets how many of the best root moves to find lines for. Each depth then searches
+     * the root once per line, every time leaving out the moves already found, and
+     * reports each line as it completes.
+     */
+    public Search multiPv(int lines) {
+        if (lines < 1) {
+            throw new IllegalArgumentException("Need at least one line");
+        }
+        this.multiPv = lines;
+        return this;
+    }
+
+    /**
+     * Sets the listener called after every completed line of every depth, on the
+     * searching thread, so analysis can be shown while the search goes deeper
+     */
+    public Search onInfo(Consumer<Info> listener) {
+        this.infoListener = listener;
+        return this;
+    }
+
+    public TranspositionTable table() {
+        return table;
+    }
+
+    /**
+     * Progress of a search after a completed depth, or its final result
+     *
+     * @param multiPv  which line this is, from 1 for the best; always 1 for the final result
+     * @param score    in centipawns for the side to move, or a mate score near {@link #MATE}
+     * @param nodes    nodes searched by all threads
+     * @param hashfull how full the table is, in permille
+     * @param pv       the expected line, best move first, packed as in {@link Move}
+     */
+    public record Info(int multiPv, int depth, int score, long nodes, long nanos, int hashfull, int[] pv) {
+
+        /**
+         * @return the best move, or {@link Move#NONE} if there is no legal move
+         */
+        public int bestMove() {
+            return pv.length == 0 ? Move.NONE : pv[0];
+        }
+
+        /**
+         * @return the expected line as moves
+         */
+        public List<ChessMove> line() {
+            List<ChessMove> line = new ArrayList<>(pv.length);
+            for (int move : pv) {
+                line.add(Move.toChessMove(move));
+            }
+            return line;
+        }
+
+        public long nps() {
+            return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+        }
+
+        public boolean isMate() {
+            return Math.abs(score) >= MATE_BOUND;
+        }
+
+        /**
+         * @return for a mate score, the moves until mate: positive when the side to move mates
+         */
+        public int mateIn() {
+            return score > 0 ? (MATE - score + 1) / 2 : -(MATE + score) / 2;
+        }
+    }
+
+    @Override
+    public ChessMove bestMove(ChessGame game, Limits limits) {
+        return bestMove(game, limits, new AtomicBoolean());
+    }
+
+    @Override
+    public ChessMove bestMove(ChessGame game, Limits limits, AtomicBoolean stop) {
+        int move = search(Position.of(game), limits, stop).bestMove();
+        return move == Move.NONE ? null : Move.toChessMove(move);
+    }
+
+    /**
+     * Searches until a limit is reached or {@link #stop()} is called
+     */
+    public Info search(Position root, Limits limits) {
+        return search(root, limits, new AtomicBoolean());
+    }
+
+    /**
+     * Searches until a limit is reached or the stop flag is set. The flag is the caller's,
+     * so setting it before the search has started still stops it; the search never sets it.
+     */
+    public synchronized Info search(Position root, Limits limits, AtomicBoolean stop) {
+        current = stop;
+        table.newSearch();
+        Run run = new Run(limits, stop);
+        List<Thread> helpers = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Worker helper = new Worker(root.copy(), run);
+            int firstDepth = 1 + i % 2;
+            Thread thread = new Thread(() -> helper.iterate(firstDepth, 1, null), "search-helper-" + i);
+            thread.setDaemon(true);
+            helpers.add(thread);
+            thread.start();
+        }
+        try {
+            return new Worker(root.copy(), run).iterate(1, multiPv, infoListener);
+        } finally {
+            run.finished = true;
+            for (Thread thread : helpers) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            current = null;
+        }
+    }
+
+    /**
+     * Stops the running search, if any, which then returns its best move so far
+     */
+    @Override
+    public void stop() {
+        AtomicBoolean stop = current;
+        if (stop != null) {
+            stop.set(true);
+        }
+    }
+
+    /**
+     * The limits and shared counters of one search
+     */
+    private final class Run {
+        final int maxDepth;
+        final long nodeLimit;
+        final long deadline;
+        final long softDeadline;
+        final long start = System.nanoTime();
+        final AtomicBoolean stop;
+        final LongAdder nodes = new LongAdder();
+        /**
+         * Set when a limit is reached or the main thread is done, to stop the helpers
+         */
+        volatile boolean finished;
+
+        Run(Limits limits, AtomicBoolean stop) {
+            this.maxDepth = limits.depth() == 0 ? MAX_DEPTH : Math.min(limits.depth(), MAX_DEPTH);
+            this.nodeLimit = limits.nodes() == 0 ? Long.MAX_VALUE : limits.nodes();
+            this.deadline = limits.millis() == 0 ? Long.MAX_VALUE : start + limits.millis() * 1_000_000L;
+            this.softDeadline = limits.softMillis() == 0 ? Long.MAX_VALUE : start + limits.softMillis() * 1_000_000L;
+            this.stop = stop;
+        }
+
+        void check(long newNodes) {
+            nodes.add(newNodes);
+            if (stop.get() || nodes.sum() >= nodeLimit
+                    || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)) {
+                finished = true;
+            }
+        }
+
+        /**
+         * @return whether the soft time limit has passed, so another depth should not be started
+         */
+        boolean pastSoftLimit() {
+            return softDeadline != Long.MAX_VALUE && System.nanoTime() - softDeadline >= 0;
+        }
+    }
+
+    /**
+     * One thread's search, with its own position, move buffers and ordering tables
+     */
+    private final class Worker {
+        private final Position position;
+        private final Run run;
+        private final int[][] moves = new int[MAX_PLY][Position.MAX_MOVES];
+        private final int[][] order = new int[MAX_PLY][Position.MAX_MOVES];
+        private final int[][] killers = new int[MAX_PLY][2];
+        private final int[] history = new int[64 * 64];
+        private final PawnTable pawns = new PawnTable(PAWN_TABLE_ENTRIES);
+        private final Accumulator accumulator;
+        private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+        private final int[] pvLength = new int[MAX_PLY];
+        /**
+         * Root moves left out of the current search, the best moves of the lines already found
+         */
+        private final int[] excluded = new int[Position.MAX_MOVES];
+        private int excludedCount;
+        private long uncounted;
+        private boolean aborted;
+
+        Worker(Position position, Run run) {
+            this.position = position;
+            this.run = run;
+            this.accumulator = network == null ? null : new Accumulator(network);
+            position.setAccumulator(accumulator);
+        }
+
+        /**
+         * Searches one depth after another until a limit is reached
+         *
+         * @param lines    how many lines to search at each depth
+         * @param listener receives each completed line, or null for a helper
+         */
+        Info iterate(int firstDepth, int lines, Consumer<Info> listener) {
+            Info result = null;
+            lines = Math.min(lines, position.legalMoves(moves[0], 0));
+            deepening:
+            for (int depth = firstDepth; depth <= run.maxDepth; depth++) {
+                excludedCount = 0;
+                for (int line = 1; line <= Math.max(1, lines); line++) {
+                    int score = search(depth, -INFINITY, INFINITY, 0, true);
+                    if (aborted && (result != null || line > 1)) {
+                        break deepening;
+                    }
+                    if (pvLength[0] == 0) {
+                        // Stopped before any root move was searched, or there are no legal moves
+                        break deepening;
+                    }
+                    run.nodes.add(uncounted);
+                    uncounted = 0;
+                    Info info = new Info(line, depth, score, run.nodes.sum(), System.nanoTime() - run.start,
+                            table.hashfull(), Arrays.copyOf(pv[0], pvLength[0]));
+                    if (line == 1) {
+                        result = info;
+                    }
+                    if (listener != null && !aborted) {
+                        listener.accept(info);
+                    }
+                    if (aborted) {
+                        break deepening;
+                    }
+                    excluded[excludedCount++] = pv[0][0];
+                }
+                if (run.pastSoftLimit() || (result.isMate() && Math.abs(result.mateIn()) * 2 <= depth)) {
+                    break;
+                }
+            }
+            excludedCount = 0;
+            run.nodes.add(uncounted);
+            uncounted = 0;
+            if (result == null) {
+                int count = position.legalMoves(moves[0], 0);
+                int[] line = count == 0 ? new int[0] : new int[]{moves[0][0]};
+                result = new Info(1, 0, 0, run.nodes.sum(), System.nanoTime() - run.start, table.hashfull(), line);
+            }
+            return result;
+        }
+
+        private boolean shouldStop() {
+            if (++uncounted == CHECK_INTERVAL) {
+                run.check(uncounted);
+                uncounted = 0;
+                aborted = run.finished;
+            }
+            return aborted;
+        }
+
+        private int search(int depth, int alpha, int beta, int ply, boolean pvNode) {
+            pvLength[ply] = 0;
+            if (ply > 0 && (position.isRepetition() || position.halfmoveClock() >= 100)) {
+                return 0;
+            }
+            if (depth <= 0 || ply >= MAX_PLY - 1) {
+                return quiesce(alpha, beta, ply);
+            }
+            if (shouldStop()) {
+                return 0;
+            }
+
+            long entry = table.probe(position);
+            int tableMove = entry == 0 ? Move.NONE : TranspositionTable.move(entry);
+            if (entry != 0 && !pvNode && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+
+            boolean inCheck = position.inCheck();
+            if (inCheck) {
+                depth++;
+            }
+            int[] list = moves[ply];
+            int count = position.legalMoves(list, 0);
+            if (count == 0) {
+                return inCheck ? -MATE + ply : 0;
+            }
+            if (ply == 0 && excludedCount > 0) {
+                count = removeExcluded(list, count);
+            }
+            scoreMoves(ply, count, tableMove);
+
+            int originalAlpha = alpha;
+            int best = -INFINITY;
+            int bestMove = Move.NONE;
+            for (int i = 0; i < count; i++) {
+                int move = pickNext(ply, i, count);
+                boolean quiet = isQuiet(move);
+                position.make(move);
+                int score;
+                if (i == 0) {
+                    score = -search(depth - 1, -beta, -alpha, ply + 1, pvNode);
+                } else {
+                    int reduction = quiet && !inCheck && depth >= 3 && i >= 4 ? 1 : 0;
+                    score = -search(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1, false);
+                    if (score > alpha && reduction > 0) {
+                        score = -search(depth - 1, -alpha - 1, -alpha, ply + 1, false);
+                    }
+                    if (score > alpha && score < beta && pvNode) {
+                        score = -search(depth - 1, -beta, -alpha, ply + 1, true);
+                    }
+                }
+                position.unmake();
+                if (aborted) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                    if (score > alpha) {
+                        alpha = score;
+                        updatePv(ply, move);
+                        if (alpha >= beta) {
+                            if (quiet) {
+                                rememberCutoff(ply, move, depth);
+                            }
+                            break;
+                        }
+                    }
+                }
+            }
+
+            int bound = best >= beta ? TranspositionTable.LOWER
+                    : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            if (ply > 0 || excludedCount == 0) {
+                // A root search without some of the moves does not score the position itself
+                table.store(position, bestMove, toTable(best, ply), depth, bound);
+            }
+            return best;
+        }
+
+        private int removeExcluded(int[] list, int count) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                boolean found = false;
+                for (int e = 0; e < excludedCount && !found; e++) {
+                    found = list[i] == excluded[e];
+                }
+                if (!found) {
+                    list[kept++] = list[i];
+                }
+            }
+            return kept;
+        }
+
+        /**
+         * Searches captures and queen promotions only, until the position is quiet
+         */
+        private int quiesce(int alpha, int beta, int ply) {
+            pvLength[ply] = 0;
+            if (shouldStop()) {
+                return 0;
+            }
+            int standPat = accumulator != null
+                    ? accumulator.evaluate(position.sideToMove())
+                    : evaluation.evaluate(position, pawns);
+            if (standPat >= beta || ply >= MAX_PLY - 1) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+
+            int[] list = moves[ply];
+            int count = 0;
+            int end = position.pseudoLegalMoves(list, 0);
+            for (int i = 0; i < end; i++) {
+                if (!isQuiet(list[i])) {
+                    list[count++] = list[i];
+                }
+            }
+            scoreMoves(ply, count, Move.NONE);
+
+            int best = standPat;
+            int us = position.sideToMove();
+            for (int i = 0; i < count; i++) {
+                int move = pickNext(ply, i, count);
+                position.make(move);
+                if (position.isAttacked(position.kingSquare(us), us ^ Position.BLACK)) {
+                    position.unmake();
+                    continue;
+                }
+                int score = -quiesce(-beta, -alpha, ply + 1);
+                position.unmake();
+                if (aborted) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        private boolean isQuiet(int move) {
+            int from = Move.from(move);
+            int to = Move.to(move);
+            if (position.piece(to) != Position.EMPTY || Move.promotion(move) == Position.QUEEN) {
+                return false;
+            }
+            return to != position.epSquare() || Position.type(position.piece(from)) != Position.PAWN;
+        }
+
+        private void scoreMoves(int ply, int count, int tableMove) {
+            int[] list = moves[ply];
+            int[] scores = order[ply];
+            for (int i = 0; i < count; i++) {
+                int move = list[i];
+                int from = Move.from(move);
+                int to = Move.to(move);
+                if (move == tableMove) {
+                    scores[i] = 1 << 30;
+                } else if (!isQuiet(move)) {
+                    int victim = PIECE_VALUES[Position.type(position.piece(to))];
+                    if (Move.promotion(move) == Position.QUEEN) {
+                        victim += PIECE_VALUES[Position.QUEEN];
+                    } else if (victim == 0) {
+                        victim = PIECE_VALUES[Position.PAWN];
+                    }
+                    scores[i] = (1 << 24) + victim * 8 - Position.type(position.piece(from));
+                } else if (move == killers[ply][0]) {
+                    scores[i] = (1 << 22) + 1;
+                } else if (move == killers[ply][1]) {
+                    scores[i] = 1 << 22;
+                } else {
+                    scores[i] = history[from << 6 | to];
+                }
+            }
+        }
+
+        /**
+         * Moves the best scored of the remaining moves to position i
+         */
+        private int pickNext(int ply, int i, int count) {
+            int[] list = moves[ply];
+            int[] scores = order[ply];
+            int best = i;
+            for (int j = i + 1; j < count; j++) {
+                if (scores[j] > scores[best]) {
+                    best = j;
+                }
+            }
+            int move = list[best];
+            list[best] = list[i];
+            list[i] = move;
+            int score = scores[best];
+            scores[best] = scores[i];
+            scores[i] = score;
+            return move;
+        }
+
+        private void rememberCutoff(int ply, int move, int depth) {
+            if (killers[ply][0] != move) {
+                killers[ply][1] = killers[ply][0];
+                killers[ply][0] = move;
+            }
+            int index = Move.from(move) << 6 | Move.to(move);
+            history[index] += depth * depth;
+            if (history[index] >= 1 << 21) {
+                for (int i = 0; i < history.length; i++) {
+                    history[i] >>= 1;
+                }
+            }
+        }
+
+        private void updatePv(int ply, int move) {
+            pv[ply][0] = move;
+            System.arraycopy(pv[ply + 1], 0, pv[ply], 1, pvLength[ply + 1]);
+            pvLength[ply] = pvLength[ply + 1] + 1;
+        }
+    }
+
+    /**
+     * Converts a mate score to be relative to the position stored, so it stays right
+     * when the entry is found again at another distance from the root
+     */
+    private static int toTable(int score, int ply) {
+        return score >= MATE_BOUND ? score + ply : score <= -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE_BOUND ? score - ply : score <= -MATE_BOUND ? score + ply : score;
+    }
+}
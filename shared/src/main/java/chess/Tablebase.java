@@ -0,0 +1,372 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A solved endgame for one material set, such as "KQK" or "KPK", holding the
+ * win/draw/loss result and distance to mate of every position.
+ * <p>
+ * Each position is one byte at index {@code (square of piece 0, ..., square of piece n-1, side to move)},
+ * with six bits per square, so a probe is a single array read. The white king comes first,
+ * then the other white pieces, then the black king and the other black pieces. Values are
+ * from the side to move's point of view: positive is a win with mate in that many plies,
+ * negative is a loss with mate in {@code -value - 1} plies, and 0 is a draw. Castling and
+ * en passant rights are ignored.
+ */
+public final class Tablebase {
+
+    public static final int DRAW = 0;
+    public static final int ILLEGAL = Byte.MIN_VALUE;
+    public static final int MAX_PIECES = 4;
+
+    private static final int MAGIC = 0x43544231;
+    private static final int HEADER_BYTES = 16;
+    private static final int UNRESOLVED = Byte.MAX_VALUE;
+    private static final int CHUNK = 1 << 14;
+
+    private final String material;
+    private final int[] pieces;
+    private final ByteBuffer data;
+    private final int maxPlies;
+
+    private Tablebase(String material, int[] pieces, ByteBuffer data, int maxPlies) {
+        this.material = material;
+        this.pieces = pieces;
+        this.data = data;
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * @return the material set, white's pieces then black's, e.g. "KRK"
+     */
+    public String material() {
+        return material;
+    }
+
+    /**
+     * @return the longest distance to mate in the table, in plies
+     */
+    public int maxPlies() {
+        return maxPlies;
+    }
+
+    public static boolean isWin(int value) {
+        return value > 0;
+    }
+
+    public static boolean isLoss(int value) {
+        return value < 0 && value != ILLEGAL;
+    }
+
+    /**
+     * @return how many plies until mate for a win or loss value
+     */
+    public static int pliesToMate(int value) {
+        return value > 0 ? value : -value - 1;
+    }
+
+    /**
+     * Looks up a position with this table's material, or its color-flipped twin
+     *
+     * @param flipped true if the position has the colors the other way around from the table
+     * @return the value for the side to move
+     */
+    int probe(Position position, boolean flipped) {
+        int index = 0;
+        int used = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.piece(sq);
+            if (piece != Position.EMPTY) {
+                int slot = freeSlot(used, flipped ? piece ^ Position.BLACK : piece);
+                if (slot >= 0) {
+                    used |= 1 << slot;
+                    index |= (flipped ? sq ^ 56 : sq) << shift(slot);
+                }
+            }
+        }
+        return value(index, position.sideToMove(), flipped);
+    }
+
+    /**
+     * Looks up a board with this table's material, or its color-flipped twin, without
+     * building a {@link Position}
+     */
+    int probe(ChessBoard board, int sideToMove, boolean flipped) {
+        int index = 0;
+        int used = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = board.piece(sq);
+            if (piece != null) {
+                int code = Position.piece(piece);
+                int slot = freeSlot(used, flipped ? code ^ Position.BLACK : code);
+                if (slot >= 0) {
+                    used |= 1 << slot;
+                    index |= (flipped ? sq ^ 56 : sq) << shift(slot);
+                }
+            }
+        }
+        return value(index, sideToMove, flipped);
+    }
+
+    /**
+     * @return the first slot holding the piece that is not yet used, or -1 if there is none
+     */
+    private int freeSlot(int used, int piece) {
+        for (int slot = 0; slot < pieces.length; slot++) {
+            if ((used & 1 << slot) == 0 && pieces[slot] == piece) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int value(int index, int sideToMove, boolean flipped) {
+        int side = flipped ? sideToMove ^ Position.BLACK : sideToMove;
+        return data.get(index | (side == Position.WHITE ? 0 : 1));
+    }
+
+    private int shift(int slot) {
+        return 1 + 6 * (pieces.length - 1 - slot);
+    }
+
+    /**
+     * Writes the table so it can be memory-mapped again with {@link #open}
+     */
+    public void write(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).putInt(pieces.length);
+        for (int slot = 0; slot < 4; slot++) {
+            header.put((byte) (slot < pieces.length ? pieces[slot] : 0));
+        }
+        header.putInt(maxPlies).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            channel.write(header);
+            ByteBuffer body = data.duplicate();
+            body.clear();
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a table written by {@link #write}. Nothing is read into the heap, so
+     * probes page in only the parts of the file they touch.
+     */
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("Not a tablebase file: " + file);
+            }
+            int count = mapped.getInt(4);
+            int[] pieces = new int[count];
+            for (int slot = 0; slot < count; slot++) {
+                pieces[slot] = mapped.get(8 + slot);
+            }
+            int maxPlies = mapped.getInt(12);
+            ByteBuffer data = mapped.slice(HEADER_BYTES, 2 << (6 * count));
+            return new Tablebase(materialName(pieces), pieces, data, maxPlies);
+        }
+    }
+
+    /**
+     * Solves a material set by retrograde analysis, splitting each pass across all cores.
+     * Every material set reachable by a capture or promotion must already be in
+     * {@code subtables}; {@link Tablebases#generate} takes care of that.
+     */
+    static Tablebase generate(String material, Tablebases subtables) {
+        int[] pieces = parseMaterial(material);
+        int size = 2 << (6 * pieces.length);
+        byte[] values = new byte[size];
+        int chunks = (size + CHUNK - 1) / CHUNK;
+
+        IntStream.range(0, chunks).parallel()
+                .forEach(chunk -> new Worker(pieces, values, subtables).initialize(chunk * CHUNK,
+                        Math.min(size, (chunk + 1) * CHUNK)));
+
+        int subtablePlies = subtables.maxPlies();
+        int quietPasses = 0;
+        for (int plies = 1; quietPasses < 2 || plies <= subtablePlies + 2; plies++) {
+            int bound = plies;
+            int resolved = IntStream.range(0, chunks).parallel()
+                    .map(chunk -> new Worker(pieces, values, subtables).resolve(chunk * CHUNK,
+                            Math.min(size, (chunk + 1) * CHUNK), bound))
+                    .sum();
+            quietPasses = resolved == 0 ? quietPasses + 1 : 0;
+        }
+
+        int maxPlies = 0;
+        for (int i = 0; i < size; i++) {
+            if (values[i] == UNRESOLVED) {
+                values[i] = DRAW;
+            } else if (values[i] != ILLEGAL && values[i] != DRAW) {
+                maxPlies = Math.max(maxPlies, pliesToMate(values[i]));
+            }
+        }
+        return new Tablebase(materialName(pieces), pieces, ByteBuffer.wrap(values), maxPlies);
+    }
+
+    /**
+     * Parses a material name like "KRK" or "KPKN" into piece codes in slot order
+     */
+    static int[] parseMaterial(String material) {
+        int blackKing = material.indexOf('K', 1);
+        if (!material.startsWith("K") || blackKing < 0 || material.length() > MAX_PIECES) {
+            throw new IllegalArgumentException("Material must look like KQK with at most "
+                    + MAX_PIECES + " pieces: " + material);
+        }
+        int[] pieces = new int[material.length()];
+        for (int i = 0; i < pieces.length; i++) {
+            int type = "PNBRQK".indexOf(material.charAt(i)) + 1;
+            if (type == 0) {
+                throw new IllegalArgumentException("Unknown piece '" + material.charAt(i) + "' in " + material);
+            }
+            pieces[i] = type | (i < blackKing ? Position.WHITE : Position.BLACK);
+        }
+        Arrays.sort(pieces, 1, blackKing);
+        Arrays.sort(pieces, blackKing + 1, pieces.length);
+        reverse(pieces, 1, blackKing);
+        reverse(pieces, blackKing + 1, pieces.length);
+        return pieces;
+    }
+
+    private static void reverse(int[] values, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+    }
+
+    private static String materialName(int[] pieces) {
+        StringBuilder name = new StringBuilder();
+        for (int piece : pieces) {
+            name.append("?PNBRQK".charAt(Position.type(piece)));
+        }
+        return name.toString();
+    }
+
+    /**
+     * One thread's share of a generation pass, with its own position and move buffer
+     */
+    private static final class Worker {
+        private final int[] pieces;
+        private final byte[] values;
+        private final Tablebases subtables;
+        private final Position position = new Position();
+        private final int[] moves = new int[Position.MAX_MOVES];
+        private final int[] slots;
+
+        Worker(int[] pieces, byte[] values, Tablebases subtables) {
+            this.pieces = pieces;
+            this.values = values;
+            this.subtables = subtables;
+            this.slots = new int[pieces.length];
+        }
+
+        void initialize(int from, int to) {
+            for (int index = from; index < to; index++) {
+                if (!setUp(index)) {
+                    values[index] = (byte) ILLEGAL;
+                } else if (position.legalMoves(moves, 0) > 0) {
+                    values[index] = (byte) UNRESOLVED;
+                } else {
+                    values[index] = (byte) (position.inCheck() ? -1 : DRAW);
+                }
+            }
+        }
+
+        /**
+         * Resolves every position whose result is now known and whose distance to mate
+         * is at most {@code bound} plies. Positions are only ever written once, so
+         * concurrent passes over neighbouring chunks cannot change the outcome.
+         */
+        int resolve(int from, int to, int bound) {
+            int resolved = 0;
+            for (int index = from; index < to; index++) {
+                if (values[index] != UNRESOLVED) {
+                    continue;
+                }
+                setUp(index);
+                int count = position.legalMoves(moves, 0);
+                int shortestLoss = Integer.MAX_VALUE;
+                int longestWin = 0;
+                boolean allWins = true;
+                for (int i = 0; i < count; i++) {
+                    int value = successor(index, moves[i]);
+                    if (isLoss(value)) {
+                        shortestLoss = Math.min(shortestLoss, pliesToMate(value));
+                        allWins = false;
+                    } else if (isWin(value) && value != UNRESOLVED) {
+                        longestWin = Math.max(longestWin, value);
+                    } else {
+                        allWins = false;
+                    }
+                }
+                if (shortestLoss != Integer.MAX_VALUE && shortestLoss + 1 <= bound) {
+                    values[index] = (byte) checkedPlies(shortestLoss + 1);
+                    resolved++;
+                } else if (allWins) {
+                    values[index] = (byte) -(checkedPlies(longestWin + 1) + 1);
+                    resolved++;
+                }
+            }
+            return resolved;
+        }
+
+        private static int checkedPlies(int plies) {
+            if (plies >= UNRESOLVED - 1) {
+                throw new IllegalStateException("Distance to mate does not fit in a byte: " + plies);
+            }
+            return plies;
+        }
+
+        private int successor(int index, int move) {
+            int from = Move.from(move);
+            int to = Move.to(move);
+            if (position.piece(to) == Position.EMPTY && Move.promotion(move) == 0) {
+                for (int slot = 0; slot < slots.length; slot++) {
+                    if (slots[slot] == from) {
+                        int shift = 1 + 6 * (slots.length - 1 - slot);
+                        return values[(index & ~(63 << shift) | to << shift) ^ 1];
+                    }
+                }
+            }
+            position.make(move);
+            int value = subtables.probe(position);
+            position.unmake();
+            if (value == Tablebases.NOT_FOUND) {
+                throw new IllegalStateException("Missing tablebase for a position after " + Move.toString(move));
+            }
+            return value;
+        }
+
+        private boolean setUp(int index) {
+            position.clear();
+            for (int slot = 0; slot < pieces.length; slot++) {
+                int sq = index >>> (1 + 6 * (pieces.length - 1 - slot)) & 63;
+                if (position.piece(sq) != Position.EMPTY) {
+                    return false;
+                }
+                if (Position.type(pieces[slot]) == Position.PAWN && (sq < 8 || sq >= 56)) {
+                    return false;
+                }
+                position.put(sq, pieces[slot]);
+                slots[slot] = sq;
+            }
+            int side = (index & 1) == 0 ? Position.WHITE : Position.BLACK;
+            position.setSideToMove(side);
+            return !position.isAttacked(position.kingSquare(side ^ Position.BLACK), side);
+        }
+    }
+}
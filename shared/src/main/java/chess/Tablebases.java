@@ -0,0 +1,326 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of endgame {@link Tablebase}s that can be probed with any position.
+ * <p>
+ * Tables are looked up by material, so a KQK table also answers positions where black
+ * has the queen. Bare kings and a lone minor piece are always draws and need no table.
+ * A probe sums a weight per piece into a material signature, each side's count of each
+ * piece type as a base-3 digit, and finds the table in an array indexed by it, so it
+ * allocates nothing. Boards without exactly one king a side are never found.
+ * Running {@code main} generates tables into a directory:
+ * {@code java chess.Tablebases <directory> KQK KRK KPK}.
+ */
+public final class Tablebases {
+
+    /**
+     * Returned by {@link #probe} when no table covers the position
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    /**
+     * Signatures of one side's material; with at most two pieces besides the kings no
+     * type is counted more than twice, so three values a digit are enough
+     */
+    private static final int SIDE_SIGNATURES = 243;
+    private static final int[] WEIGHTS = new int[16];
+
+    static {
+        int weight = 1;
+        for (int type = Position.PAWN; type <= Position.QUEEN; type++) {
+            WEIGHTS[type | Position.WHITE] = weight;
+            WEIGHTS[type | Position.BLACK] = weight * SIDE_SIGNATURES;
+            weight *= 3;
+        }
+    }
+
+    private final Map<String, Tablebase> tables = new ConcurrentHashMap<>();
+    /**
+     * The tables by material signature; a table's fields are final, so one added on
+     * another thread is always seen whole
+     */
+    private final Tablebase[] bySignature = new Tablebase[SIDE_SIGNATURES * SIDE_SIGNATURES];
+
+    public Tablebases() {
+    }
+
+    /**
+     * Memory-maps every {@code .tb} file in a directory
+     */
+    public static Tablebases load(Path directory) throws IOException {
+        Tablebases tablebases = new Tablebases();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.tb")) {
+            for (Path file : files) {
+                tablebases.add(Tablebase.open(file));
+            }
+        }
+        return tablebases;
+    }
+
+    public void add(Tablebase table) {
+        tables.put(table.material(), table);
+        bySignature[signature(Tablebase.parseMaterial(table.material()))] = table;
+    }
+
+    /**
+     * @return the table for a material set, or null if it has not been generated or loaded
+     */
+    public Tablebase get(String material) {
+        return tables.get(material);
+    }
+
+    /**
+     * Generates the table for a material set, along with every smaller table it can
+     * reach through captures and promotions that is not already present.
+     */
+    public Tablebase generate(String material) {
+        int[] pieces = Tablebase.parseMaterial(material);
+        String name = name(pieces);
+        Tablebase existing = tables.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        for (int slot = 0; slot < pieces.length; slot++) {
+            int type = Position.type(pieces[slot]);
+            if (type == Position.KING) {
+                continue;
+            }
+            int[] captured = new int[pieces.length - 1];
+            for (int i = 0, j = 0; i < pieces.length; i++) {
+                if (i != slot) {
+                    captured[j++] = pieces[i];
+                }
+            }
+            generateIfNeeded(captured);
+            if (type == Position.PAWN) {
+                for (int promotion = Position.KNIGHT; promotion <= Position.QUEEN; promotion++) {
+                    int[] promoted = pieces.clone();
+                    promoted[slot] = promotion | Position.color(pieces[slot]);
+                    generateIfNeeded(promoted);
+                }
+            }
+        }
+        Tablebase table = Tablebase.generate(name, this);
+        add(table);
+        return table;
+    }
+
+    private void generateIfNeeded(int[] pieces) {
+        int signature = signature(pieces);
+        if (!isInsufficient(pieces.length, signature)
+                && bySignature[signature] == null && bySignature[flip(signature)] == null) {
+            generate(name(pieces));
+        }
+    }
+
+    /**
+     * Writes every table to a directory as {@code <material>.tb}, skipping tables that
+     * already have a file there (they may be the ones this set has mapped).
+     */
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Tablebase table : tables.values()) {
+            Path file = directory.resolve(table.material() + ".tb");
+            if (!Files.exists(file)) {
+                table.write(file);
+            }
+        }
+    }
+
+    /**
+     * @return the longest distance to mate over all tables, in plies
+     */
+    int maxPlies() {
+        int max = 0;
+        for (Tablebase table : tables.values()) {
+            max = Math.max(max, table.maxPlies());
+        }
+        return max;
+    }
+
+    /**
+     * Looks up a position. See {@link Tablebase} for how values are encoded.
+     *
+     * @return the value for the side to move, or {@link #NOT_FOUND}
+     */
+    public int probe(Position position) {
+        int count = 0;
+        long counts = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.piece(sq);
+            if (piece != Position.EMPTY) {
+                if (++count > Tablebase.MAX_PIECES) {
+                    return NOT_FOUND;
+                }
+                counts += 1L << 4 * piece;
+            }
+        }
+        int signature = signature(counts);
+        if (signature < 0) {
+            return NOT_FOUND;
+        }
+        if (isInsufficient(count, signature)) {
+            return Tablebase.DRAW;
+        }
+        Tablebase table = bySignature[signature];
+        if (table != null) {
+            return table.probe(position, false);
+        }
+        table = bySignature[flip(signature)];
+        return table == null ? NOT_FOUND : table.probe(position, true);
+    }
+
+    /**
+     * Looks up a game's position straight from its board
+     */
+    public int probe(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        int count = 0;
+        long counts = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = board.piece(sq);
+            if (piece != null) {
+                if (++count > Tablebase.MAX_PIECES) {
+                    return NOT_FOUND;
+                }
+                counts += 1L << 4 * Position.piece(piece);
+            }
+        }
+        int signature = signature(counts);
+        if (signature < 0) {
+            return NOT_FOUND;
+        }
+        if (isInsufficient(count, signature)) {
+            return Tablebase.DRAW;
+        }
+        int side = game.getTeamTurn() == ChessGame.TeamColor.WHITE ? Position.WHITE : Position.BLACK;
+        Tablebase table = bySignature[signature];
+        if (table != null) {
+            return table.probe(board, side, false);
+        }
+        table = bySignature[flip(signature)];
+        return table == null ? NOT_FOUND : table.probe(board, side, true);
+    }
+
+    /**
+     * Picks the move that wins fastest, holds the draw, or loses slowest
+     *
+     * @return the best move, or {@link Move#NONE} if no table covers the position or there are no moves
+     */
+    public int bestMove(Position position) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.legalMoves(moves, 0);
+        int best = Move.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            position.make(moves[i]);
+            int value = probe(position);
+            position.unmake();
+            if (value == NOT_FOUND) {
+                return Move.NONE;
+            }
+            int score;
+            if (Tablebase.isLoss(value)) {
+                score = 1000 - Tablebase.pliesToMate(value);
+            } else if (Tablebase.isWin(value)) {
+                score = -1000 + Tablebase.pliesToMate(value);
+            } else {
+                score = 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    private static String name(int[] pieces) {
+        return side(pieces, Position.WHITE) + side(pieces, Position.BLACK);
+    }
+
+    private static String side(int[] pieces, int color) {
+        StringBuilder side = new StringBuilder("K");
+        for (int type = Position.QUEEN; type >= Position.PAWN; type--) {
+            for (int piece : pieces) {
+                if (piece == (type | color)) {
+                    side.append("?PNBRQK".charAt(type));
+                }
+            }
+        }
+        return side.toString();
+    }
+
+    private static int signature(int[] pieces) {
+        long counts = 0;
+        for (int piece : pieces) {
+            counts += 1L << 4 * piece;
+        }
+        return signature(counts);
+    }
+
+    /**
+     * @param counts how many there are of each piece, four bits per piece code
+     * @return the material signature, or -1 unless each side has one king and at most
+     * two of any other piece, the only material a signature can describe
+     */
+    private static int signature(long counts) {
+        int signature = 0;
+        for (int piece = 0; piece < WEIGHTS.length; piece++) {
+            int count = (int) (counts >>> 4 * piece) & 15;
+            if (Position.type(piece) == Position.KING ? count != 1 : count > 2) {
+                return -1;
+            }
+            signature += count * WEIGHTS[piece];
+        }
+        return signature;
+    }
+
+    /**
+     * @return the signature of the same material with the colors swapped
+     */
+    private static int flip(int signature) {
+        return signature % SIDE_SIGNATURES * SIDE_SIGNATURES + signature / SIDE_SIGNATURES;
+    }
+
+    /**
+     * @return whether the material is bare kings or kings and a single minor piece
+     */
+    private static boolean isInsufficient(int count, int signature) {
+        if (count == 2) {
+            return true;
+        }
+        if (count != 3) {
+            return false;
+        }
+        int white = signature % SIDE_SIGNATURES;
+        int minor = white != 0 ? white : signature / SIDE_SIGNATURES;
+        return minor == WEIGHTS[Position.KNIGHT] || minor == WEIGHTS[Position.BISHOP];
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: Tablebases <directory> <material>...   e.g. Tablebases tb KQK KRK KPK");
+            return;
+        }
+        Tablebases tablebases = new Tablebases();
+        Path directory = Path.of(args[0]);
+        if (Files.isDirectory(directory)) {
+            tablebases = load(directory);
+        }
+        for (int i = 1; i < args.length; i++) {
+            long start = System.nanoTime();
+            Tablebase table = tablebases.generate(args[i]);
+            System.out.printf("%s: longest mate %d plies, %.1f s%n", table.material(), table.maxPlies(),
+                    (System.nanoTime() - start) / 1e9);
+        }
+        tablebases.write(directory);
+    }
+}
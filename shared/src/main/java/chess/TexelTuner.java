@@ -0,0 +1,342 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * Fits the tables of an {@link Evaluation} to game results (Texel's method).
+ * <p>
+ * Every quiet position of every decided game is labelled with the game's result, and
+ * the tables are adjusted to minimise the mean squared difference between the results
+ * and the evaluation's predicted score, {@code 1 / (1 + 10^(-k * eval / 400))}. Games
+ * are first replayed through {@link ChessGame} so that broken games are left out, then
+ * each kept position is stored as a short list of table indexes in primitive arrays,
+ * about 60 bytes a position, so millions fit in memory. The terms outside the tables,
+ * such as pawn structure, are not tuned, so each position keeps their sum as a fixed
+ * offset to its score.
+ * <p>
+ * Each iteration computes the error and its gradient over all positions as a fork-join
+ * reduction: ranges of positions are split until small, each leaf sums into its own
+ * gradient array, and the arrays are added on the way back up. The split points depend
+ * only on the number of positions, so the result is the same whatever the parallelism.
+ * The tables are then stepped with Adam. Running {@code main} tunes from PGN files and
+ * writes a file to use as the evaluation resource:
+ * {@code java chess.TexelTuner evaluation.txt 500 games.pgn}.
+ */
+public final class TexelTuner {
+
+    /**
+     * Opening plies skipped in every game, since they mostly come from books
+     */
+    private static final int SKIP_PLIES = 8;
+    private static final int LEAF_POSITIONS = 8192;
+    private static final int TABLE = Evaluation.PARAMS / 2;
+    private static final int BLACK_ENTRY = 1 << 15;
+    private static final double LEARNING_RATE = 1.0;
+    private static final double BETA1 = 0.9;
+    private static final double BETA2 = 0.999;
+
+    private final ForkJoinPool pool;
+    private final Position position = new Position();
+    /**
+     * Per position, its pieces as middlegame table indexes, {@link #BLACK_ENTRY} set for black's
+     */
+    private short[] entries = new short[1 << 16];
+    private int[] offsets = new int[1 << 12];
+    private byte[] phases = new byte[1 << 12];
+    /**
+     * Per position, the score from the terms outside the tables
+     */
+    private float[] fixedScores = new float[1 << 12];
+    /**
+     * Per position, the game result in half points for white
+     */
+    private byte[] results = new byte[1 << 12];
+    private int size;
+    private Consumer<Iteration> iterationListener = iteration -> {
+    };
+
+    public TexelTuner() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool runs the gradient computations
+     */
+    public TexelTuner(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Progress after one step of the tables
+     *
+     * @param error the mean squared error before the step
+     */
+    public record Iteration(int number, double error) {
+    }
+
+    /**
+     * Sets the listener called after every iteration, on the thread running {@link #tune}
+     */
+    public TexelTuner onIteration(Consumer<Iteration> listener) {
+        this.iterationListener = listener;
+        return this;
+    }
+
+    /**
+     * Adds the quiet positions of a decided game: not in check, and with no capture or
+     * promotion played from them
+     *
+     * @return how many positions were added
+     */
+    public int addGame(PgnGame game) {
+        int result = switch (game.result()) {
+            case PgnGame.WHITE_WINS -> 2;
+            case PgnGame.DRAW -> 1;
+            case PgnGame.BLACK_WINS -> 0;
+            default -> -1;
+        };
+        if (result < 0 || game.error() != null) {
+            return 0;
+        }
+        try {
+            if (ChessGame.of(Fen.parse(game.startFen())).applyAll(game.moves()) >= 0) {
+                return 0;
+            }
+            Fen.load(position, game.startFen());
+        } catch (IllegalArgumentException e) {
+            return 0;
+        }
+        int added = 0;
+        for (int ply = 0; ply < game.moveCount(); ply++) {
+            int move = game.move(ply);
+            if (ply >= SKIP_PLIES && isQuiet(move)) {
+                addPosition(result);
+                added++;
+            }
+            position.make(move);
+            position.forgetMoves();
+        }
+        return added;
+    }
+
+    /**
+     * Adds the quiet positions of every decided game in a PGN file
+     *
+     * @return how many positions were added
+     */
+    public long addArchive(Path pgn) throws IOException {
+        long added = 0;
+        try (PgnReader reader = new PgnReader(FileChannel.open(pgn, StandardOpenOption.READ))) {
+            PgnGame game = new PgnGame();
+            while (reader.next(game)) {
+                added += addGame(game);
+            }
+        }
+        return added;
+    }
+
+    private boolean isQuiet(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        boolean enPassant = Position.type(position.piece(from)) == Position.PAWN && (from & 7) != (to & 7);
+        return !position.inCheck() && position.piece(to) == Position.EMPTY && !enPassant
+                && Move.promotion(move) == 0;
+    }
+
+    private void addPosition(int result) {
+        if (size + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            phases = Arrays.copyOf(phases, phases.length * 2);
+            fixedScores = Arrays.copyOf(fixedScores, fixedScores.length * 2);
+            results = Arrays.copyOf(results, results.length * 2);
+        }
+        int end = offsets[size];
+        if (end + 64 > entries.length) {
+            entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.piece(sq);
+            if (piece == Position.EMPTY) {
+                continue;
+            }
+            int type = Position.type(piece);
+            if (Position.color(piece) == Position.WHITE) {
+                entries[end++] = (short) Evaluation.index(0, type, sq);
+            } else {
+                entries[end++] = (short) (Evaluation.index(0, type, sq ^ 56) | BLACK_ENTRY);
+            }
+        }
+        phases[size] = (byte) Evaluation.phase(position);
+        fixedScores[size] = (float) Evaluation.fixedTerms(position);
+        results[size] = (byte) result;
+        offsets[++size] = end;
+    }
+
+    /**
+     * @return how many positions have been added
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the mean squared error of an evaluation's predictions with scaling constant k
+     */
+    public double error(Evaluation evaluation, double k) {
+        double[] params = toDoubles(evaluation.params());
+        return pool.invoke(new Pass(params, k, 0, size, false))[Evaluation.PARAMS] / Math.max(1, size);
+    }
+
+    /**
+     * Finds the scaling constant k that best fits an evaluation to the results, by golden-section search
+     */
+    public double fitScale(Evaluation evaluation) {
+        double[] params = toDoubles(evaluation.params());
+        double low = 0.05;
+        double high = 5;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        for (int step = 0; step < 40; step++) {
+            double a = high - ratio * (high - low);
+            double b = low + ratio * (high - low);
+            double errorA = pool.invoke(new Pass(params, a, 0, size, false))[Evaluation.PARAMS];
+            double errorB = pool.invoke(new Pass(params, b, 0, size, false))[Evaluation.PARAMS];
+            if (errorA < errorB) {
+                high = b;
+            } else {
+                low = a;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Tunes the tables, starting from an evaluation, with k fitted to the starting tables
+     *
+     * @return the tuned evaluation, with the tables rounded to whole centipawns
+     */
+    public Evaluation tune(Evaluation start, int iterations) {
+        if (size == 0) {
+            throw new IllegalStateException("No positions to tune on");
+        }
+        double k = fitScale(start);
+        double[] params = toDoubles(start.params());
+        double[] m = new double[Evaluation.PARAMS];
+        double[] v = new double[Evaluation.PARAMS];
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            double[] gradient = pool.invoke(new Pass(params, k, 0, size, true));
+            double correction1 = 1 - Math.pow(BETA1, iteration);
+            double correction2 = 1 - Math.pow(BETA2, iteration);
+            for (int i = 0; i < Evaluation.PARAMS; i++) {
+                double g = gradient[i] / size;
+                m[i] = BETA1 * m[i] + (1 - BETA1) * g;
+                v[i] = BETA2 * v[i] + (1 - BETA2) * g * g;
+                params[i] -= LEARNING_RATE * (m[i] / correction1) / (Math.sqrt(v[i] / correction2) + 1e-8);
+            }
+            iterationListener.accept(new Iteration(iteration, gradient[Evaluation.PARAMS] / size));
+        }
+        int[] tuned = new int[Evaluation.PARAMS];
+        for (int i = 0; i < tuned.length; i++) {
+            tuned[i] = (int) Math.round(params[i]);
+        }
+        return new Evaluation(tuned);
+    }
+
+    private static double[] toDoubles(int[] values) {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+
+    /**
+     * Sums the squared error, and optionally its gradient, over a range of positions.
+     * The result holds the gradient by parameter, then the error.
+     */
+    private final class Pass extends RecursiveTask<double[]> {
+        private final double[] params;
+        private final double k;
+        private final int from;
+        private final int to;
+        private final boolean gradient;
+
+        Pass(double[] params, double k, int from, int to, boolean gradient) {
+            this.params = params;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+            this.gradient = gradient;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > LEAF_POSITIONS) {
+                int mid = (from + to) >>> 1;
+                Pass right = new Pass(params, k, mid, to, gradient);
+                right.fork();
+                double[] sum = new Pass(params, k, from, mid, gradient).compute();
+                double[] other = right.join();
+                for (int i = 0; i < sum.length; i++) {
+                    sum[i] += other[i];
+                }
+                return sum;
+            }
+
+            double[] sum = new double[Evaluation.PARAMS + 1];
+            double slope = k * Math.log(10) / 400;
+            for (int p = from; p < to; p++) {
+                double phase = phases[p] / (double) Evaluation.MAX_PHASE;
+                double middlegame = 0;
+                double endgame = 0;
+                for (int e = offsets[p]; e < offsets[p + 1]; e++) {
+                    int entry = entries[e] & 0xFFFF;
+                    int index = entry & (BLACK_ENTRY - 1);
+                    double sign = entry >= BLACK_ENTRY ? -1 : 1;
+                    middlegame += sign * params[index];
+                    endgame += sign * params[index + TABLE];
+                }
+                double score = middlegame * phase + endgame * (1 - phase) + fixedScores[p];
+                double predicted = 1 / (1 + Math.exp(-slope * score));
+                double difference = results[p] / 2.0 - predicted;
+                sum[Evaluation.PARAMS] += difference * difference;
+                if (gradient) {
+                    double scoreGradient = -2 * difference * predicted * (1 - predicted) * slope;
+                    for (int e = offsets[p]; e < offsets[p + 1]; e++) {
+                        int entry = entries[e] & 0xFFFF;
+                        int index = entry & (BLACK_ENTRY - 1);
+                        double signed = entry >= BLACK_ENTRY ? -scoreGradient : scoreGradient;
+                        sum[index] += signed * phase;
+                        sum[index + TABLE] += signed * (1 - phase);
+                    }
+                }
+            }
+            return sum;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: TexelTuner <output file> <iterations> <pgn file>...");
+            return;
+        }
+        TexelTuner tuner = new TexelTuner().onIteration(iteration -> {
+            if (iteration.number() % 10 == 0) {
+                System.out.printf("iteration %d: error %.6f%n", iteration.number(), iteration.error());
+            }
+        });
+        for (int i = 2; i < args.length; i++) {
+            System.out.printf("%s: %d positions%n", args[i], tuner.addArchive(Path.of(args[i])));
+        }
+        long start = System.nanoTime();
+        Evaluation tuned = tuner.tune(Evaluation.standard(), Integer.parseInt(args[1]));
+        tuned.write(Path.of(args[0]));
+        System.out.printf("Tuned %d positions in %.1f s%n", tuner.size(), (System.nanoTime() - start) / 1e9);
+    }
+}
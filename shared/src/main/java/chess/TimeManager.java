@@ -0,0 +1,55 @@
+package chess;
+
+/**
+ * Budgets the time for one move from what is left on the clock.
+ * <p>
+ * The soft limit is the move's share of the remaining time plus most of the increment;
+ * a search should not start another depth after it. The hard limit is a few times the
+ * soft one, for finishing a depth already started, but never more than a fraction of
+ * the clock, so a single move cannot lose on time. Both keep back a small overhead for
+ * communication delays.
+ */
+public final class TimeManager {
+
+    /**
+     * Moves assumed to be left in the game when the time control does not say
+     */
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final int HARD_FACTOR = 3;
+    /**
+     * The most of the clock one move may take, unless it is the last before the time control
+     */
+    private static final int MAX_CLOCK_FRACTION = 3;
+
+    private long overheadMillis = 20;
+
+    /**
+     * Sets the time kept back from every move for communication delays
+     */
+    public TimeManager overhead(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Overhead cannot be negative");
+        }
+        this.overheadMillis = millis;
+        return this;
+    }
+
+    /**
+     * @param remainingMillis the time left on the mover's clock
+     * @param incrementMillis the time added after each move
+     * @param movesToGo       the moves until the next time control, or 0 if the rest of the game must fit
+     * @return time limits, soft and hard, for the next move
+     */
+    public Engine.Limits allocate(long remainingMillis, long incrementMillis, int movesToGo) {
+        if (remainingMillis < 0 || incrementMillis < 0 || movesToGo < 0) {
+            throw new IllegalArgumentException("Clock values cannot be negative");
+        }
+        long usable = Math.max(1, remainingMillis - overheadMillis);
+        long moves = movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO;
+        long soft = usable / moves + incrementMillis * 3 / 4;
+        long maxHard = movesToGo == 1 ? usable : Math.max(1, usable / MAX_CLOCK_FRACTION);
+        long hard = Math.min(soft * HARD_FACTOR, maxHard);
+        soft = Math.min(soft, hard);
+        return new Engine.Limits(0, 0, Math.max(1, hard), Math.max(1, soft));
+    }
+}
@@ -0,0 +1,340 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Plays one engine against another over many games to tell whether a change made it
+ * stronger.
+ * <p>
+ * Each opening is played twice, once with each engine as white, so neither side is
+ * favoured by the openings. Games run in parallel, one per worker thread, and every
+ * worker makes its own pair of engines from the suppliers. {@link ChessGame} decides
+ * when a game is over: checkmate, stalemate, threefold repetition or the fifty move
+ * rule, and games that run past a ply limit are drawn.
+ * <p>
+ * After every game the runner updates an Elo estimate for the first engine and a
+ * sequential probability ratio test of "the first engine is {@code elo1} stronger"
+ * against "it is only {@code elo0} stronger". Once the test accepts either, no more
+ * games are started, so a clear result takes far fewer games than a fixed count.
+ * Running {@code main} compares {@link MctsEngine} playout budgets from the command line:
+ * {@code java chess.Tournament openings.epd 4000 2000}.
+ */
+public final class Tournament {
+
+    private final Supplier<Engine> first;
+    private final Supplier<Engine> second;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private List<String> openings = List.of(Fen.START);
+    private Engine.Limits limits = Engine.Limits.nodes(1000);
+    private int maxGames = 1000;
+    private int maxPlies = 400;
+    private double elo0 = 0;
+    private double elo1 = 5;
+    private double alpha = 0.05;
+    private double beta = 0.05;
+    private Consumer<GameResult> gameListener = result -> {
+    };
+
+    /**
+     * @param first  makes the engine being tested
+     * @param second makes the engine it is measured against
+     */
+    public Tournament(Supplier<Engine> first, Supplier<Engine> second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    public Tournament threads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one worker thread");
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets the start positions, as FEN; each is played once with each engine as white
+     */
+    public Tournament openings(List<String> fens) {
+        if (fens.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one opening");
+        }
+        for (String fen : fens) {
+            Fen.parse(fen);
+        }
+        this.openings = List.copyOf(fens);
+        return this;
+    }
+
+    /**
+     * Reads start positions from a file of one FEN or EPD line each. Blank lines and
+     * lines starting with '#' are skipped.
+     */
+    public Tournament openings(Path file) throws IOException {
+        List<String> fens = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String fen = line.strip();
+            if (!fen.isEmpty() && !fen.startsWith("#")) {
+                fens.add(fen);
+            }
+        }
+        return openings(fens);
+    }
+
+    /**
+     * Sets the node or time control each engine gets per move
+     */
+    public Tournament limits(Engine.Limits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * Sets the most games to play if the test has not decided by then
+     */
+    public Tournament maxGames(int maxGames) {
+        this.maxGames = maxGames;
+        return this;
+    }
+
+    /**
+     * Sets how many plies a game may last before it is adjudicated a draw
+     */
+    public Tournament maxPlies(int maxPlies) {
+        this.maxPlies = maxPlies;
+        return this;
+    }
+
+    /**
+     * Sets the hypotheses and error rates of the sequential probability ratio test
+     *
+     * @param elo0  the Elo difference of the null hypothesis
+     * @param elo1  the Elo difference of the alternative hypothesis
+     * @param alpha the chance of accepting elo1 when elo0 holds
+     * @param beta  the chance of accepting elo0 when elo1 holds
+     */
+    public Tournament sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0 || alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1) {
+            throw new IllegalArgumentException("Need elo0 < elo1 and error rates between 0 and 1");
+        }
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+        return this;
+    }
+
+    /**
+     * Sets the listener called with every finished game, on the worker thread that played it
+     */
+    public Tournament onGame(Consumer<GameResult> listener) {
+        this.gameListener = listener;
+        return this;
+    }
+
+    /**
+     * How the test ended
+     */
+    public enum Decision {
+        /**
+         * The first engine is at least elo1 stronger
+         */
+        ACCEPT_ELO1,
+        /**
+         * The first engine is at most elo0 stronger
+         */
+        ACCEPT_ELO0,
+        /**
+         * The game limit was reached before the test decided
+         */
+        INCONCLUSIVE
+    }
+
+    /**
+     * One finished game
+     *
+     * @param firstIsWhite whether the first engine had the white pieces
+     * @param score        the first engine's score: 1, 0.5 or 0
+     * @param status       how the game ended, or {@link ChessGame.GameStatus#IN_PROGRESS} if it hit the ply limit
+     */
+    public record GameResult(int index, String opening, boolean firstIsWhite, double score,
+                             ChessGame.GameStatus status, int plies) {
+    }
+
+    /**
+     * The running totals, from the first engine's point of view
+     *
+     * @param elo      the estimated Elo difference
+     * @param eloError the half width of its 95% confidence interval
+     * @param llr      the log likelihood ratio of the test
+     */
+    public record Standings(int wins, int draws, int losses, double elo, double eloError, double llr,
+                            Decision decision) {
+        public int games() {
+            return wins + draws + losses;
+        }
+    }
+
+    /**
+     * Plays games until the test decides or the game limit is reached
+     */
+    public Standings run() {
+        Run run = new Run();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(run::work, "tournament-worker-" + i);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+        try {
+            for (Thread thread : workers) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            run.stopped = true;
+            Thread.currentThread().interrupt();
+        }
+        if (run.failure != null) {
+            throw new IllegalStateException("Tournament game failed", run.failure);
+        }
+        return run.standings();
+    }
+
+    private final class Run {
+        private final AtomicInteger nextGame = new AtomicInteger();
+        private volatile boolean stopped;
+        private volatile Throwable failure;
+        private int wins;
+        private int draws;
+        private int losses;
+        private Decision decision = Decision.INCONCLUSIVE;
+
+        void work() {
+            try {
+                Engine firstEngine = first.get();
+                Engine secondEngine = second.get();
+                int index;
+                while (!stopped && (index = nextGame.getAndIncrement()) < maxGames) {
+                    String opening = openings.get(index / 2 % openings.size());
+                    boolean firstIsWhite = index % 2 == 0;
+                    GameResult result = play(index, opening, firstIsWhite, firstEngine, secondEngine);
+                    record(result);
+                    gameListener.accept(result);
+                }
+            } catch (Throwable e) {
+                failure = e;
+                stopped = true;
+            }
+        }
+
+        private GameResult play(int index, String opening, boolean firstIsWhite, Engine firstEngine,
+                                Engine secondEngine) throws InvalidMoveException {
+            ChessGame game = ChessGame.of(Fen.parse(opening));
+            int plies = 0;
+            ChessGame.GameStatus status;
+            while ((status = game.getGameStatus()) == ChessGame.GameStatus.IN_PROGRESS && plies < maxPlies) {
+                boolean firstToMove = (game.getTeamTurn() == ChessGame.TeamColor.WHITE) == firstIsWhite;
+                ChessMove move = (firstToMove ? firstEngine : secondEngine).bestMove(game, limits);
+                game.makeMove(move);
+                plies++;
+            }
+            double score = 0.5;
+            if (status == ChessGame.GameStatus.CHECKMATE) {
+                boolean whiteWon = game.getTeamTurn() == ChessGame.TeamColor.BLACK;
+                score = whiteWon == firstIsWhite ? 1 : 0;
+            }
+            return new GameResult(index, opening, firstIsWhite, score, status, plies);
+        }
+
+        private synchronized void record(GameResult result) {
+            if (result.score() == 1) {
+                wins++;
+            } else if (result.score() == 0) {
+                losses++;
+            } else {
+                draws++;
+            }
+            if (decision == Decision.INCONCLUSIVE) {
+                double llr = llr(wins, draws, losses, elo0, elo1);
+                if (llr >= Math.log((1 - beta) / alpha)) {
+                    decision = Decision.ACCEPT_ELO1;
+                    stopped = true;
+                } else if (llr <= Math.log(beta / (1 - alpha))) {
+                    decision = Decision.ACCEPT_ELO0;
+                    stopped = true;
+                }
+            }
+        }
+
+        synchronized Standings standings() {
+            int games = wins + draws + losses;
+            double score = games == 0 ? 0.5 : (wins + 0.5 * draws) / games;
+            double deviation = games == 0 ? 0 : Math.sqrt((wins * Math.pow(1 - score, 2)
+                    + draws * Math.pow(0.5 - score, 2) + losses * Math.pow(score, 2)) / games / games);
+            double eloError = (elo(score + 1.96 * deviation) - elo(score - 1.96 * deviation)) / 2;
+            return new Standings(wins, draws, losses, elo(score), eloError,
+                    llr(wins, draws, losses, elo0, elo1), decision);
+        }
+    }
+
+    /**
+     * @return the Elo difference that gives an expected score, clamped away from 0 and 1
+     */
+    static double elo(double score) {
+        double clamped = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+
+    /**
+     * The log likelihood ratio of elo1 against elo0 for a win, draw and loss count, using
+     * the normal approximation to the trinomial distribution of game scores
+     */
+    static double llr(int wins, int draws, int losses, double elo0, double elo1) {
+        if (wins + draws + losses == 0) {
+            return 0;
+        }
+        double games = wins + draws + losses;
+        double score = (wins + 0.5 * draws) / games;
+        double variance = (wins + 0.25 * draws) / games - score * score;
+        if (variance <= 0) {
+            return 0;
+        }
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return (s1 - s0) * (2 * score - s0 - s1) / (2 * variance / games);
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: Tournament <openings file> <first playouts> <second playouts> [max games]");
+            return;
+        }
+        int firstPlayouts = Integer.parseInt(args[1]);
+        int secondPlayouts = Integer.parseInt(args[2]);
+        // The second engine ignores the tournament's limits and keeps to its own budget
+        Tournament tournament = new Tournament(() -> new MctsEngine(1, 1 << 18), () -> {
+            MctsEngine engine = new MctsEngine(1, 1 << 18);
+            return (game, limits) -> engine.bestMove(game, secondPlayouts);
+        })
+                .openings(Path.of(args[0]))
+                .limits(Engine.Limits.nodes(firstPlayouts))
+                .maxGames(args.length > 3 ? Integer.parseInt(args[3]) : 10_000);
+        Standings standings = tournament.run();
+        System.out.printf("%d games: +%d =%d -%d, Elo %.1f +/- %.1f, LLR %.2f, %s%n", standings.games(),
+                standings.wins(), standings.draws(), standings.losses(), standings.elo(), standings.eloError(),
+                standings.llr(), standings.decision());
+    }
+}
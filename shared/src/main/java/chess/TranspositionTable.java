@@ -0,0 +1,144 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results, shared by every thread of a {@link Search}.
+ * <p>
+ * Each slot is two longs: the entry's data, and the position key XORed with that data.
+ * Threads read and write slots without locks; a slot torn by two writers no longer
+ * passes the key check on the next read, so it is simply a miss. Entries are stored
+ * under {@link Position#canonicalKey()}, so a position and its color-flipped twin share
+ * a slot, with the move kept as it is played in the canonical one.
+ * <p>
+ * The data packs the move (16 bits), the score (16), the depth (8), the bound (2) and
+ * the search generation (8). A new entry replaces an old one unless the old one is from
+ * the current search, for a different position, and deeper.
+ */
+public final class TranspositionTable {
+
+    public static final int NONE = 0;
+    /**
+     * The score is exact
+     */
+    public static final int EXACT = 1;
+    /**
+     * The score is a lower bound: the search failed high
+     */
+    public static final int LOWER = 2;
+    /**
+     * The score is an upper bound: the search failed low
+     */
+    public static final int UPPER = 3;
+
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+
+    private final long[] slots;
+    private final int mask;
+    private int generation;
+
+    /**
+     * @param megabytes the memory to use, rounded down to a power of two number of slots
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1) {
+            throw new IllegalArgumentException("Table needs at least 1 MB");
+        }
+        long count = Long.highestOneBit((long) megabytes * 1024 * 1024 / SLOT_BYTES);
+        count = Math.min(count, 1 << 29);
+        this.slots = new long[(int) count * 2];
+        this.mask = (int) count - 1;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are replaced first
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+        generation = 0;
+    }
+
+    /**
+     * @return the packed entry for a position, or 0 if there is none; read it with the static accessors
+     */
+    public long probe(Position position) {
+        long key = position.canonicalKey();
+        int slot = index(key);
+        long data = slots[slot + 1];
+        if (data == 0 || (slots[slot] ^ data) != key) {
+            return 0;
+        }
+        if (position.isCanonicalFlipped() && move(data) != Move.NONE) {
+            data = data & ~0xFFFFL | Move.flip(move(data));
+        }
+        return data;
+    }
+
+    /**
+     * Stores a search result for a position
+     *
+     * @param move  the best move found, or {@link Move#NONE}
+     * @param score the score, with mate scores relative to this position
+     * @param bound one of {@link #EXACT}, {@link #LOWER} and {@link #UPPER}
+     */
+    public void store(Position position, int move, int score, int depth, int bound) {
+        long key = position.canonicalKey();
+        int slot = index(key);
+        long old = slots[slot + 1];
+        if (old != 0 && generation(old) == generation && (slots[slot] ^ old) != key && depth(old) > depth) {
+            return;
+        }
+        if (move == Move.NONE && (slots[slot] ^ old) == key) {
+            move = move(old);
+        } else if (position.isCanonicalFlipped() && move != Move.NONE) {
+            move = Move.flip(move);
+        }
+        long data = (move & 0xFFFFL) | (score & 0xFFFFL) << 16 | (long) (depth & 0xFF) << 32
+                | (long) bound << 40 | (long) generation << 42;
+        slots[slot] = key ^ data;
+        slots[slot + 1] = data;
+    }
+
+    /**
+     * @return roughly how full the table is with entries from the current search, in permille
+     */
+    public int hashfull() {
+        int sample = Math.min(1000, mask + 1);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            long data = slots[2 * i + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    private int index(long key) {
+        return (int) (key ^ key >>> 32) & mask << 1;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> 16);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 32 & 0xFF);
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 40 & 3);
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 42 & 0xFF);
+    }
+}
@@ -0,0 +1,332 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drives a {@link Search} with the Universal Chess Interface, so standard chess GUIs
+ * and match tools can play and benchmark the engine: {@code java chess.Uci}.
+ * <p>
+ * Commands are read on the calling thread and each {@code go} runs on its own search
+ * thread, so reading never waits for a search. {@code stop} sets the running search's
+ * stop flag straight from the reading thread, and {@code isready} is answered at once,
+ * even mid-search. Clock times are budgeted by a {@link TimeManager}.
+ * <p>
+ * Supported commands: {@code uci}, {@code isready}, {@code ucinewgame},
+ * {@code setoption name Hash|Threads|MultiPV|Move Overhead value n},
+ * {@code setoption name UseNNUE value true|false},
+ * {@code position startpos|fen ... [moves ...]},
+ * {@code go [depth n] [nodes n] [movetime ms] [wtime ms btime ms winc ms binc ms movestogo n] [infinite]},
+ * {@code stop} and {@code quit}.
+ */
+public final class Uci {
+
+    private static final int DEFAULT_HASH_MB = 16;
+    private static final int MAX_HASH_MB = 65536;
+    private static final int MAX_THREADS = 256;
+    private static final int MAX_MULTI_PV = 64;
+    private static final int DEFAULT_OVERHEAD_MILLIS = 20;
+    private static final int MAX_OVERHEAD_MILLIS = 5000;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private int hashMegabytes = DEFAULT_HASH_MB;
+    private int threads = 1;
+    private int multiPv = 1;
+    private boolean useNetwork;
+    private final TimeManager timeManager = new TimeManager().overhead(DEFAULT_OVERHEAD_MILLIS);
+    private Search search;
+    private Position position = Fen.parse(Fen.START);
+    private Thread searcher;
+    private AtomicBoolean stop;
+    private boolean infinite;
+
+    public Uci(InputStream in, OutputStream out) {
+        this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.out = new PrintStream(out, false, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles commands until {@code quit} or the end of input. At the end of input a
+     * running search is allowed to finish, unless it is infinite.
+     */
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handle(line.strip())) {
+                finishSearch(true);
+                return;
+            }
+        }
+        finishSearch(infinite);
+    }
+
+    /**
+     * @return false once the command is {@code quit}
+     */
+    boolean handle(String line) {
+        List<String> tokens = Arrays.asList(line.split("\\s+"));
+        switch (tokens.get(0)) {
+            case "uci" -> {
+                send("id name 240 Chess");
+                send("id author CS 240");
+                send("option name Hash type spin default " + DEFAULT_HASH_MB + " min 1 max " + MAX_HASH_MB);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("option name UseNNUE type check default false");
+                send("option name MultiPV type spin default 1 min 1 max " + MAX_MULTI_PV);
+                send("option name Move Overhead type spin default " + DEFAULT_OVERHEAD_MILLIS
+                        + " min 0 max " + MAX_OVERHEAD_MILLIS);
+                send("uciok");
+            }
+            case "isready" -> send("readyok");
+            case "ucinewgame" -> {
+                finishSearch(true);
+                if (search != null) {
+                    search.table().clear();
+                }
+            }
+            case "setoption" -> {
+                finishSearch(true);
+                setOption(tokens);
+            }
+            case "position" -> {
+                finishSearch(true);
+                setPosition(tokens);
+            }
+            case "go" -> {
+                finishSearch(true);
+                go(tokens);
+            }
+            case "stop" -> {
+                if (stop != null) {
+                    stop.set(true);
+                }
+            }
+            case "quit" -> {
+                return false;
+            }
+            default -> {
+                if (!line.isEmpty()) {
+                    send("info string unknown command " + line);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void setOption(List<String> tokens) {
+        int name = tokens.indexOf("name");
+        int value = tokens.indexOf("value");
+        if (name < 0 || value < 0 || value + 1 >= tokens.size()) {
+            send("info string usage: setoption name <id> value <x>");
+            return;
+        }
+        String id = String.join(" ", tokens.subList(name + 1, value));
+        if (id.equalsIgnoreCase("UseNNUE")) {
+            useNetwork = Boolean.parseBoolean(tokens.get(value + 1));
+            if (search != null) {
+                search.network(useNetwork ? Network.standard() : null);
+            }
+            return;
+        }
+        try {
+            int number = Integer.parseInt(tokens.get(value + 1));
+            if (id.equalsIgnoreCase("Hash")) {
+                hashMegabytes = Math.max(1, Math.min(MAX_HASH_MB, number));
+                search = null;
+            } else if (id.equalsIgnoreCase("Threads")) {
+                threads = Math.max(1, Math.min(MAX_THREADS, number));
+                search = null;
+            } else if (id.equalsIgnoreCase("MultiPV")) {
+                multiPv = Math.max(1, Math.min(MAX_MULTI_PV, number));
+                if (search != null) {
+                    search.multiPv(multiPv);
+                }
+            } else if (id.equalsIgnoreCase("Move Overhead")) {
+                timeManager.overhead(Math.max(0, Math.min(MAX_OVERHEAD_MILLIS, number)));
+            } else {
+                send("info string unknown option " + id);
+            }
+        } catch (NumberFormatException e) {
+            send("info string bad value for " + id);
+        }
+    }
+
+    private void setPosition(List<String> tokens) {
+        int moves = tokens.indexOf("moves");
+        int end = moves < 0 ? tokens.size() : moves;
+        Position next;
+        try {
+            if (tokens.size() > 1 && tokens.get(1).equals("startpos")) {
+                next = Fen.parse(Fen.START);
+            } else if (tokens.size() > 2 && tokens.get(1).equals("fen")) {
+                next = Fen.parse(String.join(" ", tokens.subList(2, end)));
+            } else {
+                send("info string usage: position startpos|fen <fen> [moves ...]");
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+            return;
+        }
+        for (int i = end + 1; i < tokens.size(); i++) {
+            int move;
+            try {
+                move = Move.parse(tokens.get(i));
+            } catch (IllegalArgumentException e) {
+                move = Move.NONE;
+            }
+            if (move == Move.NONE || !next.tryMake(move)) {
+                send("info string illegal move " + tokens.get(i));
+                break;
+            }
+            // Earlier positions cannot repeat after an irreversible move, so the undo stack can start over
+            if (next.halfmoveClock() == 0) {
+                next.forgetMoves();
+            }
+        }
+        position = next;
+    }
+
+    private void go(List<String> tokens) {
+        int depth = 0;
+        long nodes = 0;
+        long movetime = 0;
+        long time = 0;
+        long increment = 0;
+        int movesToGo = 0;
+        boolean white = position.sideToMove() == Position.WHITE;
+        boolean infiniteSearch = false;
+        try {
+            for (int i = 1; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                if (token.equals("infinite")) {
+                    infiniteSearch = true;
+                    continue;
+                }
+                if (i + 1 >= tokens.size()) {
+                    break;
+                }
+                long value = Long.parseLong(tokens.get(i + 1));
+                switch (token) {
+                    case "depth" -> depth = (int) Math.min(value, Search.MAX_DEPTH);
+                    case "nodes" -> nodes = value;
+                    case "movetime" -> movetime = value;
+                    case "wtime" -> time = white ? value : time;
+                    case "btime" -> time = white ? time : value;
+                    case "winc" -> increment = white ? value : increment;
+                    case "binc" -> increment = white ? increment : value;
+                    case "movestogo" -> movesToGo = (int) value;
+                    default -> {
+                        continue;
+                    }
+                }
+                i++;
+            }
+        } catch (NumberFormatException e) {
+            send("info string bad go command");
+            return;
+        }
+        long softMillis = 0;
+        if (movetime == 0 && time > 0 && !infiniteSearch) {
+            Engine.Limits clock = timeManager.allocate(time, increment, movesToGo);
+            movetime = clock.millis();
+            softMillis = clock.softMillis();
+        }
+        if (infiniteSearch || (depth == 0 && nodes == 0 && movetime == 0)) {
+            depth = Search.MAX_DEPTH;
+        }
+        Engine.Limits limits = new Engine.Limits(depth, nodes, movetime, softMillis);
+
+        if (search == null) {
+            search = new Search(new TranspositionTable(hashMegabytes), Evaluation.standard())
+                    .threads(threads)
+                    .multiPv(multiPv)
+                    .network(useNetwork ? Network.standard() : null)
+                    .onInfo(info -> send(infoLine(info)));
+        }
+        Search running = search;
+        Position root = position.copy();
+        AtomicBoolean flag = new AtomicBoolean();
+        boolean waitForStop = infiniteSearch;
+        stop = flag;
+        infinite = infiniteSearch;
+        searcher = new Thread(() -> {
+            Search.Info result = running.search(root, limits, flag);
+            // In infinite mode the best move may only be sent after a stop
+            while (waitForStop && !flag.get()) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            StringBuilder reply = new StringBuilder("bestmove ");
+            reply.append(result.bestMove() == Move.NONE ? "0000" : Move.toString(result.bestMove()));
+            if (result.pv().length > 1) {
+                reply.append(" ponder ").append(Move.toString(result.pv()[1]));
+            }
+            send(reply.toString());
+        }, "uci-search");
+        searcher.start();
+    }
+
+    /**
+     * Waits for the running search, if any, to send its best move
+     *
+     * @param stopFirst whether to stop the search rather than let it reach its limits
+     */
+    private void finishSearch(boolean stopFirst) {
+        if (searcher == null) {
+            return;
+        }
+        if (stopFirst) {
+            stop.set(true);
+        }
+        try {
+            searcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searcher = null;
+        stop = null;
+    }
+
+    static String infoLine(Search.Info info) {
+        StringBuilder line = new StringBuilder("info depth ").append(info.depth())
+                .append(" multipv ").append(info.multiPv()).append(" score ");
+        if (info.isMate()) {
+            line.append("mate ").append(info.mateIn());
+        } else {
+            line.append("cp ").append(info.score());
+        }
+        line.append(" nodes ").append(info.nodes())
+                .append(" nps ").append(info.nps())
+                .append(" hashfull ").append(info.hashfull())
+                .append(" time ").append(info.nanos() / 1_000_000)
+                .append(" pv");
+        for (int move : info.pv()) {
+            line.append(' ').append(Move.toString(move));
+        }
+        return line.toString();
+    }
+
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        new Uci(System.in, System.out).run();
+    }
+}
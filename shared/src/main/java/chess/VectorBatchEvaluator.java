@@ -0,0 +1,46 @@
+package chess;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link BatchEvaluator} terms computed for a whole vector of boards at a time.
+ * Only loaded by {@link BatchEvaluator#create()} when the incubator module is present.
+ */
+final class VectorBatchEvaluator extends BatchEvaluator {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private final long[] lanes = new long[SPECIES.length()];
+
+    VectorBatchEvaluator() {
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public void evaluate(BoardBatch batch, int[] scores) {
+        int size = batch.size();
+        int bound = SPECIES.loopBound(size);
+        for (int board = 0; board < bound; board += SPECIES.length()) {
+            LongVector score = LongVector.zero(SPECIES);
+            for (int column = 0; column < BoardBatch.COLUMNS; column++) {
+                LongVector bitboards = LongVector.fromArray(SPECIES, batch.columnArray(column), board);
+                long[] masks = MASKS[column];
+                long[] weights = WEIGHTS[column];
+                for (int t = 0; t < masks.length; t++) {
+                    score = score.add(bitboards.and(masks[t]).lanewise(VectorOperators.BIT_COUNT).mul(weights[t]));
+                }
+            }
+            score.intoArray(lanes, 0);
+            for (int lane = 0; lane < lanes.length; lane++) {
+                scores[board + lane] = (int) lanes[lane];
+            }
+        }
+        evaluateRange(batch, scores, bound, size);
+    }
+}
@@ -0,0 +1,64 @@
+package chess;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link NetworkKernel} loops a whole vector of int16 lanes at a time; the dot
+ * product widens each half to int32 lanes before multiplying. Only loaded by
+ * {@link NetworkKernel#create()} when the incubator module is present.
+ */
+final class VectorNetworkKernel extends NetworkKernel {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    VectorNetworkKernel() {
+    }
+
+    @Override
+    boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    void add(short[] values, int at, short[] weights, int from, int length) {
+        int bound = SPECIES.loopBound(length);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, values, at + i)
+                    .add(ShortVector.fromArray(SPECIES, weights, from + i))
+                    .intoArray(values, at + i);
+        }
+        super.add(values, at + bound, weights, from + bound, length - bound);
+    }
+
+    @Override
+    void subtract(short[] values, int at, short[] weights, int from, int length) {
+        int bound = SPECIES.loopBound(length);
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            ShortVector.fromArray(SPECIES, values, at + i)
+                    .sub(ShortVector.fromArray(SPECIES, weights, from + i))
+                    .intoArray(values, at + i);
+        }
+        super.subtract(values, at + bound, weights, from + bound, length - bound);
+    }
+
+    @Override
+    int clampedDot(short[] values, int at, short[] weights, int from, int length, int max) {
+        int bound = SPECIES.loopBound(length);
+        IntVector sum = null;
+        for (int i = 0; i < bound; i += SPECIES.length()) {
+            ShortVector clamped = ShortVector.fromArray(SPECIES, values, at + i)
+                    .max((short) 0).min((short) max);
+            ShortVector weight = ShortVector.fromArray(SPECIES, weights, from + i);
+            for (int part = 0; part < 2; part++) {
+                IntVector product = ((IntVector) clamped.convert(VectorOperators.S2I, part))
+                        .mul((IntVector) weight.convert(VectorOperators.S2I, part));
+                sum = sum == null ? product : sum.add(product);
+            }
+        }
+        int total = sum == null ? 0 : sum.reduceLanes(VectorOperators.ADD);
+        return total + super.clampedDot(values, at + bound, weights, from + bound, length - bound, max);
+    }
+}
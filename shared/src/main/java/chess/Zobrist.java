@@ -0,0 +1,103 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of one key per piece
+ * on its square, plus keys for the side to move, the castling rights and the
+ * en passant file, so a move only has to XOR in what changed.
+ * <p>
+ * The keys come from a fixed seed, so they are the same in every run and on
+ * every machine and can be stored on disk.
+ * <p>
+ * Alongside each key a position can keep the key of its color-flipped twin: the board
+ * mirrored top to bottom, white and black swapped, and the other side to move. The two
+ * play out identically, so the smaller of the two keys is a canonical key that caches
+ * can share between them. The flipped key is built from the same random keys, looked up
+ * through {@link #FLIPPED_PIECES} and {@link #FLIPPED_CASTLING}.
+ * <p>
+ * A pawn key hashes only the pawns, with the same keys as the full key, so that
+ * evaluation terms that depend only on the pawns can be cached by it; see {@link PawnTable}.
+ */
+public final class Zobrist {
+
+    /**
+     * Indexed by {@link Position} piece code and square
+     */
+    static final long[][] PIECES = new long[16][64];
+    static final long BLACK_TO_MOVE;
+    static final long[] CASTLING = new long[16];
+    static final long[] EN_PASSANT = new long[8];
+    /**
+     * The key a piece contributes to the flipped position: the other color's piece on the mirrored square
+     */
+    static final long[][] FLIPPED_PIECES = new long[16][64];
+    static final long[] FLIPPED_CASTLING = new long[16];
+    /**
+     * The key a piece contributes to the pawn key: its usual key for a pawn, otherwise 0
+     */
+    static final long[][] PAWNS = new long[16][64];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x240C4E55L);
+        for (int piece = 0; piece < 16; piece++) {
+            int type = Position.type(piece);
+            if (type >= Position.PAWN && type <= Position.KING) {
+                for (int sq = 0; sq < 64; sq++) {
+                    PIECES[piece][sq] = random.nextLong();
+                }
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+        long[] rights = new long[4];
+        for (int i = 0; i < 4; i++) {
+            rights[i] = random.nextLong();
+        }
+        for (int mask = 0; mask < 16; mask++) {
+            for (int i = 0; i < 4; i++) {
+                if ((mask & 1 << i) != 0) {
+                    CASTLING[mask] ^= rights[i];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT[file] = random.nextLong();
+        }
+        for (int piece = 0; piece < 16; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                FLIPPED_PIECES[piece][sq] = PIECES[piece ^ Position.BLACK][sq ^ 56];
+            }
+        }
+        for (int mask = 0; mask < 16; mask++) {
+            FLIPPED_CASTLING[mask] = CASTLING[flipCastling(mask)];
+        }
+        PAWNS[Position.PAWN] = PIECES[Position.PAWN];
+        PAWNS[Position.PAWN | Position.BLACK] = PIECES[Position.PAWN | Position.BLACK];
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int piece, int square) {
+        return PIECES[piece][square];
+    }
+
+    static long piece(ChessPiece piece, ChessPosition position) {
+        return piece == null ? 0 : PIECES[Position.piece(piece)][Move.square(position)];
+    }
+
+    static long pawn(ChessPiece piece, ChessPosition position) {
+        return piece == null ? 0 : PAWNS[Position.piece(piece)][Move.square(position)];
+    }
+
+    static long flippedPiece(ChessPiece piece, ChessPosition position) {
+        return piece == null ? 0 : FLIPPED_PIECES[Position.piece(piece)][Move.square(position)];
+    }
+
+    /**
+     * @return castling rights with white's and black's swapped
+     */
+    static int flipCastling(int castling) {
+        return (castling & 3) << 2 | castling >> 2 & 3;
+    }
+}
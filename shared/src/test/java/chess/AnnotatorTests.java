@@ -0,0 +1,49 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class AnnotatorTests {
+
+    @Test
+    @DisplayName("Flags The Move That Allows Mate")
+    public void flagsBlunder() throws IOException {
+        PgnGame game = new PgnGame();
+        new PgnReader(new ByteArrayInputStream("1. f3 e5 2. g4 Qh4# 0-1\n".getBytes(StandardCharsets.UTF_8)))
+                .next(game);
+        List<Annotator.Annotation> annotations = new Annotator().limits(Engine.Limits.depth(4)).annotate(game);
+
+        Annotator.Annotation blunder = annotations.stream()
+                .filter(annotation -> annotation.ply() == 2).findFirst().orElseThrow();
+        Assertions.assertEquals(Move.parse("g2g4"), blunder.move());
+        Assertions.assertNotEquals(blunder.move(), blunder.bestMove());
+        Assertions.assertEquals(Annotator.Judgement.BLUNDER, blunder.judgement());
+        Assertions.assertTrue(annotations.stream().noneMatch(annotation -> annotation.ply() % 2 == 1),
+                "Black played well");
+    }
+
+    @Test
+    @DisplayName("Judges By Loss")
+    public void judgement() {
+        Assertions.assertNull(Annotator.Judgement.of(49));
+        Assertions.assertEquals(Annotator.Judgement.INACCURACY, Annotator.Judgement.of(50));
+        Assertions.assertEquals(Annotator.Judgement.MISTAKE, Annotator.Judgement.of(299));
+        Assertions.assertEquals(Annotator.Judgement.BLUNDER, Annotator.Judgement.of(300));
+    }
+
+    @Test
+    @DisplayName("Stopped Annotator Returns Nothing")
+    public void stopped() {
+        Annotator annotator = new Annotator();
+        annotator.stop();
+        Assertions.assertEquals(List.of(), annotator.annotate(PgnGame.of(Map.of(),
+                new short[]{(short) Move.parse("f2f3"), (short) Move.parse("e7e5")}, PgnGame.UNKNOWN)));
+    }
+}
@@ -0,0 +1,87 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ApplyAllTests {
+
+    @Test
+    @DisplayName("Replay Matches makeMove")
+    public void replayMatchesMakeMove() throws InvalidMoveException {
+        Random random = new Random(29);
+        int[] buffer = new int[Position.MAX_MOVES];
+        for (int gameNumber = 0; gameNumber < 10; gameNumber++) {
+            ChessGame expected = new ChessGame();
+            Position position = Position.of(expected);
+            List<ChessMove> moves = new ArrayList<>();
+            for (int ply = 0; ply < 200; ply++) {
+                int count = position.legalMoves(buffer, 0);
+                if (count == 0) {
+                    break;
+                }
+                int move = buffer[random.nextInt(count)];
+                position.make(move);
+                position.forgetMoves();
+                expected.makeMove(Move.toChessMove(move));
+                moves.add(Move.toChessMove(move));
+            }
+
+            ChessGame replayed = new ChessGame();
+            Assertions.assertEquals(-1, replayed.applyAll(moves));
+            Assertions.assertEquals(expected, replayed);
+            Assertions.assertEquals(expected.getZobristKey(), replayed.getZobristKey());
+            Assertions.assertEquals(expected.getHalfmoveClock(), replayed.getHalfmoveClock());
+            Assertions.assertEquals(expected.getGameStatus(), replayed.getGameStatus());
+        }
+    }
+
+    @Test
+    @DisplayName("Stops At First Illegal Move")
+    public void stopsAtFirstIllegalMove() {
+        short[] moves = {
+                (short) Move.of(12, 28),
+                (short) Move.of(52, 36),
+                (short) Move.of(28, 36),
+                (short) Move.of(6, 21),
+        };
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(2, game.applyAll(moves));
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        Assertions.assertNotNull(game.getBoard().getPiece(new ChessPosition(4, 5)));
+        Assertions.assertNotNull(game.getBoard().getPiece(new ChessPosition(5, 5)));
+    }
+
+    @Test
+    @DisplayName("Repetition Seen After Replay")
+    public void repetitionAfterReplay() {
+        short[] shuffle = {
+                (short) Move.of(6, 21), (short) Move.of(62, 45), (short) Move.of(21, 6), (short) Move.of(45, 62),
+                (short) Move.of(6, 21), (short) Move.of(62, 45), (short) Move.of(21, 6), (short) Move.of(45, 62),
+        };
+        ChessGame game = new ChessGame();
+        Assertions.assertEquals(-1, game.applyAll(shuffle));
+        Assertions.assertTrue(game.isThreefoldRepetition());
+    }
+
+    @Test
+    @DisplayName("Replays On A Board Without Kings")
+    public void replayWithoutKings() {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(new ChessPosition(7, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+
+        Assertions.assertEquals(14, game.validMoves(new ChessPosition(1, 1)).size());
+        short[] moves = {(short) Move.of(0, 48), (short) Move.of(55, 47), (short) Move.of(48, 55)};
+        Assertions.assertEquals(-1, game.applyAll(moves));
+        Assertions.assertEquals(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK),
+                game.getBoard().getPiece(new ChessPosition(7, 8)));
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+    }
+}
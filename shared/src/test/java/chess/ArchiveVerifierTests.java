@@ -0,0 +1,73 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ArchiveVerifierTests {
+
+    private static final String GAMES = """
+            [Event "Fool's mate"]
+
+            1. f3 e5 2. g4 Qh4# 0-1
+
+            [Event "Wrong result"]
+
+            1. f3 e5 2. g4 Qh4# 1-0
+
+            [Event "Illegal"]
+
+            1. e4 e5 2. Ke3 *
+
+            [Event "Unfinished"]
+
+            1. d4 d5 2. c4 e6 1/2-1/2
+
+            """;
+
+    @Test
+    @DisplayName("Reports Every Game In Order")
+    public void reportsInOrder() throws IOException {
+        int copies = 500;
+        String archive = GAMES.repeat(copies);
+        List<ArchiveVerifier.GameReport> reports = new ArrayList<>();
+        List<ArchiveVerifier.Progress> progress = new ArrayList<>();
+        ArchiveVerifier.Summary summary = new ArchiveVerifier(4)
+                .onGame(reports::add)
+                .onProgress(progress::add, 0)
+                .verify(new ByteArrayInputStream(archive.getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertEquals(4L * copies, summary.games());
+        Assertions.assertEquals(4 * copies, reports.size());
+        for (int i = 0; i < reports.size(); i++) {
+            ArchiveVerifier.GameReport report = reports.get(i);
+            Assertions.assertEquals(i, report.index());
+            switch (i % 4) {
+                case 0 -> Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, report.status());
+                case 1 -> Assertions.assertTrue(report.error().contains("checkmate"));
+                case 2 -> Assertions.assertTrue(report.error().contains("Ke3"));
+                default -> Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS, report.status());
+            }
+        }
+
+        Assertions.assertEquals(2L * copies, summary.invalidGames());
+        Assertions.assertEquals(copies, summary.statuses().get(ChessGame.GameStatus.CHECKMATE));
+        Assertions.assertEquals(copies, summary.results().get(PgnGame.BLACK_WINS));
+        Assertions.assertEquals(archive.length(), summary.progress().bytes());
+        Assertions.assertEquals(summary.progress(), progress.get(progress.size() - 1));
+    }
+
+    @Test
+    @DisplayName("Empty Archive")
+    public void emptyArchive() throws IOException {
+        ArchiveVerifier.Summary summary = new ArchiveVerifier(2).verify(new ByteArrayInputStream(new byte[0]));
+        Assertions.assertEquals(0, summary.games());
+        Assertions.assertEquals(0, summary.invalidGames());
+    }
+}
@@ -0,0 +1,53 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class BatchEvaluatorTests {
+
+    @Test
+    @DisplayName("Scores Material")
+    public void scoresMaterial() {
+        BoardBatch batch = new BoardBatch(1);
+        batch.add(Fen.parse(Fen.START));
+        int[] scores = new int[1];
+        BatchEvaluator.create().evaluate(batch, scores);
+        Assertions.assertEquals(0, scores[0]);
+
+        batch.clear();
+        batch.add(Fen.parse("4k3/8/8/8/8/8/8/3QK3 w - - 0 1"));
+        BatchEvaluator.scalar().evaluate(batch, scores);
+        Assertions.assertEquals(900, scores[0]);
+    }
+
+    @Test
+    @DisplayName("Vector And Scalar Agree")
+    public void vectorMatchesScalar() {
+        BatchEvaluator vector = BatchEvaluator.create();
+        Assertions.assertTrue(vector.isVectorized());
+
+        BoardBatch batch = new BoardBatch(1001);
+        Random random = new Random(36);
+        int[] moves = new int[Position.MAX_MOVES];
+        while (!batch.isFull()) {
+            Position position = Fen.parse(Fen.START);
+            for (int ply = 0; ply < 100 && !batch.isFull(); ply++) {
+                int count = position.legalMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                position.make(moves[random.nextInt(count)]);
+                position.forgetMoves();
+                batch.add(position);
+            }
+        }
+        int[] expected = new int[batch.size()];
+        int[] actual = new int[batch.size()];
+        BatchEvaluator.scalar().evaluate(batch, expected);
+        vector.evaluate(batch, actual);
+        Assertions.assertArrayEquals(expected, actual);
+    }
+}
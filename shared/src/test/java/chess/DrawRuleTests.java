@@ -0,0 +1,90 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class DrawRuleTests {
+
+    @Test
+    @DisplayName("Threefold Repetition")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertFalse(game.isThreefoldRepetition());
+            shuffleKnights(game);
+        }
+        Assertions.assertTrue(game.isThreefoldRepetition());
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Pawn Move Clears Repetition History")
+    public void pawnMoveClearsHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        game.makeMove(move(2, 1, 3, 1));
+        game.makeMove(move(7, 1, 6, 1));
+        Assertions.assertEquals(0, game.getHalfmoveClock());
+        shuffleKnights(game);
+        Assertions.assertFalse(game.isThreefoldRepetition());
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("Fifty Move Rule")
+    public void fiftyMoveRule() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int i = 0; i < 25; i++) {
+            Assertions.assertFalse(game.isFiftyMoveRule());
+            shuffleKnights(game);
+        }
+        Assertions.assertEquals(100, game.getHalfmoveClock());
+        Assertions.assertTrue(game.isFiftyMoveRule());
+    }
+
+    @Test
+    @DisplayName("Position Sees The Game's Earlier Positions")
+    public void positionSeesEarlierPositions() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(3, 6, 1, 7));
+        Position position = Position.of(game);
+        Assertions.assertFalse(position.isRepetition());
+        position.make(Move.of(move(6, 6, 8, 7)));
+        Assertions.assertTrue(position.isRepetition());
+        Assertions.assertTrue(position.copy().isRepetition());
+
+        position.forgetMoves();
+        Assertions.assertFalse(position.isRepetition());
+        game.makeMove(move(6, 6, 8, 7));
+        game.makeMove(move(2, 1, 3, 1));
+        Assertions.assertFalse(Position.of(game).isRepetition());
+    }
+
+    @Test
+    @DisplayName("Copy Keeps Repetition History")
+    public void copyKeepsHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        shuffleKnights(game);
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(3, 6, 1, 7));
+        ChessGame copy = game.copy();
+        copy.makeMove(move(6, 6, 8, 7));
+        Assertions.assertTrue(copy.isThreefoldRepetition());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+    }
+
+    private static void shuffleKnights(ChessGame game) throws InvalidMoveException {
+        game.makeMove(move(1, 7, 3, 6));
+        game.makeMove(move(8, 7, 6, 6));
+        game.makeMove(move(3, 6, 1, 7));
+        game.makeMove(move(6, 6, 8, 7));
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+}
@@ -0,0 +1,86 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class GameCodecTests {
+
+    private static final String RUY_LOPEZ = """
+            1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7 6. Re1 b5 7. Bb3 d6 8. c3 O-O
+            9. h3 Nb8 10. d4 Nbd7 11. Nbd2 Bb7 12. Bc2 Re8 13. Nf1 Bf8 14. Ng3 g6 15. Bg5 h6
+            16. Bd2 Bg7 17. a4 c5 18. d5 c4 19. b4 Nh7 20. Be3 h5 21. Qd2 Rf8 22. Ra3 Ndf6 1-0
+            """;
+
+    @Test
+    @DisplayName("Round Trips Random Games")
+    public void randomGames() {
+        GameCodec codec = new GameCodec();
+        Random random = new Random(34);
+        int[] buffer = new int[Position.MAX_MOVES];
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            Position position = Fen.parse(Fen.START);
+            short[] moves = new short[300];
+            int count = 0;
+            while (count < moves.length) {
+                int legal = position.legalMoves(buffer, 0);
+                if (legal == 0) {
+                    break;
+                }
+                moves[count] = (short) buffer[random.nextInt(legal)];
+                position.make(moves[count++]);
+                position.forgetMoves();
+            }
+            short[] played = Arrays.copyOf(moves, count);
+            for (boolean entropyCoded : new boolean[]{false, true}) {
+                byte[] encoded = codec.encode(Fen.parse(Fen.START), played, count, entropyCoded);
+                Assertions.assertArrayEquals(played, codec.decode(Fen.parse(Fen.START), encoded));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Real Game Compresses Below A Byte Per Move")
+    public void compressesRealGame() throws IOException {
+        PgnGame game = new PgnGame();
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(RUY_LOPEZ.getBytes(StandardCharsets.UTF_8)))) {
+            Assertions.assertTrue(reader.next(game));
+        }
+        GameCodec codec = new GameCodec();
+        byte[] raw = codec.encode(game, false);
+        byte[] coded = codec.encode(game, true);
+        Assertions.assertEquals(game.moveCount() + 2, raw.length);
+        Assertions.assertTrue(coded.length < raw.length);
+
+        ChessGame expected = game.toChessGame();
+        Assertions.assertEquals(expected, codec.decodeGame(Fen.START, coded));
+        Assertions.assertEquals(expected.getZobristKey(), codec.decodeGame(Fen.START, raw).getZobristKey());
+    }
+
+    @Test
+    @DisplayName("Rejects Illegal And Corrupt Input")
+    public void rejectsBadInput() {
+        GameCodec codec = new GameCodec();
+        short[] illegal = {(short) Move.of(12, 36)};
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> codec.encode(Fen.parse(Fen.START), illegal, 1, true));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> codec.decode(Fen.parse(Fen.START), new byte[]{0, 1, (byte) 200}));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> codec.decode(Fen.parse(Fen.START), new byte[]{1, 5}));
+
+        // Move counts that are negative or far longer than the data
+        Assertions.assertThrows(IllegalArgumentException.class, () -> codec.decode(Fen.parse(Fen.START),
+                new byte[]{0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08}));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> codec.decode(Fen.parse(Fen.START),
+                new byte[]{0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> codec.decode(Fen.parse(Fen.START),
+                new byte[]{1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}));
+    }
+}
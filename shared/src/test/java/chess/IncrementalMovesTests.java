@@ -0,0 +1,63 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class IncrementalMovesTests {
+
+    @Test
+    @DisplayName("Matches Full Recomputation")
+    public void matchesFullRecomputation() throws InvalidMoveException {
+        Random random = new Random(37);
+        long recomputed = 0;
+        long plies = 0;
+        for (int gameNumber = 0; gameNumber < 30; gameNumber++) {
+            ChessGame incremental = new ChessGame();
+            incremental.setIncrementalMoves(true);
+            ChessGame plain = new ChessGame();
+            for (int ply = 0; ply < 150; ply++) {
+                List<ChessMove> all = new ArrayList<>();
+                for (int sq = 0; sq < 64; sq++) {
+                    ChessPosition square = Move.position(sq);
+                    if (plain.getBoard().getPiece(square) == null) {
+                        Assertions.assertNull(incremental.validMoves(square));
+                        continue;
+                    }
+                    Assertions.assertEquals(new HashSet<>(plain.validMoves(square)),
+                            new HashSet<>(incremental.validMoves(square)), "Moves from " + square);
+                    if (plain.getBoard().getPiece(square).getTeamColor() == plain.getTeamTurn()) {
+                        all.addAll(plain.validMoves(square));
+                    }
+                }
+                if (all.isEmpty()) {
+                    break;
+                }
+                ChessMove move = all.get(random.nextInt(all.size()));
+                plain.makeMove(move);
+                incremental.makeMove(move);
+                plies++;
+            }
+            recomputed += incremental.moveTableRecomputed();
+        }
+        // Far fewer than recomputing every piece after every move
+        Assertions.assertTrue(recomputed < plies * 20, recomputed + " squares over " + plies + " plies");
+    }
+
+    @Test
+    @DisplayName("Rebuilds After Board Edits")
+    public void rebuildsAfterEdits() {
+        ChessGame game = new ChessGame();
+        game.setIncrementalMoves(true);
+        ChessPosition knight = new ChessPosition(1, 2);
+        Assertions.assertEquals(2, game.validMoves(knight).size());
+        game.getBoard().addPiece(new ChessPosition(3, 3), new ChessPiece(ChessGame.TeamColor.WHITE,
+                ChessPiece.PieceType.PAWN));
+        Assertions.assertEquals(1, game.validMoves(knight).size());
+    }
+}
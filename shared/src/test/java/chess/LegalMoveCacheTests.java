@@ -0,0 +1,110 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+
+public class LegalMoveCacheTests {
+
+    @Test
+    @DisplayName("Cached Moves Match ChessGame")
+    public void matchesChessGame() throws InvalidMoveException {
+        LegalMoveCache cache = new LegalMoveCache(1 << 20);
+        Random random = new Random(28);
+        for (int gameNumber = 0; gameNumber < 5; gameNumber++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < 80 && game.getGameStatus() == ChessGame.GameStatus.IN_PROGRESS; ply++) {
+                ChessMove chosen = null;
+                int seen = 0;
+                for (int sq = 0; sq < 64; sq++) {
+                    ChessPosition square = Move.position(sq);
+                    Collection<ChessMove> expected = game.validMoves(square);
+                    Collection<ChessMove> cached = cache.validMoves(game, square);
+                    if (expected == null) {
+                        Assertions.assertNull(cached);
+                        continue;
+                    }
+                    Assertions.assertEquals(new HashSet<>(expected), new HashSet<>(cached), "Moves differ for " + square);
+                    if (game.getBoard().getPiece(square).getTeamColor() == game.getTeamTurn()) {
+                        for (ChessMove move : expected) {
+                            if (random.nextInt(++seen) == 0) {
+                                chosen = move;
+                            }
+                        }
+                    }
+                }
+                game.makeMove(chosen);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Hits, Misses And Eviction")
+    public void hitsMissesAndEviction() throws InvalidMoveException {
+        LegalMoveCache cache = new LegalMoveCache(2, 1 << 20);
+        ChessGame game = new ChessGame();
+        ChessPosition knight = new ChessPosition(1, 7);
+
+        cache.validMoves(game, knight);
+        cache.validMoves(game, knight);
+        Assertions.assertEquals(1, cache.misses());
+        Assertions.assertEquals(1, cache.hits());
+
+        game.makeMove(new ChessMove(knight, new ChessPosition(3, 6), null));
+        cache.validMoves(game, new ChessPosition(7, 1));
+        game.makeMove(new ChessMove(new ChessPosition(7, 1), new ChessPosition(6, 1), null));
+        cache.validMoves(game, new ChessPosition(3, 6));
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.evictions());
+    }
+
+    @Test
+    @DisplayName("Color-Flipped Positions Share An Entry")
+    public void flippedPositionsShare() {
+        ChessGame game = ChessGame.of(Fen.parse("4k3/8/8/8/8/8/4P3/R3K2R w KQ - 0 1"));
+        ChessGame flipped = ChessGame.of(Fen.parse("r3k2r/4p3/8/8/8/8/8/4K3 b kq - 0 1"));
+        Assertions.assertEquals(game.getCanonicalKey(), flipped.getCanonicalKey());
+
+        LegalMoveCache cache = new LegalMoveCache(1 << 20);
+        for (ChessGame g : new ChessGame[]{game, flipped}) {
+            for (int sq = 0; sq < 64; sq++) {
+                ChessPosition square = Move.position(sq);
+                Collection<ChessMove> expected = g.validMoves(square);
+                Collection<ChessMove> cached = cache.validMoves(g, square);
+                Assertions.assertEquals(expected == null ? null : new HashSet<>(expected),
+                        cached == null ? null : new HashSet<>(cached), "Moves differ for " + square);
+            }
+        }
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(1, cache.misses());
+        Assertions.assertTrue(cache.hasValidMove(flipped, ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    @DisplayName("Boards Without Kings And Growing Past The First Slots")
+    public void kinglessBoardsAndGrowth() {
+        LegalMoveCache cache = new LegalMoveCache(300, 1L << 30);
+        int positions = 0;
+        for (int rook = 0; rook < 64 && positions < 400; rook++) {
+            for (int pawn = 8; pawn < 56 && positions < 400; pawn += 7) {
+                if (pawn == rook) {
+                    continue;
+                }
+                ChessBoard board = new ChessBoard();
+                board.addPiece(Move.position(rook), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+                board.addPiece(Move.position(pawn), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+                ChessGame game = new ChessGame();
+                game.setBoard(board);
+                Assertions.assertEquals(new HashSet<>(game.validMoves(Move.position(rook))),
+                        new HashSet<>(cache.validMoves(game, Move.position(rook))));
+                positions++;
+            }
+        }
+        Assertions.assertEquals(300, cache.size());
+        Assertions.assertEquals(100, cache.evictions());
+    }
+}
@@ -0,0 +1,54 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MateSolverTests {
+
+    private static final String LEGAL = "rn1qkbnr/ppp2p1p/3p2p1/4N3/2B1P3/2N5/PPPP1PPP/R1BbK2R w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Mate In One")
+    public void mateInOne() {
+        MateSolver.Result result = new MateSolver(1).solve(Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), 1);
+        Assertions.assertEquals(MateSolver.Outcome.MATE, result.outcome());
+        Assertions.assertEquals(1, result.mateIn());
+        Assertions.assertArrayEquals(new int[]{Move.parse("a1a8")}, result.line());
+    }
+
+    @Test
+    @DisplayName("Finds The Shortest Mate And Its Line")
+    public void shortestMate() throws InvalidMoveException {
+        MateSolver.Result result = new MateSolver(1).solve(Fen.parse(LEGAL), 4);
+        Assertions.assertEquals(MateSolver.Outcome.MATE, result.outcome());
+        Assertions.assertEquals(2, result.mateIn());
+        Assertions.assertArrayEquals(new int[]{Move.parse("c4f7"), Move.parse("e8e7"), Move.parse("c3d5")},
+                result.line());
+
+        ChessGame game = ChessGame.of(Fen.parse(LEGAL));
+        for (ChessMove move : result.moves()) {
+            game.makeMove(move);
+        }
+        Assertions.assertEquals(ChessGame.GameStatus.CHECKMATE, game.getGameStatus());
+    }
+
+    @Test
+    @DisplayName("No Mate Within The Moves")
+    public void noMate() {
+        MateSolver solver = new MateSolver(1);
+        Assertions.assertEquals(MateSolver.Outcome.NO_MATE, solver.solve(Fen.parse(LEGAL), 1).outcome());
+        // King and rook against king mates, but not that quickly
+        MateSolver.Result result = solver.solve(Fen.parse("8/8/8/8/8/4k3/8/R3K3 w - - 0 1"), 3);
+        Assertions.assertEquals(MateSolver.Outcome.NO_MATE, result.outcome());
+        Assertions.assertEquals(0, result.line().length);
+    }
+
+    @Test
+    @DisplayName("Gives Up At The Node Limit")
+    public void nodeLimit() {
+        MateSolver.Result result = new MateSolver(1).nodes(1000).solve(Fen.parse(Fen.START), 5);
+        Assertions.assertEquals(MateSolver.Outcome.UNKNOWN, result.outcome());
+        Assertions.assertTrue(result.nodes() <= 1000);
+    }
+}
@@ -0,0 +1,53 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MctsEngineTests {
+
+    @Test
+    @DisplayName("Finds Mate In One")
+    public void findsMateInOne() {
+        ChessGame game = ChessGame.of(Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"));
+        MctsEngine engine = new MctsEngine(1, 1 << 16, 39);
+        MctsEngine.Result result = engine.search(game, 3000);
+        Assertions.assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.move());
+        Assertions.assertTrue(result.score() > 0.9, "Score " + result.score());
+    }
+
+    @Test
+    @DisplayName("Parallel Search Spends The Whole Budget")
+    public void parallelBudget() {
+        ChessGame game = new ChessGame();
+        MctsEngine engine = new MctsEngine(4, 1 << 12, 40);
+        MctsEngine.Result result = engine.search(game, 5000);
+        Assertions.assertEquals(5000, result.playouts());
+        Assertions.assertTrue(result.nodes() <= 1 << 12);
+        Assertions.assertTrue(game.validMoves(result.move().getStartPosition()).contains(result.move()));
+
+        // The tree is reused, and a second search starts from scratch
+        Assertions.assertEquals(200, engine.search(game, 200).playouts());
+    }
+
+    @Test
+    @DisplayName("A Stop Before The Search Starts Is Kept")
+    public void stopsBeforeStart() {
+        ChessGame game = new ChessGame();
+        AtomicBoolean stop = new AtomicBoolean(true);
+        MctsEngine engine = new MctsEngine(2, 1 << 12, 41);
+        ChessMove move = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(2),
+                () -> engine.bestMove(game, Engine.Limits.nodes(Integer.MAX_VALUE), stop));
+        Assertions.assertTrue(game.validMoves(move.getStartPosition()).contains(move));
+    }
+
+    @Test
+    @DisplayName("No Move When The Game Is Over")
+    public void gameOver() {
+        ChessGame game = ChessGame.of(Fen.parse("R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1"));
+        Assertions.assertNull(new MctsEngine(2, 1024).bestMove(game, 100));
+    }
+}
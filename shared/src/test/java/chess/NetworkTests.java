@@ -0,0 +1,92 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class NetworkTests {
+
+    @Test
+    @DisplayName("Standard Network Follows The Tables And Round Trips")
+    public void standardNetwork(@TempDir Path directory) throws IOException {
+        Network network = Network.standard();
+        Assertions.assertEquals(Network.fromEvaluation(Evaluation.standard(), network.hidden()), network);
+        Assertions.assertEquals(0, network.evaluate(Fen.parse(Fen.START)));
+        Position queenUp = Fen.parse("4k3/8/8/8/8/8/8/3QK3 w - - 0 1");
+        Assertions.assertTrue(network.evaluate(queenUp) > 800);
+        queenUp.flip();
+        Assertions.assertTrue(network.evaluate(queenUp) > 800);
+
+        Path file = directory.resolve("network.nnue");
+        network.write(file);
+        Assertions.assertEquals(network, Network.read(file));
+    }
+
+    @Test
+    @DisplayName("Incremental Accumulators Match Evaluating From Scratch")
+    public void incremental() throws InvalidMoveException {
+        Random random = new Random(46);
+        Network network = randomNetwork(random, NetworkKernel.create());
+        Network scalar = new Network(network.hidden, network.inputWeights, network.hiddenBiases,
+                network.outputWeights, network.outputBias, NetworkKernel.scalar());
+        int[] moves = new int[Position.MAX_MOVES];
+        for (int gameNumber = 0; gameNumber < 5; gameNumber++) {
+            ChessGame game = new ChessGame();
+            Accumulator boardAccumulator = new Accumulator(network);
+            game.getBoard().setAccumulator(boardAccumulator);
+            Position position = Position.of(game);
+            Accumulator accumulator = new Accumulator(network);
+            position.setAccumulator(accumulator);
+            for (int ply = 0; ply < 150; ply++) {
+                int expected = scalar.evaluate(Position.of(game));
+                Assertions.assertEquals(expected, accumulator.evaluate(position.sideToMove()), "Ply " + ply);
+                Assertions.assertEquals(expected, boardAccumulator.evaluate(position.sideToMove()), "Board at ply " + ply);
+
+                int count = position.legalMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                position.make(move);
+                accumulator.evaluate(position.sideToMove());
+                position.unmake();
+                Assertions.assertEquals(expected, accumulator.evaluate(position.sideToMove()), "Undo at ply " + ply);
+                game.makeMove(Move.toChessMove(move));
+                position.make(move);
+                if (position.halfmoveClock() == 0) {
+                    position.forgetMoves();
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Search With The Network Finds Mate")
+    public void search() {
+        Position position = Fen.parse("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        Search.Info info = new Search().network(Network.standard()).search(position, Engine.Limits.depth(3));
+        Assertions.assertEquals(Move.parse("a1a8"), info.bestMove());
+        Assertions.assertTrue(info.isMate());
+    }
+
+    private static Network randomNetwork(Random random, NetworkKernel kernel) {
+        int hidden = 40;
+        short[] inputWeights = new short[Network.INPUTS * hidden];
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        for (int i = 0; i < inputWeights.length; i++) {
+            inputWeights[i] = (short) (random.nextInt(81) - 40);
+        }
+        for (int i = 0; i < hidden; i++) {
+            hiddenBiases[i] = (short) random.nextInt(200);
+            outputWeights[i] = (short) (random.nextInt(201) - 100);
+            outputWeights[hidden + i] = (short) (random.nextInt(201) - 100);
+        }
+        return new Network(hidden, inputWeights, hiddenBiases, outputWeights, 1000, kernel);
+    }
+}
@@ -0,0 +1,96 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+public class OpeningExplorerTests {
+
+    private static final String GAMES = """
+            1. e4 e5 2. Nf3 Nc6 1-0
+
+            1. e4 c5 2. Nf3 d6 0-1
+
+            1. d4 d5 2. c4 e6 1/2-1/2
+
+            1. e4 e5 2. Bc4 Nf6 *
+
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Counts Moves And Results")
+    public void countsMoves() throws IOException {
+        int copies = 250;
+        OpeningExplorer explorer;
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(
+                GAMES.repeat(copies).getBytes(StandardCharsets.UTF_8)))) {
+            explorer = OpeningExplorer.build(reader.games(), OpeningExplorer.DEFAULT_MAX_PLY);
+        }
+        checkStats(explorer, copies);
+
+        Path file = directory.resolve("explorer.bin");
+        explorer.write(file);
+        OpeningExplorer reopened = OpeningExplorer.open(file);
+        Assertions.assertEquals(explorer.size(), reopened.size());
+        checkStats(reopened, copies);
+    }
+
+    @Test
+    @DisplayName("Lookups Span Buffer Boundaries")
+    public void spansChunks() throws IOException {
+        int copies = 10;
+        OpeningExplorer explorer;
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(
+                GAMES.repeat(copies).getBytes(StandardCharsets.UTF_8)))) {
+            // Two records a buffer, so a position's moves can sit in different buffers
+            explorer = OpeningExplorer.build(reader.games(), OpeningExplorer.DEFAULT_MAX_PLY, 1);
+        }
+        Assertions.assertTrue(explorer.size() > 2);
+        checkStats(explorer, copies);
+
+        Path file = directory.resolve("chunked.bin");
+        explorer.write(file);
+        checkStats(OpeningExplorer.open(file), copies);
+    }
+
+    @Test
+    @DisplayName("Stops At Max Ply")
+    public void stopsAtMaxPly() throws IOException {
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(GAMES.getBytes(StandardCharsets.UTF_8)))) {
+            OpeningExplorer explorer = OpeningExplorer.build(reader.games(), 1);
+            Assertions.assertEquals(2, explorer.size());
+        }
+    }
+
+    private static void checkStats(OpeningExplorer explorer, int copies) {
+        List<OpeningExplorer.MoveStats> start = explorer.lookup(new ChessGame());
+        Assertions.assertEquals(2, start.size());
+        OpeningExplorer.MoveStats e4 = start.get(0);
+        Assertions.assertEquals(Move.of(12, 28), e4.move());
+        Assertions.assertEquals(3 * copies, e4.games());
+        Assertions.assertEquals(copies, e4.whiteWins());
+        Assertions.assertEquals(0, e4.draws());
+        Assertions.assertEquals(copies, e4.blackWins());
+        OpeningExplorer.MoveStats d4 = start.get(1);
+        Assertions.assertEquals(copies, d4.games());
+        Assertions.assertEquals(copies, d4.draws());
+
+        Position afterE4E5 = Fen.parse(Fen.START);
+        afterE4E5.make(Move.of(12, 28));
+        afterE4E5.make(Move.of(52, 36));
+        List<OpeningExplorer.MoveStats> replies = explorer.lookup(afterE4E5.key());
+        Assertions.assertEquals(2, replies.size());
+        Assertions.assertEquals(2 * copies, replies.get(0).games() + replies.get(1).games());
+        Assertions.assertTrue(explorer.lookup(12345L).isEmpty());
+    }
+}
@@ -0,0 +1,46 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class PawnTableTests {
+
+    @Test
+    @DisplayName("Pawn Keys Track Pawns And Cached Scores Match")
+    public void pawnKeys() throws InvalidMoveException {
+        Random random = new Random(44);
+        int[] moves = new int[Position.MAX_MOVES];
+        Evaluation evaluation = Evaluation.standard();
+        PawnTable pawns = new PawnTable(1024);
+        for (int gameNumber = 0; gameNumber < 10; gameNumber++) {
+            ChessGame game = new ChessGame();
+            Position position = Position.of(game);
+            for (int ply = 0; ply < 120; ply++) {
+                Assertions.assertEquals(Position.of(game).pawnKey(), position.pawnKey(), "Pawn key differs at ply " + ply);
+                Assertions.assertEquals(position.pawnKey(), game.getBoard().getPawnZobristKey());
+                Assertions.assertEquals(evaluation.evaluate(position), evaluation.evaluate(position, pawns));
+                Assertions.assertEquals(evaluation.evaluate(position), evaluation.evaluate(position, pawns));
+
+                int count = position.legalMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                long pawnKey = position.pawnKey();
+                boolean pawnMove = Position.type(position.piece(Move.from(move))) == Position.PAWN
+                        || Position.type(position.piece(Move.to(move))) == Position.PAWN;
+                position.make(move);
+                Assertions.assertEquals(pawnMove, pawnKey != position.pawnKey());
+                position.unmake();
+                Assertions.assertEquals(pawnKey, position.pawnKey(), "Unmake lost the pawn key at ply " + ply);
+                game.makeMove(Move.toChessMove(move));
+                position.make(move);
+            }
+        }
+        // Every position was evaluated twice in a row, so at least half the lookups hit
+        Assertions.assertTrue(pawns.hits() * 2 >= pawns.probes(), pawns.hits() + " of " + pawns.probes());
+    }
+}
@@ -0,0 +1,154 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class PgnReaderTests {
+
+    private static final String PGN = """
+            [Event "Test \\"Open\\""]
+            [White "Alice"]
+            [Black "Bob"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 {developing} Nc6 3. Bb5 a6 (3... Nf6 4. O-O) 4. Ba4 Nf6 $1
+            5. O-O Be7 6. Re1 b5 7. Bb3 d6 8. c3 O-O 9. h3 Nb8 10. d4 Nbd7 ; a comment
+            11. Nbd2 Bb7 12. Bc2 Re8 13. Nf1 Bf8 14. Ng3 g6 15. Bg5 h6 16. Bd2 Bg7 1-0
+
+            [Event "Promotion"]
+            [FEN "8/P6k/8/8/8/8/6pK/8 w - - 0 1"]
+
+            1. a8=Q g1=N 2. Kxg1 Kg6 3. Qa6+ Kf5 1/2-1/2
+
+            [Event "Bad"]
+
+            1. e4 e5 2. Ke3 Nc6 *
+            """;
+
+    @Test
+    @DisplayName("Reads Tags, Moves And Results")
+    public void readsGames() throws IOException {
+        List<PgnGame> games = readAll(PGN);
+        Assertions.assertEquals(3, games.size());
+
+        PgnGame lopez = games.get(0);
+        Assertions.assertEquals("Test \"Open\"", lopez.tag("Event"));
+        Assertions.assertEquals("Alice", lopez.tag("White"));
+        Assertions.assertEquals(PgnGame.WHITE_WINS, lopez.result());
+        Assertions.assertNull(lopez.error());
+        Assertions.assertEquals(32, lopez.moveCount());
+        Assertions.assertEquals(Move.of(4, 6), lopez.move(8));
+        Assertions.assertEquals(Move.of(1, 11), lopez.move(20));
+
+        ChessGame game = lopez.toChessGame();
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        Assertions.assertNotNull(game.getBoard().getPiece(new ChessPosition(7, 7)));
+    }
+
+    @Test
+    @DisplayName("Starts From FEN Tag And Promotes")
+    public void fenAndPromotion() throws IOException {
+        PgnGame promotion = readAll(PGN).get(1);
+        Assertions.assertNull(promotion.error());
+        Assertions.assertEquals(PgnGame.DRAW, promotion.result());
+        Assertions.assertEquals(Move.of(48, 56, Position.QUEEN), promotion.move(0));
+        Assertions.assertEquals(Move.of(14, 6, Position.KNIGHT), promotion.move(1));
+
+        ChessGame game = promotion.toChessGame();
+        ChessPiece queen = game.getBoard().getPiece(new ChessPosition(6, 1));
+        Assertions.assertEquals(ChessPiece.PieceType.QUEEN, queen.getPieceType());
+    }
+
+    @Test
+    @DisplayName("Reports Illegal Moves")
+    public void reportsIllegalMoves() throws IOException {
+        PgnGame bad = readAll(PGN).get(2);
+        Assertions.assertNotNull(bad.error());
+        Assertions.assertTrue(bad.error().contains("Ke3"));
+        Assertions.assertEquals(2, bad.moveCount());
+        Assertions.assertEquals(PgnGame.UNKNOWN, bad.result());
+    }
+
+    @Test
+    @DisplayName("Round Trips Random Games")
+    public void randomGames() throws IOException {
+        Random random = new Random(30);
+        int[] buffer = new int[Position.MAX_MOVES];
+        StringBuilder pgn = new StringBuilder();
+        List<int[]> expected = new ArrayList<>();
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            Position position = Fen.parse(Fen.START);
+            int[] played = new int[120];
+            int plies = 0;
+            pgn.append("[Round \"").append(gameNumber).append("\"]\n\n");
+            for (; plies < played.length; plies++) {
+                int count = position.legalMoves(buffer, 0);
+                if (count == 0) {
+                    break;
+                }
+                int move = buffer[random.nextInt(count)];
+                if (plies % 2 == 0) {
+                    pgn.append(plies / 2 + 1).append(". ");
+                }
+                pgn.append(longSan(position, move)).append(' ');
+                played[plies] = move;
+                position.make(move);
+                position.forgetMoves();
+            }
+            expected.add(Arrays.copyOf(played, plies));
+            pgn.append("*\n\n");
+        }
+
+        List<PgnGame> games = readAll(pgn.toString());
+        Assertions.assertEquals(expected.size(), games.size());
+        for (int i = 0; i < games.size(); i++) {
+            Assertions.assertNull(games.get(i).error());
+            int[] moves = new int[games.get(i).moveCount()];
+            for (int ply = 0; ply < moves.length; ply++) {
+                moves[ply] = games.get(i).move(ply);
+            }
+            Assertions.assertArrayEquals(expected.get(i), moves);
+        }
+    }
+
+    /**
+     * SAN with both the origin file and rank, which is never ambiguous
+     */
+    private static String longSan(Position position, int move) {
+        int from = Move.from(move);
+        int type = Position.type(position.piece(from));
+        StringBuilder san = new StringBuilder();
+        if (type != Position.PAWN) {
+            san.append(" PNBRQK".charAt(type));
+        }
+        Move.appendSquare(san, from);
+        if (position.piece(Move.to(move)) != Position.EMPTY) {
+            san.append('x');
+        }
+        Move.appendSquare(san, Move.to(move));
+        if (Move.promotion(move) != 0) {
+            san.append('=').append(" PNBRQK".charAt(Move.promotion(move)));
+        }
+        return san.toString();
+    }
+
+    private static List<PgnGame> readAll(String pgn) throws IOException {
+        List<PgnGame> games = new ArrayList<>();
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(pgn.getBytes(StandardCharsets.UTF_8)))) {
+            PgnGame game = new PgnGame();
+            while (reader.next(game)) {
+                games.add(game.copy());
+            }
+        }
+        return games;
+    }
+}
@@ -0,0 +1,127 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PgnWriterTests {
+
+    @Test
+    @DisplayName("Disambiguation, Checks And Mate")
+    public void sanSuffixes() {
+        PgnWriter writer = new PgnWriter();
+        Position knights = Fen.parse("4k3/8/8/8/8/8/8/1N2KN1R w - - 0 1");
+        Assertions.assertEquals("Nbd2", san(writer, knights, Move.of(1, 11)));
+        Assertions.assertEquals("Rh8+", san(writer, knights, Move.of(7, 63)));
+
+        Position rooks = Fen.parse("7k/8/R7/8/8/8/8/R3K3 w - - 0 1");
+        Assertions.assertEquals("R1a3", san(writer, rooks, Move.of(0, 16)));
+        Assertions.assertEquals("Kd2", san(writer, rooks, Move.of(4, 11)));
+
+        Position queens = Fen.parse("8/8/8/7k/8/8/Q1Q5/Q3K3 w - - 0 1");
+        Assertions.assertEquals("Qa2b1", san(writer, queens, Move.of(8, 1)));
+
+        Position mate = Fen.parse("6k1/5ppp/8/8/8/8/8/R3K2R w KQ - 0 1");
+        Assertions.assertEquals("Ra8#", san(writer, mate, Move.of(0, 56)));
+        Assertions.assertEquals("O-O", san(writer, mate, Move.of(4, 6)));
+        Assertions.assertEquals("O-O-O", san(writer, mate, Move.of(4, 2)));
+
+        Position promotion = Fen.parse("1n2k3/P7/8/8/8/8/8/4K3 w - - 0 1");
+        Assertions.assertEquals("axb8=Q+", san(writer, promotion, Move.of(48, 57, Position.QUEEN)));
+        Assertions.assertEquals("a8=N", san(writer, promotion, Move.of(48, 56, Position.KNIGHT)));
+    }
+
+    @Test
+    @DisplayName("Move Numbers Continue From The Start Position")
+    public void moveNumbersFromFen() {
+        String fen = "4k3/8/8/8/8/8/4P3/4K3 b - - 3 42";
+        PgnGame game = PgnGame.of(Map.of("FEN", fen), new short[]{(short) Move.of(60, 59),
+                (short) Move.of(12, 28), (short) Move.of(59, 60)}, PgnGame.UNKNOWN);
+        String pgn = new PgnWriter().appendGame(new StringBuilder(), game).toString();
+        Assertions.assertTrue(pgn.contains("42... Kd8 43. e4 Ke8 *"), pgn);
+        Assertions.assertEquals(1, Fen.moveNumber(Fen.START.substring(0, Fen.START.lastIndexOf(' '))));
+    }
+
+    @Test
+    @DisplayName("Illegal Moves Are Rejected")
+    public void illegalMoves() {
+        PgnWriter writer = new PgnWriter();
+        PgnGame throughPawns = PgnGame.of(Map.of(), new short[]{(short) Move.of(12, 28),
+                (short) Move.of(52, 36), (short) Move.of(0, 56)}, PgnGame.UNKNOWN);
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> writer.appendGame(new StringBuilder(), throughPawns));
+        Assertions.assertTrue(e.getMessage().contains("ply 2"), e.getMessage());
+
+        PgnGame fromEmpty = PgnGame.of(Map.of(), new short[]{(short) Move.of(28, 36)}, PgnGame.UNKNOWN);
+        e = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> writer.appendGame(new StringBuilder(), fromEmpty));
+        Assertions.assertTrue(e.getMessage().contains("ply 0"), e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Exported Games Read Back")
+    public void roundTrip() throws IOException {
+        Random random = new Random(35);
+        int[] buffer = new int[Position.MAX_MOVES];
+        List<PgnGame> games = new ArrayList<>();
+        for (int gameNumber = 0; gameNumber < 30; gameNumber++) {
+            Position position = Fen.parse(Fen.START);
+            short[] moves = new short[200];
+            int count = 0;
+            while (count < moves.length) {
+                int legal = position.legalMoves(buffer, 0);
+                if (legal == 0) {
+                    break;
+                }
+                moves[count] = (short) buffer[random.nextInt(legal)];
+                position.make(moves[count++]);
+                position.forgetMoves();
+            }
+            Map<String, String> tags = new LinkedHashMap<>();
+            tags.put("Event", "Random \"game\" " + gameNumber);
+            tags.put("White", "Zoë");
+            games.add(PgnGame.of(tags, Arrays.copyOf(moves, count), PgnGame.UNKNOWN));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PgnWriter writer = new PgnWriter();
+        try (WritableByteChannel channel = Channels.newChannel(out)) {
+            for (PgnGame game : games) {
+                writer.write(game, channel);
+            }
+        }
+        String pgn = out.toString(StandardCharsets.UTF_8);
+        for (String line : pgn.split("\n")) {
+            Assertions.assertTrue(line.length() < 80, line);
+        }
+
+        try (PgnReader reader = new PgnReader(new ByteArrayInputStream(out.toByteArray()))) {
+            PgnGame read = new PgnGame();
+            for (PgnGame game : games) {
+                Assertions.assertTrue(reader.next(read));
+                Assertions.assertNull(read.error());
+                Assertions.assertEquals(game.tag("Event"), read.tag("Event"));
+                Assertions.assertEquals(game.tag("White"), read.tag("White"));
+                Assertions.assertArrayEquals(game.moves(), read.moves());
+            }
+            Assertions.assertFalse(reader.next(read));
+        }
+    }
+
+    private static String san(PgnWriter writer, Position position, int move) {
+        return writer.appendSan(new StringBuilder(), position, move).toString();
+    }
+}
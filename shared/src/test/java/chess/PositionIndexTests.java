@@ -0,0 +1,77 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PositionIndexTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Finds Every Game Reaching A Position")
+    public void findsGames() throws IOException {
+        Map<Long, List<PositionIndex.Posting>> expected = new HashMap<>();
+        Random random = new Random(32);
+        int[] buffer = new int[Position.MAX_MOVES];
+        try (PositionIndex index = PositionIndex.open(directory, 100)) {
+            for (int gameId = 0; gameId < 60; gameId++) {
+                PgnGame game = new PgnGame();
+                Position position = Fen.parse(Fen.START);
+                expected.computeIfAbsent(position.key(), k -> new ArrayList<>()).add(new PositionIndex.Posting(gameId, 0));
+                for (int ply = 1; ply <= 40; ply++) {
+                    int count = position.legalMoves(buffer, 0);
+                    if (count == 0) {
+                        break;
+                    }
+                    int move = buffer[random.nextInt(count)];
+                    position.make(move);
+                    position.forgetMoves();
+                    game.addMove(move);
+                    expected.computeIfAbsent(position.key(), k -> new ArrayList<>())
+                            .add(new PositionIndex.Posting(gameId, ply));
+                }
+                index.addGame(gameId, game);
+            }
+            index.flush();
+            Assertions.assertTrue(index.runCount() <= 8);
+        }
+
+        try (PositionIndex index = PositionIndex.open(directory)) {
+            for (Map.Entry<Long, List<PositionIndex.Posting>> entry : expected.entrySet()) {
+                Assertions.assertEquals(entry.getValue(), index.lookup(entry.getKey()));
+            }
+            Assertions.assertEquals(60, index.lookup(new ChessGame()).size());
+            Assertions.assertTrue(index.lookup(12345L).isEmpty());
+
+            long size = index.size();
+            index.compact();
+            Assertions.assertEquals(1, index.runCount());
+            Assertions.assertEquals(size, index.size());
+            Assertions.assertEquals(60, index.lookup(new ChessGame()).size());
+        }
+    }
+
+    @Test
+    @DisplayName("Indexes Live Games")
+    public void indexesLiveGames() throws IOException, InvalidMoveException {
+        try (PositionIndex index = PositionIndex.open(directory)) {
+            ChessGame game = new ChessGame();
+            game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+            index.add(7, 1, game);
+            Assertions.assertTrue(index.lookup(game).isEmpty());
+            index.flush();
+            Assertions.assertEquals(List.of(new PositionIndex.Posting(7, 1)), index.lookup(game));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+public class PositionTests {
+
+    @Test
+    @DisplayName("Perft From Starting Position")
+    public void perftStart() {
+        Position position = Position.of(new ChessGame());
+        Assertions.assertEquals(20, perft(position, 1));
+        Assertions.assertEquals(400, perft(position, 2));
+        Assertions.assertEquals(8902, perft(position, 3));
+        Assertions.assertEquals(197281, perft(position, 4));
+    }
+
+    @Test
+    @DisplayName("Random Games Match ChessGame")
+    public void randomGamesMatchChessGame() throws InvalidMoveException {
+        Random random = new Random(240);
+        int[] moves = new int[Position.MAX_MOVES];
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            ChessGame game = new ChessGame();
+            Position position = Position.of(game);
+            for (int ply = 0; ply < 120; ply++) {
+                List<ChessMove> expected = allValidMoves(game);
+                int count = position.legalMoves(moves, 0);
+                List<ChessMove> actual = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    actual.add(Move.toChessMove(moves[i]));
+                }
+                Assertions.assertEquals(expected.size(), actual.size(), "Move count differs at ply " + ply);
+                Assertions.assertTrue(actual.containsAll(expected), "Moves differ at ply " + ply);
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                game.makeMove(Move.toChessMove(move));
+                position.make(move);
+                Assertions.assertEquals(game.getBoard(), position.toBoard(), "Board differs at ply " + ply);
+                Assertions.assertEquals(game.getZobristKey(), position.key(), "Key differs at ply " + ply);
+                Assertions.assertEquals(Position.of(game).key(), position.key(), "Key not incremental at ply " + ply);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Flipped Keys Match Flipped Positions")
+    public void flippedKeys() throws InvalidMoveException {
+        Random random = new Random(38);
+        int[] moves = new int[Position.MAX_MOVES];
+        for (int gameNumber = 0; gameNumber < 10; gameNumber++) {
+            ChessGame game = new ChessGame();
+            Position position = Position.of(game);
+            for (int ply = 0; ply < 120; ply++) {
+                Position flipped = Position.of(game);
+                flipped.flip();
+                Assertions.assertEquals(flipped.key(), position.flippedKey(), "Flipped key differs at ply " + ply);
+                Assertions.assertEquals(position.key(), flipped.flippedKey(), "Flip is not symmetric at ply " + ply);
+                Assertions.assertEquals(position.flippedKey(), game.getFlippedZobristKey());
+                Assertions.assertEquals(position.canonicalKey(), flipped.canonicalKey());
+                Assertions.assertEquals(position.canonicalKey(), game.getCanonicalKey());
+                Assertions.assertEquals(position.legalMoves(moves, 0), flipped.legalMoves(moves, 0));
+
+                int count = position.legalMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                Assertions.assertTrue(flipped.isLegal(Move.flip(move)));
+                long flippedKey = position.flippedKey();
+                position.make(move);
+                position.unmake();
+                Assertions.assertEquals(flippedKey, position.flippedKey(), "Unmake lost the flipped key at ply " + ply);
+                game.makeMove(Move.toChessMove(move));
+                position.make(move);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Static Exchange Evaluation")
+    public void staticExchange() {
+        Assertions.assertEquals(100, Fen.parse("4k3/8/8/3p4/4P3/8/8/4K3 w - - 0 1").see(Move.parse("e4d5")));
+        Assertions.assertEquals(-220, Fen.parse("4k3/8/2p5/3p4/8/4N3/8/4K3 w - - 0 1").see(Move.parse("e3d5")));
+        // The rook behind joins in once the first has gone, so black does best not to take back
+        Assertions.assertEquals(100, Fen.parse("3rk3/8/8/3p4/8/8/3R4/3RK3 w - - 0 1").see(Move.parse("d2d5")));
+        Assertions.assertEquals(-400, Fen.parse("3rk3/8/8/3p4/8/8/3R4/4K3 w - - 0 1").see(Move.parse("d2d5")));
+        Assertions.assertEquals(100, Fen.parse("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1").see(Move.parse("e5d6")));
+    }
+
+    private static List<ChessMove> allValidMoves(ChessGame game) {
+        List<ChessMove> moves = new ArrayList<>();
+        for (int sq = 0; sq < 64; sq++) {
+            ChessPiece piece = game.getBoard().getPiece(Move.position(sq));
+            if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                Collection<ChessMove> valid = game.validMoves(Move.position(sq));
+                moves.addAll(valid);
+            }
+        }
+        return moves;
+    }
+
+    private static long perft(Position position, int depth) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.legalMoves(moves, 0);
+        if (depth == 1) {
+            return count;
+        }
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.make(moves[i]);
+            nodes += perft(position, depth - 1);
+            position.unmake();
+        }
+        return nodes;
+    }
+}
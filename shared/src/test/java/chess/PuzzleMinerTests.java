@@ -0,0 +1,83 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PuzzleMinerTests {
+
+    private static final String QUIET = """
+            [Event "Quiet"]
+
+            1. d4 d5 2. c4 e6 3. Nc3 Nf6 4. Bg5 Be7 5. e3 O-O 6. Nf3 Nbd7 1/2-1/2
+
+            """;
+
+    private static final String LEGAL = """
+            [Event "Legal's mate"]
+
+            1. e4 e5 2. Nf3 d6 3. Bc4 Bg4 4. Nc3 g6 5. Nxe5 Bxd1 6. Bxf7+ Ke7 7. Nd5# 1-0
+
+            """;
+
+    @Test
+    @DisplayName("Finds A Mate In An Archived Game")
+    public void findsMate(@TempDir Path directory) throws IOException {
+        Path archive = directory.resolve("games.pgn");
+        Files.writeString(archive, QUIET + LEGAL);
+        Path output = directory.resolve("puzzles.txt");
+        List<PuzzleMiner.Puzzle> puzzles = new ArrayList<>();
+        PuzzleMiner.Progress progress = new PuzzleMiner(2)
+                .limits(Engine.Limits.depth(6))
+                .tableMegabytes(1)
+                .onPuzzle(puzzles::add)
+                .mine(archive, output, directory.resolve("puzzles.checkpoint"));
+
+        Assertions.assertEquals(2, progress.games());
+        Assertions.assertTrue(progress.candidates() < progress.positions(), "The filter should turn positions away");
+        PuzzleMiner.Puzzle mate = puzzles.stream().filter(puzzle -> puzzle.game() == 1).findFirst().orElseThrow();
+        Assertions.assertEquals(10, mate.ply());
+        Assertions.assertEquals(2, mate.mateIn());
+        Assertions.assertEquals(List.of("c4f7", "e8e7", "c3d5"), mate.solution());
+        Assertions.assertEquals(puzzles.size(), progress.puzzles());
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        Assertions.assertEquals(puzzles.size(), lines.size());
+        Assertions.assertTrue(lines.contains(mate.toLine()));
+        Assertions.assertTrue(mate.toLine().contains(";c4f7 e8e7 c3d5;#2;1;10"));
+    }
+
+    @Test
+    @DisplayName("Resumes From A Checkpoint")
+    public void resumes(@TempDir Path directory) throws IOException {
+        Path archive = directory.resolve("games.pgn");
+        Files.writeString(archive, QUIET + LEGAL + QUIET + LEGAL);
+        PuzzleMiner miner = new PuzzleMiner(1).limits(Engine.Limits.depth(6)).tableMegabytes(1);
+        Path full = directory.resolve("full.txt");
+        PuzzleMiner.Progress whole = miner.mine(archive, full, directory.resolve("full.checkpoint"));
+        String expected = Files.readString(full);
+
+        // As if stopped after the first game, with half a line written since the checkpoint
+        Path output = directory.resolve("resumed.txt");
+        Path checkpoint = directory.resolve("resumed.checkpoint");
+        Files.writeString(output, "8/8/8/8/8/8/8/8 w - - 0 1;e2", StandardOpenOption.CREATE);
+        PuzzleMiner.writeCheckpoint(checkpoint, new PuzzleMiner.Progress(1, 0, 0, 0, 0), 0);
+        PuzzleMiner.Progress resumed = miner.mine(archive, output, checkpoint);
+
+        Assertions.assertEquals(expected, Files.readString(output));
+        Assertions.assertEquals(4, resumed.games());
+        Assertions.assertEquals(whole.puzzles(), resumed.puzzles());
+        // Nothing is left to do once the archive is finished
+        Assertions.assertEquals(4, miner.mine(archive, output, checkpoint).games());
+        Assertions.assertEquals(expected, Files.readString(output));
+    }
+}
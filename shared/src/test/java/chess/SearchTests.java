@@ -0,0 +1,106 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SearchTests {
+
+    @Test
+    @DisplayName("Finds Mate In Two")
+    public void mateInTwo() {
+        Position position = Fen.parse("7k/8/8/8/8/8/R7/1R4K1 w - - 0 1");
+        Search.Info info = new Search().search(position, Engine.Limits.depth(6));
+        Assertions.assertTrue(info.isMate(), "Score " + info.score());
+        Assertions.assertEquals(2, info.mateIn());
+        Assertions.assertTrue(position.isLegal(info.bestMove()));
+    }
+
+    @Test
+    @DisplayName("Stops Promptly When Asked")
+    public void stops() throws InterruptedException {
+        Search search = new Search();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Search.Info> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> result.set(
+                search.search(Fen.parse(Fen.START), Engine.Limits.depth(Search.MAX_DEPTH), stop)));
+        thread.start();
+        Thread.sleep(200);
+        stop.set(true);
+        thread.join(1000);
+        Assertions.assertFalse(thread.isAlive());
+        Assertions.assertTrue(Fen.parse(Fen.START).isLegal(result.get().bestMove()));
+    }
+
+    @Test
+    @DisplayName("A Stop Before The Search Starts Is Kept")
+    public void stopsBeforeStart() {
+        ChessGame game = new ChessGame();
+        AtomicBoolean stop = new AtomicBoolean(true);
+        ChessMove move = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(2),
+                () -> new Search().bestMove(game, Engine.Limits.depth(Search.MAX_DEPTH), stop));
+        Assertions.assertTrue(game.validMoves(move.getStartPosition()).contains(move));
+    }
+
+    @Test
+    @DisplayName("Parallel Search Returns A Legal Move")
+    public void parallel() {
+        Position position = Fen.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+        Search.Info info = new Search().threads(4).search(position, Engine.Limits.depth(5));
+        Assertions.assertEquals(5, info.depth());
+        Assertions.assertTrue(position.isLegal(info.bestMove()));
+    }
+
+    @Test
+    @DisplayName("Multi-PV Streams Distinct Lines At Every Depth")
+    public void multiPv() {
+        Position position = Fen.parse(Fen.START);
+        List<Search.Info> infos = new ArrayList<>();
+        Search.Info result = new Search().multiPv(3).onInfo(infos::add).search(position, Engine.Limits.depth(4));
+        Assertions.assertEquals(12, infos.size());
+        for (int depth = 1; depth <= 4; depth++) {
+            Set<Integer> moves = new HashSet<>();
+            for (int line = 1; line <= 3; line++) {
+                Search.Info info = infos.get((depth - 1) * 3 + line - 1);
+                Assertions.assertEquals(depth, info.depth());
+                Assertions.assertEquals(line, info.multiPv());
+                Assertions.assertTrue(position.isLegal(info.bestMove()));
+                Assertions.assertEquals(info.pv().length, info.line().size());
+                moves.add(info.bestMove());
+            }
+            Assertions.assertEquals(3, moves.size());
+        }
+        Assertions.assertEquals(infos.get(9).bestMove(), result.bestMove());
+
+        // Fewer legal moves than lines
+        infos.clear();
+        new Search().multiPv(3).onInfo(infos::add).search(Fen.parse("7k/8/8/8/8/8/8/K6r w - - 0 1"), Engine.Limits.depth(2));
+        Assertions.assertEquals(4, infos.size());
+    }
+
+    @Test
+    @DisplayName("Color-Flipped Positions Share A Table Entry")
+    public void flippedTableEntry() {
+        TranspositionTable table = new TranspositionTable(1);
+        Position position = Fen.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+        int move = Move.parse("f1b5");
+        table.store(position, move, 35, 7, TranspositionTable.EXACT);
+
+        Position flipped = position.copy();
+        flipped.flip();
+        long entry = table.probe(flipped);
+        Assertions.assertEquals(Move.flip(move), TranspositionTable.move(entry));
+        Assertions.assertEquals(35, TranspositionTable.score(entry));
+        Assertions.assertEquals(7, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.EXACT, TranspositionTable.bound(entry));
+        Assertions.assertEquals(move, TranspositionTable.move(table.probe(position)));
+    }
+}
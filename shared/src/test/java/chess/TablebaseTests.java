@@ -0,0 +1,136 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import passoff.chess.TestUtilities;
+
+import java.nio.file.Path;
+
+public class TablebaseTests {
+    private static Tablebases tablebases;
+
+    @BeforeAll
+    public static void generate() {
+        tablebases = new Tablebases();
+        tablebases.generate("KQK");
+    }
+
+    @Test
+    @DisplayName("KQK Longest Mate")
+    public void longestMate() {
+        // Black to move and mated after white's 10th move
+        Assertions.assertEquals(20, tablebases.get("KQK").maxPlies());
+    }
+
+    @Test
+    @DisplayName("Probe Both Colors")
+    public void probeBothColors() {
+        ChessGame mateInOne = new ChessGame();
+        mateInOne.setBoard(TestUtilities.loadBoard("""
+                | | | | | | |k| |
+                | | | | | | | | |
+                | | | | | | |K| |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |Q| | | | | | | |
+                """));
+        Assertions.assertEquals(1, tablebases.probe(mateInOne));
+
+        ChessGame flipped = new ChessGame();
+        flipped.setBoard(TestUtilities.loadBoard("""
+                |q| | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | |k| |
+                | | | | | | | | |
+                | | | | | | |K| |
+                """));
+        flipped.setTeamTurn(ChessGame.TeamColor.BLACK);
+        Assertions.assertEquals(1, tablebases.probe(flipped));
+
+        flipped.setTeamTurn(ChessGame.TeamColor.WHITE);
+        Assertions.assertTrue(Tablebase.isLoss(tablebases.probe(flipped)));
+    }
+
+    @Test
+    @DisplayName("Game And Position Probes Agree")
+    public void gameAndPositionAgree() {
+        String[] fens = {
+                "6k1/8/6K1/8/8/8/8/Q7 w - - 0 1",
+                "q7/8/8/8/8/6k1/8/6K1 w - - 0 1",
+                "q7/8/8/8/8/6k1/8/6K1 b - - 0 1",
+                "8/8/8/3k4/8/8/2N5/4K3 w - - 0 1",
+                "8/8/8/3k4/8/8/2R5/4K3 w - - 0 1",
+                "8/8/8/3kq3/8/8/2Q5/4K3 w - - 0 1",
+        };
+        int[] expected = {1, Integer.MAX_VALUE, 1, Tablebase.DRAW, Tablebases.NOT_FOUND, Tablebases.NOT_FOUND};
+        for (int i = 0; i < fens.length; i++) {
+            Position position = Fen.parse(fens[i]);
+            int value = tablebases.probe(position);
+            Assertions.assertEquals(value, tablebases.probe(ChessGame.of(position)), fens[i]);
+            if (expected[i] != Integer.MAX_VALUE) {
+                Assertions.assertEquals(expected[i], value, fens[i]);
+            } else {
+                Assertions.assertTrue(Tablebase.isLoss(value), fens[i]);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Boards No Table Can Describe Are Not Found")
+    public void undescribableBoards() {
+        ChessGame queens = new ChessGame();
+        queens.setBoard(TestUtilities.loadBoard("""
+                |q| | | | | | |q|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |q| | | | | | |q|
+                """));
+        Assertions.assertEquals(Tablebases.NOT_FOUND, tablebases.probe(queens));
+        Assertions.assertEquals(Tablebases.NOT_FOUND, tablebases.probe(Position.of(queens)));
+
+        ChessGame rooks = new ChessGame();
+        rooks.setBoard(TestUtilities.loadBoard("""
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R|R|R| |K| | | |
+                """));
+        Assertions.assertEquals(Tablebases.NOT_FOUND, tablebases.probe(rooks));
+        Assertions.assertEquals(Tablebases.NOT_FOUND, tablebases.probe(Position.of(rooks)));
+    }
+
+    @Test
+    @DisplayName("Write And Memory Map")
+    public void writeAndMap(@TempDir Path directory) throws Exception {
+        tablebases.write(directory);
+        Tablebases mapped = Tablebases.load(directory);
+
+        Position position = Position.of(new ChessGame());
+        position.clear();
+        position.put(0, Position.KING);
+        position.put(28, Position.QUEEN);
+        position.put(63, Position.KING | Position.BLACK);
+        Assertions.assertEquals(tablebases.probe(position), mapped.probe(position));
+        Assertions.assertTrue(Tablebase.isWin(mapped.probe(position)));
+
+        int move = mapped.bestMove(position);
+        position.make(move);
+        Assertions.assertTrue(Tablebase.isLoss(mapped.probe(position)));
+    }
+}
@@ -0,0 +1,111 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class TexelTunerTests {
+
+    @Test
+    @DisplayName("Standard Evaluation Is Symmetric And Round Trips")
+    public void standardEvaluation(@TempDir Path directory) throws IOException {
+        Evaluation evaluation = Evaluation.standard();
+        Assertions.assertEquals(0, evaluation.whiteScore(Fen.parse(Fen.START)));
+        Position position = Fen.parse("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4");
+        int score = evaluation.evaluate(position);
+        position.flip();
+        Assertions.assertEquals(score, evaluation.evaluate(position));
+        Assertions.assertTrue(evaluation.whiteScore(Fen.parse("4k3/8/8/8/8/8/8/3QK3 w - - 0 1")) > 800);
+
+        Path file = directory.resolve("evaluation.txt");
+        evaluation.write(file);
+        Assertions.assertEquals(evaluation, Evaluation.read(file));
+    }
+
+    @Test
+    @DisplayName("Error Counts The Terms Outside The Tables")
+    public void errorMatchesEvaluation() {
+        TexelTuner tuner = new TexelTuner(new ForkJoinPool(1));
+        Evaluation evaluation = Evaluation.standard();
+        Random random = new Random(43);
+        int[] moves = new int[Position.MAX_MOVES];
+        double expected = 0;
+        int positions = 0;
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            Position position = Fen.parse(Fen.START);
+            short[] played = new short[80];
+            int plies = 0;
+            double gameError = 0;
+            int gamePositions = 0;
+            while (plies < played.length) {
+                int count = position.legalMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                int from = Move.from(move);
+                int to = Move.to(move);
+                boolean enPassant = Position.type(position.piece(from)) == Position.PAWN && (from & 7) != (to & 7)
+                        && position.piece(to) == Position.EMPTY;
+                if (plies >= 8 && !position.inCheck() && position.piece(to) == Position.EMPTY && !enPassant
+                        && Move.promotion(move) == 0) {
+                    double predicted = 1 / (1 + Math.exp(-Math.log(10) / 400 * evaluation.whiteScore(position)));
+                    gameError += (0.5 - predicted) * (0.5 - predicted);
+                    gamePositions++;
+                }
+                played[plies++] = (short) move;
+                position.make(move);
+            }
+            if (tuner.addGame(PgnGame.of(Map.of(), Arrays.copyOf(played, plies), PgnGame.DRAW)) > 0) {
+                expected += gameError;
+                positions += gamePositions;
+            }
+        }
+        Assertions.assertEquals(positions, tuner.size());
+        // Only whiteScore's rounding to whole centipawns is left between the two
+        Assertions.assertEquals(expected / positions, tuner.error(evaluation, 1), 2e-4);
+    }
+
+    @Test
+    @DisplayName("Tuning Lowers The Error The Same Way On Any Pool")
+    public void tuningLowersError() {
+        TexelTuner serial = new TexelTuner(new ForkJoinPool(1));
+        TexelTuner parallel = new TexelTuner(new ForkJoinPool(4));
+        Random random = new Random(41);
+        int[] moves = new int[Position.MAX_MOVES];
+        for (int gameNumber = 0; gameNumber < 300; gameNumber++) {
+            Position position = Fen.parse(Fen.START);
+            short[] played = new short[120];
+            int plies = 0;
+            while (plies < played.length) {
+                int count = position.legalMoves(moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                played[plies++] = (short) moves[random.nextInt(count)];
+                position.make(played[plies - 1]);
+            }
+            // Label games by the material left at the end, which the tables can learn
+            int material = Evaluation.standard().whiteScore(position);
+            String result = material > 150 ? PgnGame.WHITE_WINS : material < -150 ? PgnGame.BLACK_WINS : PgnGame.DRAW;
+            PgnGame game = PgnGame.of(Map.of(), Arrays.copyOf(played, plies), result);
+            serial.addGame(game);
+            parallel.addGame(game);
+        }
+        Assertions.assertTrue(serial.size() > 10_000, serial.size() + " positions");
+
+        Evaluation start = Evaluation.standard();
+        Evaluation tuned = serial.tune(start, 30);
+        Assertions.assertEquals(tuned, parallel.tune(start, 30));
+        double k = serial.fitScale(start);
+        Assertions.assertTrue(serial.error(tuned, k) < serial.error(start, k));
+    }
+}
@@ -0,0 +1,42 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TimeManagerTests {
+
+    @Test
+    @DisplayName("Budgets Stay Inside The Clock")
+    public void budgets() {
+        TimeManager manager = new TimeManager().overhead(50);
+
+        Engine.Limits sudden = manager.allocate(60_000, 0, 0);
+        Assertions.assertEquals(1998, sudden.softMillis());
+        Assertions.assertEquals(3 * 1998, sudden.millis());
+
+        // A large increment with little time left is capped by the clock
+        Engine.Limits increment = manager.allocate(1_000, 2_000, 0);
+        Assertions.assertEquals((1_000 - 50) / 3, increment.millis());
+        Assertions.assertEquals(increment.millis(), increment.softMillis());
+
+        // The last move before the time control may use the whole clock
+        Engine.Limits last = manager.allocate(10_000, 0, 1);
+        Assertions.assertEquals(9_950, last.softMillis());
+        Assertions.assertEquals(9_950, last.millis());
+
+        Engine.Limits flagging = manager.allocate(10, 0, 0);
+        Assertions.assertTrue(flagging.millis() >= 1 && flagging.softMillis() <= flagging.millis());
+    }
+
+    @Test
+    @DisplayName("Search Stops Between Depths After The Soft Limit")
+    public void softLimit() {
+        Search search = new Search();
+        long start = System.nanoTime();
+        Search.Info info = search.search(Fen.parse(Fen.START), new Engine.Limits(0, 0, 60_000, 100));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertTrue(millis < 20_000, "Took " + millis + " ms");
+        Assertions.assertTrue(info.depth() > 0);
+    }
+}
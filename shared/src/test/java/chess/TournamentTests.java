@@ -0,0 +1,66 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TournamentTests {
+
+    /**
+     * Mates in one when it can, otherwise plays its first legal move
+     */
+    private static final Engine MATES = (game, limits) -> {
+        Position position = Position.of(game);
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.legalMoves(moves, 0);
+        for (int i = 0; i < count; i++) {
+            position.make(moves[i]);
+            boolean mate = position.inCheck() && !position.hasLegalMove();
+            position.unmake();
+            if (mate) {
+                return Move.toChessMove(moves[i]);
+            }
+        }
+        return count == 0 ? null : Move.toChessMove(moves[0]);
+    };
+
+    private static final Engine FIRST_LEGAL = (game, limits) -> {
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = Position.of(game).legalMoves(moves, 0);
+        return count == 0 ? null : Move.toChessMove(moves[0]);
+    };
+
+    @Test
+    @DisplayName("Elo And Likelihood Ratio")
+    public void statistics() {
+        Assertions.assertEquals(0, Tournament.elo(0.5), 1e-9);
+        Assertions.assertEquals(190.8, Tournament.elo(0.75), 0.1);
+        Assertions.assertEquals(-190.8, Tournament.elo(0.25), 0.1);
+        Assertions.assertTrue(Tournament.llr(600, 300, 100, 0, 5) > Math.log(19));
+        Assertions.assertTrue(Tournament.llr(100, 300, 600, 0, 5) < -Math.log(19));
+        Assertions.assertEquals(0, Tournament.llr(0, 0, 0, 0, 5));
+    }
+
+    @Test
+    @DisplayName("Stops Early Once The Test Decides")
+    public void stopsEarly() {
+        AtomicInteger listened = new AtomicInteger();
+        Tournament.Standings standings = new Tournament(() -> MATES, () -> FIRST_LEGAL)
+                .openings(List.of("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"))
+                .limits(Engine.Limits.nodes(1))
+                .threads(3)
+                .maxGames(2000)
+                .maxPlies(30)
+                .sprt(0, 5, 0.05, 0.05)
+                .onGame(result -> listened.incrementAndGet())
+                .run();
+        Assertions.assertEquals(Tournament.Decision.ACCEPT_ELO1, standings.decision());
+        Assertions.assertTrue(standings.games() < 2000, standings.games() + " games");
+        Assertions.assertEquals(standings.games(), listened.get());
+        Assertions.assertTrue(standings.elo() > 0);
+        Assertions.assertTrue(standings.wins() > standings.losses());
+    }
+}
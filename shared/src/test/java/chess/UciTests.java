@@ -0,0 +1,66 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class UciTests {
+
+    private static List<String> session(String input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Uci(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out).run();
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    @Test
+    @DisplayName("Handshake And Depth Search")
+    public void depthSearch() throws IOException {
+        List<String> lines = session("""
+                uci
+                isready
+                setoption name Hash value 4
+                position startpos moves e2e4 e7e5
+                go depth 3
+                """);
+        Assertions.assertTrue(lines.contains("uciok"));
+        Assertions.assertTrue(lines.contains("readyok"));
+        Assertions.assertTrue(lines.stream().anyMatch(line -> line.startsWith("info depth 3 ")
+                && line.contains(" nps ") && line.contains(" hashfull ") && line.contains(" pv ")), lines.toString());
+        String bestMove = lines.get(lines.size() - 1);
+        Assertions.assertTrue(bestMove.startsWith("bestmove "), bestMove);
+
+        Position position = Fen.parse(Fen.START);
+        position.make(Move.parse("e2e4"));
+        position.make(Move.parse("e7e5"));
+        Assertions.assertTrue(position.isLegal(Move.parse(bestMove.split(" ")[1])));
+    }
+
+    @Test
+    @DisplayName("Stop Ends An Infinite Search")
+    public void stopInfinite() throws IOException {
+        List<String> lines = session("""
+                position fen 7k/8/8/8/8/8/R7/1R4K1 w - - 0 1
+                go infinite
+                stop
+                """);
+        Assertions.assertEquals(1, lines.stream().filter(line -> line.startsWith("bestmove ")).count());
+    }
+
+    @Test
+    @DisplayName("Reports Illegal Moves And Mated Positions")
+    public void illegal() throws IOException {
+        List<String> lines = session("""
+                position startpos moves e2e5
+                position fen R5k1/5ppp/8/8/8/8/8/6K1 b - - 0 1
+                go depth 2
+                """);
+        Assertions.assertTrue(lines.contains("info string illegal move e2e5"));
+        Assertions.assertEquals("bestmove 0000", lines.get(lines.size() - 1));
+    }
+}